@@ -0,0 +1,50 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.ChallengeApplication;
+import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.OrgGraphIndex;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application without the web layer so benchmarks call the service against the in process MemoryBackend
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Start a context, properties override application.properties e.g. "reporting.structure.engine=index"
+     * @param properties
+     * @return ConfigurableApplicationContext
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "logging.level.root=WARN",
+                "logging.level.com.mindex=WARN"));
+        arguments.addAll(Arrays.asList(properties));
+        //passed as command line arguments, default properties would lose to application.properties
+        return new SpringApplicationBuilder(ChallengeApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run(arguments.stream().map(argument -> "--" + argument).toArray(String[]::new));
+    }
+
+    /**
+     * Insert a generated org tree in chunks
+     * @param context
+     * @param generator
+     */
+    public static void load(ConfigurableApplicationContext context, OrgTreeGenerator generator) {
+        EmployeeRepository employeeRepository = context.getBean(EmployeeRepository.class);
+        generator.generate(10_000, employeeRepository::insert);
+        context.getBean(OrgGraphIndex.class).invalidate();
+    }
+}
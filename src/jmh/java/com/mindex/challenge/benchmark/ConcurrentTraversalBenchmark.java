@@ -0,0 +1,95 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.EmployeeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many deep reporting structure reads at once, each on a thread of a platform pool the size of tomcat's default
+ * worker pool or on a virtual thread of its own, the way requests are handled with spring.threads.virtual.enabled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ConcurrentTraversalBenchmark {
+
+    //tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_POOL_SIZE = 200;
+
+    private static final String VIRTUAL = "virtual";
+
+    //a fan out of 2 makes the tree as deep as it gets for its size
+    @Param({"1000"})
+    private int size;
+
+    @Param({"2"})
+    private int fanOut;
+
+    //traversals started together, up to and past what the platform pool can run at once
+    @Param({"100", "1000"})
+    private int concurrency;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+
+    private EmployeeService employeeService;
+
+    private ExecutorService executor;
+
+    private String rootId;
+
+    @Setup
+    public void setup() {
+        boolean virtual = VIRTUAL.equals(threads);
+        //traversal partitions run on the same kind of threads as the traversals
+        context = BenchmarkContext.start("spring.threads.virtual.enabled=" + virtual);
+        OrgTreeGenerator generator = new OrgTreeGenerator("org", size, fanOut);
+        BenchmarkContext.load(context, generator);
+        employeeService = context.getBean(EmployeeService.class);
+        rootId = generator.rootId();
+        executor = virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+    }
+
+    @TearDown
+    public void teardown() {
+        executor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    public int concurrentReportingStructures() {
+        List<CompletableFuture<ReportingStructure>> structures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            structures.add(CompletableFuture.supplyAsync(() -> employeeService.readEmployeeReportingStructure(rootId), executor));
+        }
+        int total = 0;
+        for (CompletableFuture<ReportingStructure> structure : structures) {
+            total += structure.join().getNumberOfReports();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mindex.challenge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a running instance with a fixed number of concurrent clients, each keeping its own connection busy with
+ * back to back requests, then reports throughput, latency percentiles and the peak number of server threads.
+ * Run it once against the servlet stack and once against the reactive profile to compare how each scales with clients.
+ * Options are passed as --name=value: url, path, clients, duration (seconds).
+ */
+public final class LoadTest {
+
+    private static final String DEFAULT_PATH = "/employee/16a596ae-edd3-4847-99fe-c4518e82c86f/direct-reports";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        String path = options.getOrDefault("path", DEFAULT_PATH);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "10000"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+
+        //one connection per client, clients wait for a connection rather than fail while the server accepts them
+        ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                .maxConnections(clients)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMinutes(1))
+                .build();
+        HttpClient client = HttpClient.create(connections).baseUrl(url);
+        Timer latency = Timer.builder("load.test.requests")
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .register(new SimpleMeterRegistry());
+        LongAdder succeeded = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        System.out.printf("Running %d clients against %s%s for %ds%n", clients, url, path, duration.getSeconds());
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        Flux.range(0, clients)
+                .flatMap(i -> Mono.defer(() -> {
+                    long sent = System.nanoTime();
+                    return client.get().uri(path)
+                            .responseSingle((response, body) -> body.then().thenReturn(response.status().code()))
+                            .doOnNext(status -> {
+                                latency.record(System.nanoTime() - sent, TimeUnit.NANOSECONDS);
+                                if (status < 300) {
+                                    succeeded.increment();
+                                } else if (status == 503) {
+                                    rejected.increment();
+                                } else {
+                                    failed.increment();
+                                }
+                            })
+                            .onErrorResume(e -> {
+                                //connection refused or reset, the server ran out of room for clients
+                                errors.increment();
+                                return Mono.empty();
+                            });
+                }).repeat(() -> System.nanoTime() < deadline), clients)
+                .blockLast();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        HistogramSnapshot snapshot = latency.takeSnapshot();
+        System.out.printf("Requests: %d in %.1fs, %.0f/s%n", snapshot.count(), elapsed, snapshot.count() / elapsed);
+        System.out.printf("Succeeded: %d, rejected with 503: %d, other statuses: %d, connection errors: %d%n",
+                succeeded.sum(), rejected.sum(), failed.sum(), errors.sum());
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            System.out.printf("Latency p%s: %.1fms%n", percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS));
+        }
+        System.out.printf("Latency max: %.1fms%n", snapshot.max(TimeUnit.MILLISECONDS));
+        System.out.printf("Server peak threads: %s%n", peakThreads(client));
+        connections.dispose();
+    }
+
+    /**
+     * Peak live threads in the server's JVM, read from the actuator so both stacks are measured the same way
+     * @param client
+     * @return String
+     */
+    private static String peakThreads(HttpClient client) {
+        try {
+            String body = client.get().uri("/actuator/metrics/jvm.threads.peak")
+                    .responseContent().aggregate().asString()
+                    .block(Duration.ofSeconds(10));
+            JsonNode metric = new ObjectMapper().readTree(body);
+            return String.valueOf(metric.get("measurements").get(0).get("value").asLong());
+        } catch (Exception e) {
+            return "unavailable (" + e.getMessage() + ")";
+        }
+    }
+}
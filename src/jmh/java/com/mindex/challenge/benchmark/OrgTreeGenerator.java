@@ -0,0 +1,103 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.data.Employee;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Generates a complete org tree breadth first with deterministic ids so runs are reproducible.
+ * Employee i reports to employee (i - 1) / fanOut, so the depth of the tree follows from its size and fan out.
+ */
+public class OrgTreeGenerator {
+
+    public static final int MAX_SIZE = 1_000_000;
+
+    private final String prefix;
+
+    private final int size;
+
+    private final int fanOut;
+
+    public OrgTreeGenerator(String prefix, int size, int fanOut) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_SIZE);
+        }
+        if (fanOut < 1) {
+            throw new IllegalArgumentException("Fan out must be at least 1");
+        }
+        this.prefix = prefix;
+        this.size = size;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Id of the employee at a position in the tree, the root is at 0
+     * @param index
+     * @return String
+     */
+    public String employeeId(int index) {
+        return prefix + "-" + index;
+    }
+
+    public String rootId() {
+        return employeeId(0);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of levels below the root
+     * @return int
+     */
+    public int depth() {
+        int depth = 0;
+        for (long last = 0; last < size - 1; depth++) {
+            last = last * fanOut + fanOut;
+        }
+        return depth;
+    }
+
+    /**
+     * Build the employees in order and hand them to the sink a chunk at a time so the whole tree is never held in memory
+     * @param chunkSize
+     * @param sink
+     */
+    public void generate(int chunkSize, Consumer<List<Employee>> sink) {
+        List<Employee> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < size; i++) {
+            chunk.add(employee(i));
+            if (chunk.size() == chunkSize) {
+                sink.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sink.accept(chunk);
+        }
+    }
+
+    private Employee employee(int index) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(employeeId(index));
+        employee.setFirstName("Employee");
+        employee.setLastName("Generated");
+        employee.setPosition(index == 0 ? "Chief Executive" : "Staff");
+        employee.setDepartment("Department" + (index % 16));
+
+        long first = (long) index * fanOut + 1;
+        if (first < size) {
+            List<Employee> directReports = new ArrayList<>(fanOut);
+            for (long report = first; report < Math.min(first + fanOut, size); report++) {
+                Employee directReport = new Employee();
+                directReport.setEmployeeId(employeeId((int) report));
+                directReports.add(directReport);
+            }
+            employee.setDirectReports(directReports);
+        }
+        return employee;
+    }
+}
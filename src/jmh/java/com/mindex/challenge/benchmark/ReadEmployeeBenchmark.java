@@ -0,0 +1,62 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.service.EmployeeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point reads of random employees, with and without the employee cache in front of the repository
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ReadEmployeeBenchmark {
+
+    @Param({"10000"})
+    private int size;
+
+    @Param({"caffeine", "none"})
+    private String cache;
+
+    private ConfigurableApplicationContext context;
+
+    private EmployeeService employeeService;
+
+    private OrgTreeGenerator generator;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkContext.start("spring.cache.type=" + cache);
+        generator = new OrgTreeGenerator("read", size, 10);
+        BenchmarkContext.load(context, generator);
+        employeeService = context.getBean(EmployeeService.class);
+    }
+
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Employee readEmployee() {
+        return employeeService.readEmployee(generator.employeeId(ThreadLocalRandom.current().nextInt(size)));
+    }
+}
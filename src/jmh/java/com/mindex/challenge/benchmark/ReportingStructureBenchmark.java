@@ -0,0 +1,100 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.EmployeeService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporting structure of the root of generated trees, fan out and size together set the depth of the tree.
+ * The graph-lookup engine is left out because the MemoryBackend does not support $graphLookup and falls back to batched.
+ * The per-node baseline is the original recursive walk with one findByEmployeeId per employee, run without the
+ * employee cache as it was before there was one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ReportingStructureBenchmark {
+
+    private static final String PER_NODE = "per-node";
+
+    //up to OrgTreeGenerator.MAX_SIZE, e.g. -p size=1000000
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"2", "10", "100"})
+    private int fanOut;
+
+    @Param({"per-node", "batched", "index"})
+    private String engine;
+
+    private EmployeeRepository employeeRepository;
+
+    private ConfigurableApplicationContext context;
+
+    private EmployeeService employeeService;
+
+    private String rootId;
+
+    @Setup
+    public void setup() {
+        context = PER_NODE.equals(engine) ? BenchmarkContext.start("spring.cache.type=none")
+                : BenchmarkContext.start("reporting.structure.engine=" + engine);
+        OrgTreeGenerator generator = new OrgTreeGenerator("org", size, fanOut);
+        BenchmarkContext.load(context, generator);
+        employeeService = context.getBean(EmployeeService.class);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        rootId = generator.rootId();
+
+        ReportingStructure structure = readEmployeeReportingStructure();
+        if (structure.getNumberOfReports() != size - 1) {
+            throw new IllegalStateException("Expected " + (size - 1) + " reports but counted " + structure.getNumberOfReports());
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ReportingStructure readEmployeeReportingStructure() {
+        if (PER_NODE.equals(engine)) {
+            Employee root = employeeRepository.findByEmployeeId(rootId);
+            return new ReportingStructure(root, countPerNode(root));
+        }
+        return employeeService.readEmployeeReportingStructure(rootId);
+    }
+
+    /**
+     * The traversal the batched engine replaced, one query per employee in the tree
+     * @param employee
+     * @return int
+     */
+    private int countPerNode(Employee employee) {
+        int total = 0;
+        for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
+            total += 1 + countPerNode(employeeRepository.findByEmployeeId(report.getEmployeeId()));
+        }
+        return total;
+    }
+}
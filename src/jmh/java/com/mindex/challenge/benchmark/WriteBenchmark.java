@@ -0,0 +1,95 @@
+package com.mindex.challenge.benchmark;
+
+import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.service.EmployeeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single document writes through the service, compensation is created for a fresh employee on every invocation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class WriteBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private EmployeeService employeeService;
+
+    private EmployeeRepository employeeRepository;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkContext.start();
+        employeeService = context.getBean(EmployeeService.class);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+    }
+
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Employee createEmployee() {
+        return employeeService.createEmployee(employee());
+    }
+
+    @Benchmark
+    public Compensation createEmployeeCompensation(NewEmployee newEmployee) {
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(new Employee());
+        compensation.getEmployee().setEmployeeId(newEmployee.employeeId);
+        compensation.setSalary(new BigDecimal(100000));
+        compensation.setEffectiveDate(LocalDate.of(2020, 1, 1));
+        return employeeService.createEmployeeCompensation(compensation);
+    }
+
+    /**
+     * An employee without compensation, inserting it is not part of the measurement
+     */
+    @State(Scope.Thread)
+    public static class NewEmployee {
+
+        private String employeeId;
+
+        @Setup(Level.Invocation)
+        public void setup(WriteBenchmark benchmark) {
+            Employee employee = employee();
+            employee.setEmployeeId(UUID.randomUUID().toString());
+            benchmark.employeeRepository.insert(employee);
+            employeeId = employee.getEmployeeId();
+        }
+    }
+
+    private static Employee employee() {
+        Employee employee = new Employee();
+        employee.setFirstName("Bench");
+        employee.setLastName("Mark");
+        employee.setPosition("Developer");
+        employee.setDepartment("Engineering");
+        return employee;
+    }
+}
@@ -1,39 +1,146 @@
 package com.mindex.challenge;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.ManagerLinks;
+import com.mindex.challenge.dao.OrgGraphIndex;
 import com.mindex.challenge.data.Employee;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
+import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class DataBootstrap {
+    private static final Logger LOG = LoggerFactory.getLogger(DataBootstrap.class);
+
     private static final String DATASTORE_LOCATION = "/static/employee_database.json";
 
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private OrgGraphIndex orgGraphIndex;
+
+    @Autowired
+    private ManagerLinks managerLinks;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    //only created when loading asynchronously
+    @Lazy
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private TaskExecutor taskExecutor;
+
+    @Value("${bootstrap.chunk-size:1000}")
+    private int chunkSize;
+
+    //load after startup instead of blocking the context, reads may see a partial data set until it finishes
+    @Value("${bootstrap.async:false}")
+    private boolean async;
+
     @PostConstruct
     public void init() {
-        InputStream inputStream = this.getClass().getResourceAsStream(DATASTORE_LOCATION);
+        if (!async) {
+            load();
+        }
+    }
 
-        Employee[] employees = null;
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (async) {
+            taskExecutor.execute(this::loadInBackground);
+        }
+    }
 
+    /**
+     * Load the bundled employee data set off the startup thread, where nobody waits on it to report a failure
+     */
+    void loadInBackground() {
         try {
-            employees = objectMapper.readValue(inputStream, Employee[].class);
+            load();
+        } catch (RuntimeException e) {
+            LOG.error("Loading the bundled employee data set failed, only part of it may have been loaded", e);
+            //the index may have been built from the chunks inserted before the failure
+            orgGraphIndex.invalidate();
+        }
+    }
+
+    /**
+     * Load the bundled employee data set
+     */
+    public void load() {
+        try (InputStream inputStream = this.getClass().getResourceAsStream(DATASTORE_LOCATION)) {
+            load(inputStream);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    /**
+     * Stream employees from a json array, or from whitespace separated objects, and insert them a chunk at a time
+     * keeping their ids, only one chunk is held in memory
+     * @param inputStream
+     * @return long the number of employees loaded
+     * @throws IOException
+     */
+    public long load(InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        List<Employee> chunk = new ArrayList<>(chunkSize);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token == JsonToken.START_OBJECT) {
+                chunk.add(objectMapper.readValue(parser, Employee.class));
+                if (chunk.size() == chunkSize) {
+                    count += insert(chunk);
+                }
+                token = parser.nextToken();
+            }
+            if (token != null && token != JsonToken.END_ARRAY) {
+                throw new IOException("Expected an employee object but found " + token + " at " + parser.getCurrentLocation());
+            }
+        }
+        count += insert(chunk);
+        //a report may be loaded in an earlier chunk than their manager, so link everyone once the whole set is in
+        managerLinks.backfill();
+        //the index may already have been built from a partial data set when loading asynchronously
+        orgGraphIndex.invalidate();
+
+        long elapsed = System.nanoTime() - start;
+        LOG.info("Loaded {} employees in {} ms ({} records/sec)", count, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                elapsed == 0 ? count : count * TimeUnit.SECONDS.toNanos(1) / elapsed);
+        return count;
+    }
 
-        for (Employee employee : employees) {
-            employeeRepository.insert(employee);
+    private int insert(List<Employee> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
         }
+        int inserted = employeeRepository.insert(chunk).size();
+        chunk.clear();
+        return inserted;
     }
 }
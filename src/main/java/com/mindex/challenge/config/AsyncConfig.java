@@ -0,0 +1,181 @@
+package com.mindex.challenge.config;
+
+import com.mindex.challenge.metrics.RepositoryCallCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bounded executors that keep repository work off the servlet threads. With spring.threads.virtual.enabled tomcat
+ * handles requests on virtual threads and these executors start a virtual thread per task instead of keeping a pool.
+ */
+@Configuration
+public class AsyncConfig {
+
+    public static final String EMPLOYEE_SERVICE_EXECUTOR = "employeeServiceExecutor";
+
+    public static final String EMPLOYEE_TRAVERSAL_EXECUTOR = "employeeTraversalExecutor";
+
+    public static final String REPORTING_TRAVERSAL_EXECUTOR = "reportingTraversalExecutor";
+
+    /**
+     * Platform thread pools, the default
+     */
+    @Configuration
+    @ConditionalOnThreading(Threading.PLATFORM)
+    static class PlatformThreads {
+
+        /**
+         * Runs async employee service point reads. Once every thread is busy and the queue is full new calls are rejected,
+         * which is answered with a 503 rather than letting requests pile up
+         * @param builder
+         * @param poolSize
+         * @param queueCapacity
+         * @return ThreadPoolTaskExecutor
+         */
+        @Bean(EMPLOYEE_SERVICE_EXECUTOR)
+        public ThreadPoolTaskExecutor employeeServiceExecutor(ThreadPoolTaskExecutorBuilder builder,
+                                                              @Value("${employee.async.pool-size:8}") int poolSize,
+                                                              @Value("${employee.async.queue-capacity:100}") int queueCapacity) {
+            return builder.corePoolSize(poolSize)
+                    .maxPoolSize(poolSize)
+                    .queueCapacity(queueCapacity)
+                    .threadNamePrefix("employee-service-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+        }
+
+        /**
+         * Runs async employee service calls that walk a reporting subtree. A bulkhead of its own, so slow traversals
+         * that saturate it are rejected with a 503 while point reads keep being answered from the other pool
+         * @param builder
+         * @param poolSize
+         * @param queueCapacity
+         * @return ThreadPoolTaskExecutor
+         */
+        @Bean(EMPLOYEE_TRAVERSAL_EXECUTOR)
+        public ThreadPoolTaskExecutor employeeTraversalExecutor(ThreadPoolTaskExecutorBuilder builder,
+                                                                @Value("${employee.async.traversal.pool-size:4}") int poolSize,
+                                                                @Value("${employee.async.traversal.queue-capacity:20}") int queueCapacity) {
+            return builder.corePoolSize(poolSize)
+                    .maxPoolSize(poolSize)
+                    .queueCapacity(queueCapacity)
+                    .threadNamePrefix("employee-traversal-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+        }
+
+        /**
+         * Loads the partitions of a wide reporting level in parallel. A saturated pool makes the traversal load the
+         * partition itself instead of rejecting it, so a traversal can never wait on work that has nowhere to run
+         * @param builder
+         * @param poolSize
+         * @return ThreadPoolTaskExecutor
+         */
+        @Bean(REPORTING_TRAVERSAL_EXECUTOR)
+        public ThreadPoolTaskExecutor reportingTraversalExecutor(ThreadPoolTaskExecutorBuilder builder,
+                                                                 @Value("${reporting.structure.fan-out.pool-size:4}") int poolSize) {
+            ThreadPoolTaskExecutor executor = builder.corePoolSize(poolSize)
+                    .maxPoolSize(poolSize)
+                    .queueCapacity(0)
+                    .threadNamePrefix("reporting-traversal-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+            executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+            return executor;
+        }
+
+        /**
+         * Spring Boot only provides its own executor, used for streaming responses, while no other executor is defined
+         * @param builder
+         * @return ThreadPoolTaskExecutor
+         */
+        @Lazy
+        @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+        public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+            return builder.build();
+        }
+    }
+
+    /**
+     * A virtual thread per task. Blocking on mongo no longer holds on to a pool thread, so the number of calls in
+     * flight is capped instead of the number of threads
+     */
+    @Configuration
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    static class VirtualThreads {
+
+        /**
+         * Runs async employee service point reads, calls past max-concurrency in flight are rejected with a 503
+         * @param builder
+         * @param maxConcurrency
+         * @return SimpleAsyncTaskExecutor
+         */
+        @Bean(EMPLOYEE_SERVICE_EXECUTOR)
+        public SimpleAsyncTaskExecutor employeeServiceExecutor(SimpleAsyncTaskExecutorBuilder builder,
+                                                               @Value("${employee.async.virtual.max-concurrency:400}") int maxConcurrency) {
+            return builder.virtualThreads(true)
+                    .concurrencyLimit(maxConcurrency)
+                    .rejectTasksWhenLimitReached(true)
+                    .threadNamePrefix("employee-service-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+        }
+
+        /**
+         * Runs async employee service calls that walk a reporting subtree, still a bulkhead of its own so a burst of
+         * traversals is rejected with a 503 before it takes every connection point reads need
+         * @param builder
+         * @param maxConcurrency
+         * @return SimpleAsyncTaskExecutor
+         */
+        @Bean(EMPLOYEE_TRAVERSAL_EXECUTOR)
+        public SimpleAsyncTaskExecutor employeeTraversalExecutor(SimpleAsyncTaskExecutorBuilder builder,
+                                                                 @Value("${employee.async.traversal.virtual.max-concurrency:100}") int maxConcurrency) {
+            return builder.virtualThreads(true)
+                    .concurrencyLimit(maxConcurrency)
+                    .rejectTasksWhenLimitReached(true)
+                    .threadNamePrefix("employee-traversal-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+        }
+
+        /**
+         * Loads the partitions of a wide reporting level in parallel. Partitions are never rejected, the traversals
+         * they belong to are already capped and a partition waiting for a mongo connection only parks its thread
+         * @param builder
+         * @return SimpleAsyncTaskExecutor
+         */
+        @Bean(REPORTING_TRAVERSAL_EXECUTOR)
+        public SimpleAsyncTaskExecutor reportingTraversalExecutor(SimpleAsyncTaskExecutorBuilder builder) {
+            return builder.virtualThreads(true)
+                    .threadNamePrefix("reporting-traversal-")
+                    .taskDecorator(RepositoryCallCounter::propagate)
+                    .build();
+        }
+
+        /**
+         * Streams responses, see the platform thread executor
+         * @param builder
+         * @return SimpleAsyncTaskExecutor
+         */
+        @Lazy
+        @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+        public SimpleAsyncTaskExecutor applicationTaskExecutor(SimpleAsyncTaskExecutorBuilder builder) {
+            return builder.virtualThreads(true).build();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.mindex.challenge.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Read through caching for repository lookups, the caches themselves are set up through the spring.cache properties
+ */
+@EnableCaching
+@Configuration
+public class CacheConfig {
+
+    public static final String EMPLOYEE_CACHE = "employees";
+
+    public static final String COMPENSATION_CACHE = "compensations";
+}
@@ -0,0 +1,54 @@
+package com.mindex.challenge.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.mindex.challenge.data.Employee;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Lets a response write only some of an employee's fields. Employees are written in full unless the response is
+ * wrapped by {@link #only(Object, Set)}, so a projection never changes how every other response looks.
+ */
+@Component
+public class EmployeeFieldsModule extends SimpleModule {
+
+    private static final String EMPLOYEE_FIELDS_FILTER = "employeeFields";
+
+    public EmployeeFieldsModule() {
+        super(EmployeeFieldsModule.class.getSimpleName());
+        setMixInAnnotation(Employee.class, EmployeeFields.class);
+    }
+
+    @Override
+    public void setupModule(SetupContext context) {
+        super.setupModule(context);
+        //without a filter for the id every employee would fail to serialize, by default all fields are written
+        if (context.getOwner() instanceof ObjectMapper) {
+            ((ObjectMapper) context.getOwner()).setFilterProvider(new SimpleFilterProvider()
+                    .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+        }
+    }
+
+    /**
+     * Write the employees of a response with only the given fields, nested employees included
+     * @param value
+     * @param fields
+     * @return MappingJacksonValue
+     */
+    public static MappingJacksonValue only(Object value, Set<String> fields) {
+        MappingJacksonValue only = new MappingJacksonValue(value);
+        only.setFilters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .addFilter(EMPLOYEE_FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        return only;
+    }
+
+    @JsonFilter(EMPLOYEE_FIELDS_FILTER)
+    private abstract static class EmployeeFields {
+    }
+}
@@ -2,28 +2,95 @@ package com.mindex.challenge.config;
 
 import com.mindex.challenge.dao.CompensationRepository;
 import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.OrgGraphIndex;
+import com.mindex.challenge.metrics.CommandCountingListener;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import com.mindex.challenge.service.impl.BatchedReportingStructureEngine;
+import com.mindex.challenge.service.impl.GraphLookupReportingStructureEngine;
+import com.mindex.challenge.service.impl.IndexedReportingStructureEngine;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import de.bwaldvogel.mongo.MongoServer;
 import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.SimpleMongoClientDbFactory;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
+import java.util.concurrent.Executor;
+
+import static com.mindex.challenge.config.AsyncConfig.REPORTING_TRAVERSAL_EXECUTOR;
+
 @EnableMongoRepositories(basePackageClasses = {EmployeeRepository.class, CompensationRepository.class})
 @Configuration
 public class MongoConfig{
     @Bean
     public MongoTemplate mongoTemplate(MongoClient mongoClient) {
-        return new MongoTemplate(mongoDbFactory(mongoClient));
+        return new MongoTemplate(mongoDatabaseFactory(mongoClient));
+    }
+
+    @Bean
+    public MongoDatabaseFactory mongoDatabaseFactory(MongoClient mongoClient) {
+        return new SimpleMongoClientDatabaseFactory(mongoClient, "test");
     }
 
+    /**
+     * Select how reporting structures are counted, "batched" walks the tree client side one level per query and
+     * "graph-lookup" does it server side in a single aggregation and "index" walks the in memory org graph index
+     * @param engine
+     * @param employeeRepository
+     * @param mongoTemplate
+     * @param orgGraphIndex
+     * @param traversalExecutor
+     * @param partitionSize
+     * @return ReportingStructureEngine
+     */
     @Bean
-    public MongoDbFactory mongoDbFactory(MongoClient mongoClient) {
-        return new SimpleMongoClientDbFactory(mongoClient, "test");
+    public ReportingStructureEngine reportingStructureEngine(@Value("${reporting.structure.engine:batched}") String engine,
+                                                             EmployeeRepository employeeRepository,
+                                                             MongoTemplate mongoTemplate,
+                                                             OrgGraphIndex orgGraphIndex,
+                                                             @Qualifier(REPORTING_TRAVERSAL_EXECUTOR) Executor traversalExecutor,
+                                                             @Value("${reporting.structure.fan-out.partition-size:500}") int partitionSize) {
+        ReportingStructureEngine batched = new BatchedReportingStructureEngine(employeeRepository, traversalExecutor, partitionSize);
+        switch (engine) {
+            case "batched":
+                return batched;
+            case "graph-lookup":
+                return new GraphLookupReportingStructureEngine(mongoTemplate, batched);
+            case "index":
+                return new IndexedReportingStructureEngine(orgGraphIndex, batched);
+            default:
+                throw new IllegalArgumentException("Unknown reporting structure engine: " + engine);
+        }
+    }
+
+    /**
+     * Health of the embedded server, it does not know the hello command spring boot's own mongo health check sends
+     * @param mongoTemplate
+     * @return HealthIndicator
+     */
+    @Bean
+    public HealthIndicator mongoHealthIndicator(MongoTemplate mongoTemplate) {
+        return new AbstractHealthIndicator() {
+            @Override
+            protected void doHealthCheck(Health.Builder builder) {
+                Document buildInfo = mongoTemplate.executeCommand("{ buildInfo: 1 }");
+                builder.up().withDetail("version", buildInfo.getString("version"));
+            }
+        };
     }
 
     @Bean(destroyMethod="shutdown")
@@ -33,10 +100,18 @@ public class MongoConfig{
         return mongoServer;
     }
 
+    /**
+     * Client for the embedded server, every command is timed as mongodb.driver.commands and counted against the
+     * request that sent it
+     * @param meterRegistry
+     * @return MongoClient
+     */
     @Bean(destroyMethod="close")
-    public MongoClient mongoClient() {
-        return MongoClients.create("mongodb:/" + mongoServer().getLocalAddress());
+    public MongoClient mongoClient(MeterRegistry meterRegistry) {
+        return MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString("mongodb:/" + mongoServer().getLocalAddress()))
+                .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+                .addCommandListener(new CommandCountingListener())
+                .build());
     }
 }
-
-
@@ -0,0 +1,38 @@
+package com.mindex.challenge.config;
+
+import com.mindex.challenge.dao.ReactiveCompensationRepository;
+import com.mindex.challenge.dao.ReactiveEmployeeRepository;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+/**
+ * Non blocking data access for the reactive profile, the servlet stack does not create any of it
+ */
+@EnableReactiveMongoRepositories(basePackageClasses = {ReactiveEmployeeRepository.class, ReactiveCompensationRepository.class})
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMongoConfig {
+
+    /**
+     * Non blocking client for the embedded server, backs the reactive repositories
+     * @param mongoServer
+     * @param meterRegistry
+     * @return MongoClient
+     */
+    @Bean(destroyMethod="close")
+    public MongoClient reactiveMongoClient(MongoServer mongoServer, MeterRegistry meterRegistry) {
+        return MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString("mongodb:/" + mongoServer.getLocalAddress()))
+                .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+                .build());
+    }
+}
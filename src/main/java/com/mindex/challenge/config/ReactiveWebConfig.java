@@ -0,0 +1,46 @@
+package com.mindex.challenge.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+
+import java.util.Arrays;
+
+import static com.mindex.challenge.service.ApplicationConstants.APPLICATION_NDJSON_VALUE;
+
+/**
+ * WebFlux setup for the reactive profile
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig {
+
+    /**
+     * Serve on netty, spring boot would otherwise pick tomcat because the servlet stack is on the classpath too
+     * @return NettyReactiveWebServerFactory
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Write a Flux as newline delimited json one element at a time, out of the box only application/stream+json is streamed
+     * @param objectMapper
+     * @return CodecCustomizer
+     */
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        MediaType ndjson = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper,
+                MediaType.APPLICATION_JSON, new MimeType("application", "*+json"), ndjson);
+        encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, ndjson));
+        return configurer -> configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+    }
+}
@@ -1,25 +1,82 @@
 package com.mindex.challenge.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mindex.challenge.config.EmployeeFieldsModule;
 import com.mindex.challenge.data.Compensation;
 import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.EmployeeNotFoundException;
+import com.mindex.challenge.exceptions.PreconditionFailedException;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeeExport;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.IngestJob;
 import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.AsyncEmployeeService;
 import com.mindex.challenge.service.EmployeeService;
+import com.mindex.challenge.service.IngestService;
+import com.mindex.challenge.service.ReportingStructureEngine;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.Valid;
+import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mindex.challenge.service.ApplicationConstants.APPLICATION_NDJSON_VALUE;
+import static com.mindex.challenge.service.ApplicationConstants.DEFAULT_ROLLUP_PERCENTILES;
+import static com.mindex.challenge.service.ApplicationConstants.TEXT_CSV_VALUE;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class EmployeeController {
     private static final Logger LOG = LoggerFactory.getLogger(EmployeeController.class);
 
+    //formats of GET /employee/_export
+    private static final String EXPORT_NDJSON = "ndjson";
+
+    private static final String EXPORT_CSV = "csv";
+
     @Autowired
     private EmployeeService employeeService;
 
+    @Autowired
+    private AsyncEmployeeService asyncEmployeeService;
+
+    @Autowired
+    private IngestService ingestService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Create a new employee record
      * @param employee
@@ -35,57 +92,353 @@ public class EmployeeController {
     }
 
     /**
-     * Get an employee by employee id
+     * Create many employee records in one request, each item is validated individually
+     * @param employees
+     * @return BatchResult
+     */
+    @Operation(summary = "Creates employees in bulk and reports any items that failed.")
+    @PostMapping("/employee/batch")
+    public BatchResult createEmployees(@RequestBody List<Employee> employees) {
+        LOG.debug("Received employee batch create request for {} employees", employees.size());
+
+        return employeeService.createEmployees(employees);
+    }
+
+    /**
+     * Stream newline delimited employees into the database without reading the whole upload into memory
+     * @param inputStream
+     * @return IngestJob
+     */
+    @Operation(summary = "Creates employees from a newline delimited json upload of any size.")
+    @PostMapping(value = "/employee/ingest", consumes = APPLICATION_NDJSON_VALUE)
+    public IngestJob ingestEmployees(InputStream inputStream) {
+        LOG.debug("Received employee ingest request");
+
+        return ingestService.ingestEmployees(inputStream);
+    }
+
+    /**
+     * Get running and recently finished ingest jobs
+     * @return Collection<IngestJob>
+     */
+    @Operation(summary = "Gets the progress of running and recently finished ingest jobs.")
+    @GetMapping("/employee/ingest")
+    public Collection<IngestJob> getIngestJobs() {
+        LOG.debug("Received ingest jobs read request");
+
+        return ingestService.readIngestJobs();
+    }
+
+    /**
+     * Get an ingest job's progress by its id
+     * @param jobId
+     * @return IngestJob
+     */
+    @Operation(summary = "Gets the progress of an ingest job by its id.")
+    @GetMapping("/employee/ingest/{jobId}")
+    public IngestJob getIngestJob(@PathVariable String jobId) {
+        LOG.debug("Received ingest job read request for id [{}]", jobId);
+
+        return ingestService.readIngestJob(jobId);
+    }
+
+    /**
+     * Get an employee by employee id, tagged with their version
      * @param id
-     * @return Employee
+     * @return CompletableFuture<ResponseEntity<Employee>>
      */
     @Operation(summary = "Gets employee information by their id.")
     @GetMapping("/employee/{id}")
-    public Employee readEmployee(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<Employee>> readEmployee(@PathVariable String id) {
         LOG.debug("Received employee read request for id [{}]", id);
 
-        return employeeService.readEmployee(id);
+        return asyncEmployeeService.readEmployee(id)
+                .thenApply(employee -> ResponseEntity.ok().eTag(EmployeeETags.of(employee)).body(employee));
     }
 
     /**
-     * Update an employee's record
+     * Get many employees by id in one request, in the order they were asked for
+     * @param ids
+     * @return CompletableFuture<MultiGetResult<Employee>>
+     */
+    @Operation(summary = "Gets many employees by their ids, ids that were not found are marked.")
+    @PostMapping("/employee/_mget")
+    public CompletableFuture<MultiGetResult<Employee>> readEmployees(@RequestBody List<String> ids) {
+        LOG.debug("Received employee multi get request for {} ids", ids.size());
+
+        return asyncEmployeeService.readEmployees(ids);
+    }
+
+    /**
+     * Search employees by exact department and position and by the start of their last name, a page at a time in name order
+     * @param department
+     * @param position
+     * @param namePrefix
+     * @param cursor
+     * @param limit
+     * @return CompletableFuture<CursorPage<Employee>>
+     */
+    @Operation(summary = "Searches employees by department, position and the start of their last name.")
+    @GetMapping("/employee")
+    public CompletableFuture<CursorPage<Employee>> searchEmployees(@RequestParam(required = false) String department,
+                                                                   @RequestParam(required = false) String position,
+                                                                   @RequestParam(required = false) String namePrefix,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "100") int limit) {
+        LOG.debug("Received employee search request for department [{}], position [{}] and name prefix [{}] from cursor [{}]",
+                department, position, namePrefix, cursor);
+
+        return asyncEmployeeService.searchEmployees(department, position, namePrefix, cursor, limit);
+    }
+
+    /**
+     * Update an employee's record. With If-Match the update only applies to the tagged version and fails with a 412
+     * otherwise, a version in the body works the same way but fails with a 409.
      * @param id
+     * @param ifMatch
      * @param employee
-     * @return Employee
+     * @return ResponseEntity<Employee>
      */
     @Operation(summary = "Update an employee's information.")
     @PutMapping("/employee/{id}")
-    public Employee updateEmployee(@PathVariable String id, @RequestBody @Valid Employee employee) {
-        LOG.debug("Received employee update request for id [{}] and employee [{}]", id, employee);
+    public ResponseEntity<Employee> updateEmployee(@PathVariable String id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody @Valid Employee employee) {
+        LOG.debug("Received employee update request for id [{}], if match [{}] and employee [{}]", id, ifMatch, employee);
 
         employee.setEmployeeId(id);
-        return employeeService.updateEmployee(employee);
+        Employee updated;
+        if (ifMatch == null) {
+            updated = employeeService.updateEmployee(employee);
+        } else {
+            employee.setVersion(EmployeeETags.expectedVersion(ifMatch));
+            try {
+                updated = employeeService.updateEmployee(employee);
+            } catch (OptimisticLockingFailureException | EmployeeNotFoundException e) {
+                //no current version matches any If-Match, not even *
+                throw new PreconditionFailedException(e.getMessage());
+            }
+        }
+        return ResponseEntity.ok().eTag(EmployeeETags.of(updated)).body(updated);
+    }
+
+    /**
+     * Change only the given fields of an employee, direct reports are added or removed by id. With If-Match the
+     * patch only applies to the tagged version and fails with a 412 otherwise.
+     * @param id
+     * @param ifMatch
+     * @param patch
+     * @return ResponseEntity<Employee>
+     */
+    @Operation(summary = "Changes some of an employee's information and adds or removes direct reports.")
+    @PatchMapping("/employee/{id}")
+    public ResponseEntity<Employee> patchEmployee(@PathVariable String id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                  @RequestBody @Valid EmployeePatch patch) {
+        LOG.debug("Received employee patch request for id [{}], if match [{}] and patch [{}]", id, ifMatch, patch);
+
+        Long expectedVersion = ifMatch == null ? null : EmployeeETags.expectedVersion(ifMatch);
+        Employee updated;
+        try {
+            updated = employeeService.patchEmployee(id, patch, expectedVersion);
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException(e.getMessage());
+        } catch (EmployeeNotFoundException e) {
+            //no current version matches any If-Match, not even *
+            if (ifMatch != null) {
+                throw new PreconditionFailedException(e.getMessage());
+            }
+            throw e;
+        }
+        return ResponseEntity.ok().eTag(EmployeeETags.of(updated)).body(updated);
     }
 
     /**
      * Get an employees number of direct reports.
      * @param id
-     * @return ReportingStructure
+     * @param maxDepth levels of reports to count, every level when not given
+     * @param fields employee fields to return, e.g. employeeId or employeeId,firstName,lastName, all fields when not given
+     * @return CompletableFuture<MappingJacksonValue> the ReportingStructure, its employee written with only the given fields
      */
     @Operation(summary = "Gets an employee's direct reports information.")
+    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ReportingStructure.class)))
     @GetMapping("/employee/{id}/direct-reports")
-    public ReportingStructure getEmployeeReportingStructure(@PathVariable String id) {
-        LOG.debug("Received reporting structure read for employee request for id [{}]", id);
+    public CompletableFuture<MappingJacksonValue> getEmployeeReportingStructure(@PathVariable String id,
+                                                                                @RequestParam(required = false) Integer maxDepth,
+                                                                                @RequestParam(required = false) Set<String> fields) {
+        LOG.debug("Received reporting structure read for employee request for id [{}], max depth [{}] and fields {}", id, maxDepth, fields);
 
-        return employeeService.readEmployeeReportingStructure(id);
+        return asyncEmployeeService.readEmployeeReportingStructure(id,
+                        maxDepth == null ? ReportingStructureEngine.UNLIMITED_DEPTH : maxDepth, fields)
+                .thenApply(structure -> CollectionUtils.isEmpty(fields) ? new MappingJacksonValue(structure)
+                        : EmployeeFieldsModule.only(structure, fields));
     }
 
     /**
-     * Get an employee's compensation information
+     * Get an employee's chain of managers, nearest first
      * @param id
-     * @return Compensation
+     * @return CompletableFuture<List<Employee>>
+     */
+    @Operation(summary = "Gets everyone an employee reports to, up to the top of the organization.")
+    @GetMapping("/employee/{id}/managers")
+    public CompletableFuture<List<Employee>> getEmployeeManagers(@PathVariable String id) {
+        LOG.debug("Received employee managers read request for id [{}]", id);
+
+        return asyncEmployeeService.readEmployeeManagers(id);
+    }
+
+    /**
+     * Get a page of an employee's reports, their direct reports and everyone below them, breadth first
+     * @param id
+     * @param cursor
+     * @param limit
+     * @return CompletableFuture<CursorPage<Employee>>
+     */
+    @Operation(summary = "Gets a page of everyone reporting to an employee directly or indirectly.")
+    @GetMapping(value = "/employee/{id}/reports", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<CursorPage<Employee>> getEmployeeReports(@PathVariable String id,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "100") int limit) {
+        LOG.debug("Received employee reports read request for id [{}] from cursor [{}]", id, cursor);
+
+        return asyncEmployeeService.readEmployeeReports(id, cursor, limit);
+    }
+
+    /**
+     * Stream all of an employee's reports as newline delimited json, rows are written while the tree is still being walked
+     * @param id
+     * @return ResponseEntity<StreamingResponseBody>
+     */
+    @Operation(summary = "Streams everyone reporting to an employee directly or indirectly.")
+    @GetMapping(value = "/employee/{id}/reports", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamEmployeeReports(@PathVariable String id) {
+        LOG.debug("Received employee reports stream request for id [{}]", id);
+
+        //fail before the response is committed so a missing employee still gets a 204
+        employeeService.readEmployee(id);
+        StreamingResponseBody body = outputStream -> employeeService.streamEmployeeReports(id, reports -> {
+            try {
+                for (Employee report : reports) {
+                    outputStream.write(objectMapper.writeValueAsBytes(report));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Stream every employee in id order as newline delimited json or csv, optionally with the compensation they had
+     * on a date. Rows are written a batch at a time while the database cursor is still being read, an interrupted
+     * export is resumed by passing the last employee id received as after.
+     * @param format ndjson or csv
+     * @param after
+     * @param compensation
+     * @param asOf yyyy-MM-dd
+     * @return ResponseEntity<StreamingResponseBody>
+     */
+    @Operation(summary = "Streams every employee, with their compensation when asked, resuming after an employee id.")
+    @GetMapping("/employee/_export")
+    public ResponseEntity<StreamingResponseBody> exportEmployees(@RequestParam(defaultValue = EXPORT_NDJSON) String format,
+                                                                 @RequestParam(required = false) String after,
+                                                                 @RequestParam(defaultValue = "false") boolean compensation,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LOG.debug("Received employee export request as [{}] after id [{}] with compensation [{}] as of [{}]", format, after, compensation, asOf);
+
+        //fail before the response is committed so an unknown format still gets a 400
+        boolean csv = EXPORT_CSV.equalsIgnoreCase(format);
+        if (!csv && !EXPORT_NDJSON.equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Export format must be " + EXPORT_NDJSON + " or " + EXPORT_CSV + ", not " + format);
+        }
+        LocalDate compensationAsOf = compensation ? (asOf == null ? LocalDate.now() : asOf) : null;
+        StreamingResponseBody body = outputStream -> {
+            if (csv) {
+                outputStream.write(csvLine(EmployeeExport.CSV_COLUMNS));
+            }
+            employeeService.exportEmployees(after, compensationAsOf, rows -> {
+                try {
+                    for (EmployeeExport row : rows) {
+                        if (csv) {
+                            outputStream.write(csvLine(row.toCsvValues()));
+                        } else {
+                            outputStream.write(objectMapper.writeValueAsBytes(row));
+                            outputStream.write('\n');
+                        }
+                    }
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(csv ? TEXT_CSV_VALUE : APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Get the compensation an employee had on a date, their current compensation when no date is given
+     * @param id
+     * @param asOf yyyy-MM-dd
+     * @return CompletableFuture<Compensation>
      */
-    @Operation(summary = "Gets an employee's compensation information.")
+    @Operation(summary = "Gets an employee's compensation information, as of a date when given.")
     @GetMapping("/employee/{id}/compensation")
-    public Compensation getEmployeeCompensation(@PathVariable String id) {
-        LOG.debug("Received employee compensation read request for id [{}]", id);
+    public CompletableFuture<Compensation> getEmployeeCompensation(@PathVariable String id,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LOG.debug("Received employee compensation read request for id [{}] as of [{}]", id, asOf);
+
+        return asyncEmployeeService.readEmployeeCompensation(id, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Get the compensation many employees had on a date in one request, their current compensation when no date is given
+     * @param ids
+     * @param asOf yyyy-MM-dd
+     * @return CompletableFuture<MultiGetResult<Compensation>>
+     */
+    @Operation(summary = "Gets the compensation of many employees by their ids, as of a date when given.")
+    @PostMapping("/employee/compensation/_mget")
+    public CompletableFuture<MultiGetResult<Compensation>> readEmployeeCompensations(@RequestBody List<String> ids,
+                                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LOG.debug("Received employee compensation multi get request for {} ids as of [{}]", ids.size(), asOf);
 
-        return employeeService.readEmployeeCompensation(id);
+        return asyncEmployeeService.readEmployeeCompensations(ids, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Get the compensation records of an employee that took effect between two dates, oldest first
+     * @param id
+     * @param from yyyy-MM-dd, from the start of the history when not given
+     * @param to yyyy-MM-dd, up to the end of the history when not given
+     * @return CompletableFuture<List<Compensation>>
+     */
+    @Operation(summary = "Gets the history of an employee's compensation, optionally between two dates.")
+    @GetMapping("/employee/{id}/compensation/history")
+    public CompletableFuture<List<Compensation>> getEmployeeCompensationHistory(@PathVariable String id,
+                                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LOG.debug("Received employee compensation history read request for id [{}] from [{}] to [{}]", id, from, to);
+
+        return asyncEmployeeService.readEmployeeCompensationHistory(id, from, to);
+    }
+
+    /**
+     * Get the total, mean, min, max and percentiles of the salaries of an employee and everyone reporting to them
+     * @param id
+     * @param asOf yyyy-MM-dd, today when not given
+     * @param percentiles comma separated, p50, p90 and p99 when not given
+     * @return CompletableFuture<CompensationRollup>
+     */
+    @Operation(summary = "Gets salary figures across an employee's whole reporting subtree, as of a date when given.")
+    @GetMapping("/employee/{id}/compensation/rollup")
+    public CompletableFuture<CompensationRollup> getCompensationRollup(@PathVariable String id,
+                                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+                                                                       @RequestParam(defaultValue = DEFAULT_ROLLUP_PERCENTILES) List<Double> percentiles) {
+        LOG.debug("Received compensation rollup read request for id [{}] as of [{}]", id, asOf);
+
+        return asyncEmployeeService.readCompensationRollup(id, asOf == null ? LocalDate.now() : asOf, percentiles);
     }
 
     /**
@@ -102,4 +455,21 @@ public class EmployeeController {
         compensation.getEmployee().setEmployeeId(id);
         return employeeService.createEmployeeCompensation(compensation);
     }
+
+    /**
+     * A csv record terminated by CRLF, fields holding a separator, quote or line break are quoted
+     * @param values
+     * @return byte[]
+     */
+    private static byte[] csvLine(Collection<?> values) {
+        StringJoiner line = new StringJoiner(",", "", "\r\n");
+        for (Object value : values) {
+            String field = value == null ? "" : value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+            if (StringUtils.containsAny(field, ',', '"', '\r', '\n')) {
+                field = '"' + field.replace("\"", "\"\"") + '"';
+            }
+            line.add(field);
+        }
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.mindex.challenge.controller;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.PreconditionFailedException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Entity tags for employees, the tag is the stored version so If-Match can be checked by the update itself
+ */
+final class EmployeeETags {
+
+    private static final String ANY = "*";
+
+    //a single strong tag holding a version, i.e. "3"
+    private static final Pattern VERSION_TAG = Pattern.compile("\\s*\"(\\d{1,18})\"\\s*");
+
+    private EmployeeETags() {
+    }
+
+    /**
+     * Tag for the stored version of an employee, employees that were never versioned are at version 0
+     * @param employee
+     * @return String
+     */
+    static String of(Employee employee) {
+        return "\"" + (employee.getVersion() == null ? 0L : employee.getVersion()) + "\"";
+    }
+
+    /**
+     * Version an If-Match header expects. Weak tags never match under the strong comparison If-Match requires,
+     * so anything but a single version tag fails the precondition straight away.
+     * @param ifMatch
+     * @return Long the expected version, null when any stored version matches
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+        Matcher matcher = VERSION_TAG.matcher(ifMatch);
+        if (!matcher.matches()) {
+            throw new PreconditionFailedException("If-Match " + ifMatch + " does not match the current version");
+        }
+        return Long.valueOf(matcher.group(1));
+    }
+}
@@ -1,9 +1,14 @@
 package com.mindex.challenge.controller;
 
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
 import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.exceptions.PreconditionFailedException;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
@@ -12,14 +17,20 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ExceptionHandlerController {
 
     private static final Logger LOG = LoggerFactory.getLogger(ExceptionHandlerController.class);
 
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     /**
      * Return 500 http code with generic message body for any RunTime exception
      * @param ex
@@ -44,10 +55,12 @@ public class ExceptionHandlerController {
     }
 
     /**
-     * Return 400 http code when illegal argument was passed in request
+     * Return 400 http code when illegal argument was passed in request, including query parameters that could not
+     * be converted i.e. a malformed date
      * @param ex
      */
-    @ExceptionHandler({IllegalArgumentException.class, MethodArgumentNotValidException.class, HttpMessageNotReadableException.class})
+    @ExceptionHandler({IllegalArgumentException.class, MethodArgumentNotValidException.class, HttpMessageNotReadableException.class,
+            MethodArgumentTypeMismatchException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public @ResponseBody String handleBadRequestExceptions(final Exception ex) {
         LOG.warn(ex.getMessage(), ex);
@@ -59,6 +72,56 @@ public class ExceptionHandlerController {
         return ex.getMessage();
     }
 
+    /**
+     * Return 409 http code when the stored reporting structure contains a cycle
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(CyclicReportingStructureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody String handleCyclicReportingStructureException(final CyclicReportingStructureException ex) {
+        LOG.warn(ex.getMessage(), ex);
+        return ex.getMessage();
+    }
+
+    /**
+     * Return 503 http code when the employee service executor is saturated, clients are asked to retry shortly
+     * @param ex
+     * @param response
+     * @return String
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public @ResponseBody String handleRejectedExecutionException(final RejectedExecutionException ex, final HttpServletResponse response) {
+        LOG.warn(ex.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return "Server is busy, please retry shortly";
+    }
+
+    /**
+     * Return 409 http code when an update carried a version that is no longer the stored one
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody String handleOptimisticLockingFailureException(final OptimisticLockingFailureException ex) {
+        LOG.warn(ex.getMessage());
+        return ex.getMessage();
+    }
+
+    /**
+     * Return 412 http code when the If-Match header of a conditional update does not match the stored version
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public @ResponseBody String handlePreconditionFailedException(final PreconditionFailedException ex) {
+        LOG.warn(ex.getMessage());
+        return ex.getMessage();
+    }
+
     /**
      * Concatenate field error default messages into a single string
      * @param fieldErrors
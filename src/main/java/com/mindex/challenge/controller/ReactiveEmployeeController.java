@@ -0,0 +1,280 @@
+package com.mindex.challenge.controller;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.EmployeeNotFoundException;
+import com.mindex.challenge.exceptions.PreconditionFailedException;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.ReactiveEmployeeService;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.mindex.challenge.service.ApplicationConstants.APPLICATION_NDJSON_VALUE;
+import static com.mindex.challenge.service.ApplicationConstants.DEFAULT_ROLLUP_PERCENTILES;
+
+/**
+ * The employee api served by WebFlux, only registered when the application runs reactive i.e. the reactive profile
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveEmployeeController {
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveEmployeeController.class);
+
+    @Autowired
+    private ReactiveEmployeeService employeeService;
+
+    /**
+     * Create a new employee record
+     * @param employee
+     * @return Mono<Employee>
+     */
+    @Operation(summary = "Creates a new employee.")
+    @PostMapping("/employee")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Employee> createEmployee(@RequestBody @Valid Employee employee) {
+        LOG.debug("Received employee create request for [{}]", employee);
+
+        return employeeService.createEmployee(employee);
+    }
+
+    /**
+     * Get an employee by employee id, tagged with their version
+     * @param id
+     * @return Mono<ResponseEntity<Employee>>
+     */
+    @Operation(summary = "Gets employee information by their id.")
+    @GetMapping("/employee/{id}")
+    public Mono<ResponseEntity<Employee>> readEmployee(@PathVariable String id) {
+        LOG.debug("Received employee read request for id [{}]", id);
+
+        return employeeService.readEmployee(id)
+                .map(employee -> ResponseEntity.ok().eTag(EmployeeETags.of(employee)).body(employee));
+    }
+
+    /**
+     * Get many employees by id in one request, in the order they were asked for
+     * @param ids
+     * @return Mono<MultiGetResult<Employee>>
+     */
+    @Operation(summary = "Gets many employees by their ids, ids that were not found are marked.")
+    @PostMapping("/employee/_mget")
+    public Mono<MultiGetResult<Employee>> readEmployees(@RequestBody List<String> ids) {
+        LOG.debug("Received employee multi get request for {} ids", ids.size());
+
+        return employeeService.readEmployees(ids);
+    }
+
+    /**
+     * Search employees by exact department and position and by the start of their last name, a page at a time in name order
+     * @param department
+     * @param position
+     * @param namePrefix
+     * @param cursor
+     * @param limit
+     * @return Mono<CursorPage<Employee>>
+     */
+    @Operation(summary = "Searches employees by department, position and the start of their last name.")
+    @GetMapping("/employee")
+    public Mono<CursorPage<Employee>> searchEmployees(@RequestParam(required = false) String department,
+                                                      @RequestParam(required = false) String position,
+                                                      @RequestParam(required = false) String namePrefix,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "100") int limit) {
+        LOG.debug("Received employee search request for department [{}], position [{}] and name prefix [{}] from cursor [{}]",
+                department, position, namePrefix, cursor);
+
+        return employeeService.searchEmployees(department, position, namePrefix, cursor, limit);
+    }
+
+    /**
+     * Update an employee's record, conditional on If-Match or a version in the body like the servlet stack
+     * @param id
+     * @param ifMatch
+     * @param employee
+     * @return Mono<ResponseEntity<Employee>>
+     */
+    @Operation(summary = "Update an employee's information.")
+    @PutMapping("/employee/{id}")
+    public Mono<ResponseEntity<Employee>> updateEmployee(@PathVariable String id,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody @Valid Employee employee) {
+        LOG.debug("Received employee update request for id [{}], if match [{}] and employee [{}]", id, ifMatch, employee);
+
+        employee.setEmployeeId(id);
+        Mono<Employee> updated;
+        if (ifMatch == null) {
+            updated = employeeService.updateEmployee(employee);
+        } else {
+            employee.setVersion(EmployeeETags.expectedVersion(ifMatch));
+            //no current version matches any If-Match, not even *
+            updated = employeeService.updateEmployee(employee)
+                    .onErrorMap(e -> e instanceof OptimisticLockingFailureException || e instanceof EmployeeNotFoundException,
+                            e -> new PreconditionFailedException(e.getMessage()));
+        }
+        return updated.map(saved -> ResponseEntity.ok().eTag(EmployeeETags.of(saved)).body(saved));
+    }
+
+    /**
+     * Change only the given fields of an employee, conditional on If-Match like the servlet stack
+     * @param id
+     * @param ifMatch
+     * @param patch
+     * @return Mono<ResponseEntity<Employee>>
+     */
+    @Operation(summary = "Changes some of an employee's information and adds or removes direct reports.")
+    @PatchMapping("/employee/{id}")
+    public Mono<ResponseEntity<Employee>> patchEmployee(@PathVariable String id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                        @RequestBody @Valid EmployeePatch patch) {
+        LOG.debug("Received employee patch request for id [{}], if match [{}] and patch [{}]", id, ifMatch, patch);
+
+        Long expectedVersion = ifMatch == null ? null : EmployeeETags.expectedVersion(ifMatch);
+        return employeeService.patchEmployee(id, patch, expectedVersion)
+                .onErrorMap(e -> e instanceof OptimisticLockingFailureException
+                                || (ifMatch != null && e instanceof EmployeeNotFoundException),
+                        e -> new PreconditionFailedException(e.getMessage()))
+                .map(saved -> ResponseEntity.ok().eTag(EmployeeETags.of(saved)).body(saved));
+    }
+
+    /**
+     * Get an employees number of direct reports.
+     * @param id
+     * @param maxDepth levels of reports to count, every level when not given
+     * @return Mono<ReportingStructure>
+     */
+    @Operation(summary = "Gets an employee's direct reports information.")
+    @GetMapping("/employee/{id}/direct-reports")
+    public Mono<ReportingStructure> getEmployeeReportingStructure(@PathVariable String id,
+                                                                  @RequestParam(required = false) Integer maxDepth) {
+        LOG.debug("Received reporting structure read for employee request for id [{}] and max depth [{}]", id, maxDepth);
+
+        return employeeService.readEmployeeReportingStructure(id,
+                maxDepth == null ? ReportingStructureEngine.UNLIMITED_DEPTH : maxDepth);
+    }
+
+    /**
+     * Get an employee's chain of managers, nearest first
+     * @param id
+     * @return Mono<List<Employee>>
+     */
+    @Operation(summary = "Gets everyone an employee reports to, up to the top of the organization.")
+    @GetMapping("/employee/{id}/managers")
+    public Mono<List<Employee>> getEmployeeManagers(@PathVariable String id) {
+        LOG.debug("Received employee managers read request for id [{}]", id);
+
+        //collected so a cycle further up the chain is still answered with a 409 rather than a truncated array
+        return employeeService.readEmployeeManagers(id).collectList();
+    }
+
+    /**
+     * Stream all of an employee's reports as newline delimited json
+     * @param id
+     * @return Flux<Employee>
+     */
+    @Operation(summary = "Streams everyone reporting to an employee directly or indirectly.")
+    @GetMapping(value = "/employee/{id}/reports", produces = APPLICATION_NDJSON_VALUE)
+    public Flux<Employee> streamEmployeeReports(@PathVariable String id) {
+        LOG.debug("Received employee reports stream request for id [{}]", id);
+
+        return employeeService.streamEmployeeReports(id);
+    }
+
+    /**
+     * Get the compensation an employee had on a date, their current compensation when no date is given
+     * @param id
+     * @param asOf yyyy-MM-dd
+     * @return Mono<Compensation>
+     */
+    @Operation(summary = "Gets an employee's compensation information, as of a date when given.")
+    @GetMapping("/employee/{id}/compensation")
+    public Mono<Compensation> getEmployeeCompensation(@PathVariable String id,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LOG.debug("Received employee compensation read request for id [{}] as of [{}]", id, asOf);
+
+        return employeeService.readEmployeeCompensation(id, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Get the compensation many employees had on a date in one request, their current compensation when no date is given
+     * @param ids
+     * @param asOf yyyy-MM-dd
+     * @return Mono<MultiGetResult<Compensation>>
+     */
+    @Operation(summary = "Gets the compensation of many employees by their ids, as of a date when given.")
+    @PostMapping("/employee/compensation/_mget")
+    public Mono<MultiGetResult<Compensation>> readEmployeeCompensations(@RequestBody List<String> ids,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LOG.debug("Received employee compensation multi get request for {} ids as of [{}]", ids.size(), asOf);
+
+        return employeeService.readEmployeeCompensations(ids, asOf == null ? LocalDate.now() : asOf);
+    }
+
+    /**
+     * Get the compensation records of an employee that took effect between two dates, oldest first
+     * @param id
+     * @param from yyyy-MM-dd, from the start of the history when not given
+     * @param to yyyy-MM-dd, up to the end of the history when not given
+     * @return Flux<Compensation>
+     */
+    @Operation(summary = "Gets the history of an employee's compensation, optionally between two dates.")
+    @GetMapping("/employee/{id}/compensation/history")
+    public Flux<Compensation> getEmployeeCompensationHistory(@PathVariable String id,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LOG.debug("Received employee compensation history read request for id [{}] from [{}] to [{}]", id, from, to);
+
+        return employeeService.readEmployeeCompensationHistory(id, from, to);
+    }
+
+    /**
+     * Get the total, mean, min, max and percentiles of the salaries of an employee and everyone reporting to them
+     * @param id
+     * @param asOf yyyy-MM-dd, today when not given
+     * @param percentiles comma separated, p50, p90 and p99 when not given
+     * @return Mono<CompensationRollup>
+     */
+    @Operation(summary = "Gets salary figures across an employee's whole reporting subtree, as of a date when given.")
+    @GetMapping("/employee/{id}/compensation/rollup")
+    public Mono<CompensationRollup> getCompensationRollup(@PathVariable String id,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+                                                          @RequestParam(defaultValue = DEFAULT_ROLLUP_PERCENTILES) List<Double> percentiles) {
+        LOG.debug("Received compensation rollup read request for id [{}] as of [{}]", id, asOf);
+
+        return employeeService.readCompensationRollup(id, asOf == null ? LocalDate.now() : asOf, percentiles);
+    }
+
+    /**
+     * Create a compensation record for an employee
+     * @param compensation
+     * @return Mono<Compensation>
+     */
+    @Operation(summary = "Creates a compensation record for an employee.")
+    @PostMapping("/employee/{id}/compensation")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Compensation> createEmployeeCompensation(@PathVariable String id, @RequestBody @Valid Compensation compensation) {
+        LOG.debug("Received employee compensation create request for [{}]", compensation);
+
+        compensation.getEmployee().setEmployeeId(id);
+        return employeeService.createEmployeeCompensation(compensation);
+    }
+}
@@ -0,0 +1,132 @@
+package com.mindex.challenge.controller;
+
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.exceptions.PreconditionFailedException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.List;
+
+/**
+ * Same responses as {@link ExceptionHandlerController} for the WebFlux exceptions raised under the reactive profile
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveExceptionHandlerController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveExceptionHandlerController.class);
+
+    /**
+     * Return 500 http code with generic message body for any RunTime exception
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(RuntimeException.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public @ResponseBody String handleGenericException(final Exception ex) {
+        LOG.error(ex.getMessage(), ex);
+        return "Error processing request!";
+    }
+
+    /**
+     * Return 204 http code with empty body when no record found for request
+     * @param ex
+     */
+    @ExceptionHandler(EmptyObjectException.class)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void handleObjectNotFoundException(final EmptyObjectException ex) {
+        //log warning incase a record was expected to be found but wasn't
+        LOG.warn(ex.getMessage(), ex);
+    }
+
+    /**
+     * Return 400 http code when illegal argument was passed in request, ServerWebInputException covers
+     * bodies that could not be read and WebExchangeBindException bodies that failed validation
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler({IllegalArgumentException.class, ServerWebInputException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public @ResponseBody String handleBadRequestExceptions(final Exception ex) {
+        LOG.warn(ex.getMessage(), ex);
+        if (ex instanceof WebExchangeBindException) {
+            return processFieldError(((WebExchangeBindException) ex).getFieldErrors());
+        } else if (ex instanceof ServerWebInputException) {
+            return NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+        }
+        return ex.getMessage();
+    }
+
+    /**
+     * Keep the status of errors raised by WebFlux itself i.e. 406 when the requested media type cannot be produced
+     * @param ex
+     * @return ResponseEntity<String>
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatusException(final ResponseStatusException ex) {
+        LOG.warn(ex.getMessage());
+        return ResponseEntity.status(ex.getStatusCode()).body(ex.getReason());
+    }
+
+    /**
+     * Return 409 http code when the stored reporting structure contains a cycle
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(CyclicReportingStructureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody String handleCyclicReportingStructureException(final CyclicReportingStructureException ex) {
+        LOG.warn(ex.getMessage(), ex);
+        return ex.getMessage();
+    }
+
+    /**
+     * Return 409 http code when an update carried a version that is no longer the stored one
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody String handleOptimisticLockingFailureException(final OptimisticLockingFailureException ex) {
+        LOG.warn(ex.getMessage());
+        return ex.getMessage();
+    }
+
+    /**
+     * Return 412 http code when the If-Match header of a conditional update does not match the stored version
+     * @param ex
+     * @return String
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public @ResponseBody String handlePreconditionFailedException(final PreconditionFailedException ex) {
+        LOG.warn(ex.getMessage());
+        return ex.getMessage();
+    }
+
+    /**
+     * Concatenate field error default messages into a single string
+     * @param fieldErrors
+     * @return String
+     */
+    private String processFieldError(List<FieldError> fieldErrors) {
+        StringBuilder sb = new StringBuilder();
+        fieldErrors.forEach(fieldError -> sb.append(fieldError.getDefaultMessage()).append(StringUtils.LF));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.aggregation.SortOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds the aggregations shared by the blocking and reactive stacks that look up the compensation of a whole chunk
+ * of employees in one round trip. Records are sorted newest first within each employee, which the history index
+ * already provides, so grouping by employee and keeping the first record leaves the one in effect on the given date.
+ */
+public final class CompensationLookups {
+
+    public static final String SALARY = "salary";
+
+    private static final String EMPLOYEE = "employee";
+
+    private static final String EMPLOYEE_ID = "employeeId";
+
+    private static final String EFFECTIVE_DATE = "effectiveDate";
+
+    private static final String CURRENT = "current";
+
+    private CompensationLookups() {
+    }
+
+    /**
+     * The salary each of the employees had on a date, employees without compensation by then are left out
+     * @param employeeIds
+     * @param asOf
+     * @return TypedAggregation<Compensation> with one result per compensated employee, keyed by employee id
+     */
+    public static TypedAggregation<Compensation> salariesAsOf(Collection<String> employeeIds, LocalDate asOf) {
+        return Aggregation.newAggregation(Compensation.class,
+                matchAsOf(employeeIds, asOf),
+                newestFirst(),
+                Aggregation.group(EMPLOYEE_ID).first(SALARY).as(SALARY));
+    }
+
+    /**
+     * The compensation record each of the employees had on a date, employees without compensation by then are left
+     * out. The employee reference is not returned, resolving it would cost a query per record.
+     * @param employeeIds
+     * @param asOf
+     * @return TypedAggregation<Compensation> with one record per compensated employee
+     */
+    public static TypedAggregation<Compensation> compensationAsOf(Collection<String> employeeIds, LocalDate asOf) {
+        return Aggregation.newAggregation(Compensation.class,
+                matchAsOf(employeeIds, asOf),
+                newestFirst(),
+                Aggregation.project().andExclude(EMPLOYEE),
+                Aggregation.group(EMPLOYEE_ID).first(Aggregation.ROOT).as(CURRENT),
+                Aggregation.replaceRoot(CURRENT));
+    }
+
+    private static MatchOperation matchAsOf(Collection<String> employeeIds, LocalDate asOf) {
+        return Aggregation.match(where(EMPLOYEE_ID).in(employeeIds).and(EFFECTIVE_DATE).lte(asOf));
+    }
+
+    private static SortOperation newestFirst() {
+        return Aggregation.sort(Sort.by(Sort.Order.asc(EMPLOYEE_ID), Sort.Order.desc(EFFECTIVE_DATE)));
+    }
+}
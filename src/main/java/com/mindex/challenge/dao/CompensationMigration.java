@@ -0,0 +1,111 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ensures the compensation history index and backfills the employee id on documents written before it existed.
+ */
+@Component
+public class CompensationMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompensationMigration.class);
+
+    private static final String EMPLOYEE = "employee";
+
+    private static final String EMPLOYEE_ID = "employeeId";
+
+    private static final String EFFECTIVE_DATE = "effectiveDate";
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void init() {
+        //backfill first, legacy documents without an employee id would all collide on (null, date) in the unique index
+        migrate();
+        ensureIndex();
+    }
+
+    /**
+     * Create the history index if it is missing, does not rely on automatic index creation being enabled.
+     * The plain employee id index it replaces is dropped, the history index serves lookups by employee id as well.
+     */
+    public void ensureIndex() {
+        IndexOperations indexOps = mongoTemplate.indexOps(Compensation.class);
+        indexOps.createIndex(new Index().on(EMPLOYEE_ID, Sort.Direction.ASC).on(EFFECTIVE_DATE, Sort.Direction.DESC)
+                .named(Compensation.HISTORY_INDEX).unique());
+        for (IndexInfo index : indexOps.getIndexInfo()) {
+            //isIndexForFields also matches indexes with more fields, i.e. the history index itself
+            if (index.getIndexFields().size() == 1 && index.isIndexForFields(Collections.singletonList(EMPLOYEE_ID))) {
+                LOG.info("Dropping index {} superseded by {}", index.getName(), Compensation.HISTORY_INDEX);
+                //by its keys rather than its name, which the embedded server does not support
+                int direction = index.getIndexFields().get(0).getDirection() == Sort.Direction.DESC ? -1 : 1;
+                mongoTemplate.getCollection(mongoTemplate.getCollectionName(Compensation.class))
+                        .dropIndex(new Document(EMPLOYEE_ID, direction));
+            }
+        }
+    }
+
+    /**
+     * Copy the referenced employee id onto every compensation document that does not have one yet
+     * @return int the number of documents migrated
+     */
+    public int migrate() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Compensation.class));
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        int migrated = 0;
+
+        for (Document document : collection.find(Filters.exists(EMPLOYEE_ID, false)).projection(Projections.include(EMPLOYEE))) {
+            Object employee = document.get(EMPLOYEE);
+            if (!(employee instanceof DBRef)) {
+                LOG.warn("Compensation {} has no employee reference, skipping", document.get("_id"));
+                continue;
+            }
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", document.get("_id")),
+                    Updates.set(EMPLOYEE_ID, ((DBRef) employee).getId())));
+            if (updates.size() == BATCH_SIZE) {
+                migrated += flush(collection, updates);
+            }
+        }
+        migrated += flush(collection, updates);
+
+        if (migrated > 0) {
+            LOG.info("Backfilled employee id on {} compensation documents", migrated);
+        }
+        return migrated;
+    }
+
+    private int flush(MongoCollection<Document> collection, List<WriteModel<Document>> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int count = collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getMatchedCount();
+        updates.clear();
+        return count;
+    }
+}
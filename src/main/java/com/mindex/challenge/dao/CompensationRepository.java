@@ -1,11 +1,27 @@
 package com.mindex.challenge.dao;
 
 import com.mindex.challenge.data.Compensation;
-import com.mindex.challenge.data.Employee;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.mindex.challenge.config.CacheConfig.COMPENSATION_CACHE;
+
 @Repository
 public interface CompensationRepository extends MongoRepository<Compensation, String> {
-    Compensation findByEmployee(Employee employee);
+    //the latest record that had taken effect on the given date, only today's answer is cached and only under its own employee
+    @Cacheable(cacheNames = COMPENSATION_CACHE, key = "#p0 + '@' + #p1", condition = "#p1.equals(T(java.time.LocalDate).now())", unless = "#result == null")
+    Compensation findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(String employeeId, LocalDate asOf);
+
+    @Query(value = "{ 'employeeId' : ?0, 'effectiveDate' : { '$gte' : ?1, '$lte' : ?2 } }", sort = "{ 'effectiveDate' : 1 }")
+    List<Compensation> findHistory(String employeeId, LocalDate from, LocalDate to);
+
+    //a new record changes the answer for every date from its effective date on, of those only today's is cached
+    @CacheEvict(cacheNames = COMPENSATION_CACHE, key = "#p0.employeeId + '@' + T(java.time.LocalDate).now()")
+    <S extends Compensation> S insert(S compensation);
 }
@@ -1,10 +1,24 @@
 package com.mindex.challenge.dao;
 
 import com.mindex.challenge.data.Employee;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import static com.mindex.challenge.config.CacheConfig.EMPLOYEE_CACHE;
+
 @Repository
 public interface EmployeeRepository extends MongoRepository<Employee, String> {
+    @Cacheable(cacheNames = EMPLOYEE_CACHE, key = "#p0", unless = "#result == null")
     Employee findByEmployeeId(String employeeId);
+
+    List<Employee> findByEmployeeIdIn(Collection<String> employeeIds);
+
+    //only the ids, managers and reporting lines, enough to walk past parts of the tree that are not returned
+    @Query(value = "{ '_id' : { '$in' : ?0 } }", fields = "{ 'managerId' : 1, 'directReports._id' : 1 }")
+    List<Employee> findDirectReportsByEmployeeIdIn(Collection<String> employeeIds);
 }
@@ -0,0 +1,178 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.CursorPage;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds the directory search shared by the blocking and reactive stacks and ensures its indexes. Every combination
+ * of filters has its own index, with the filters first, then the name order results are paged in, then the remaining
+ * directory fields. A search only returns directory fields, so on a real server it is answered from the index alone,
+ * without loading a single document. Pages are keyset paginated: the cursor is the last name, first name and id of the last result,
+ * so a page picks up right after it instead of skipping over everything before it.
+ */
+@Component
+public class EmployeeSearch {
+
+    private static final String ID = "_id";
+
+    private static final String FIRST_NAME = "firstName";
+
+    private static final String LAST_NAME = "lastName";
+
+    private static final String POSITION = "position";
+
+    private static final String DEPARTMENT = "department";
+
+    //names only hold letters, the id goes last so it is split off whatever it holds
+    private static final String CURSOR_SEPARATOR = "\n";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void init() {
+        ensureIndexes();
+    }
+
+    /**
+     * Create the search indexes if they are missing, does not rely on automatic index creation being enabled
+     */
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(Employee.class);
+        indexOps.createIndex(new CompoundIndexDefinition(index(true, true)).named(Employee.BY_DEPARTMENT_AND_POSITION));
+        indexOps.createIndex(new CompoundIndexDefinition(index(true, false)).named(Employee.BY_DEPARTMENT));
+        indexOps.createIndex(new CompoundIndexDefinition(index(false, true)).named(Employee.BY_POSITION));
+        indexOps.createIndex(new CompoundIndexDefinition(index(false, false)).named(Employee.BY_NAME));
+    }
+
+    /**
+     * The keys of the index a search runs on: the filters, the name order and the rest of the directory fields
+     * @param department whether the search filters by department
+     * @param position whether the search filters by position
+     * @return Document
+     */
+    public static Document index(boolean department, boolean position) {
+        Document keys = new Document();
+        if (department) {
+            keys.append(DEPARTMENT, 1);
+        }
+        if (position) {
+            keys.append(POSITION, 1);
+        }
+        keys.append(LAST_NAME, 1).append(FIRST_NAME, 1).append(ID, 1);
+        keys.putIfAbsent(DEPARTMENT, 1);
+        keys.putIfAbsent(POSITION, 1);
+        return keys;
+    }
+
+    /**
+     * Find employees by exact department and position and by the start of their last name, in name order.
+     * One more result than the limit is asked for to tell whether there is a next page.
+     * @param department null to search every department
+     * @param position null to search every position
+     * @param namePrefix case sensitive start of the last name, null or empty for any name
+     * @param after the last result of the previous page, null for the first page
+     * @param limit
+     * @return Query
+     */
+    public static Query query(String department, String position, String namePrefix, Employee after, int limit) {
+        Criteria criteria = new Criteria();
+        if (department != null) {
+            criteria.and(DEPARTMENT).is(department);
+        }
+        if (position != null) {
+            criteria.and(POSITION).is(position);
+        }
+        if (StringUtils.isNotEmpty(namePrefix)) {
+            //a range rather than an anchored regex, it bounds the index scan to the prefix on every server
+            criteria.and(LAST_NAME).gte(namePrefix).lt(successor(namePrefix));
+        }
+        if (after != null) {
+            criteria.orOperator(
+                    where(LAST_NAME).gt(after.getLastName()),
+                    where(LAST_NAME).is(after.getLastName()).and(FIRST_NAME).gt(after.getFirstName()),
+                    where(LAST_NAME).is(after.getLastName()).and(FIRST_NAME).is(after.getFirstName()).and(ID).gt(after.getEmployeeId()));
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(LAST_NAME, FIRST_NAME, ID))
+                .limit(limit + 1)
+                .withHint(index(department != null, position != null));
+        query.fields().include(ID).include(FIRST_NAME).include(LAST_NAME).include(POSITION).include(DEPARTMENT);
+        return query;
+    }
+
+    /**
+     * Turn the results of a search into a page, the extra result asked for only tells there is a next page
+     * @param found
+     * @param limit
+     * @return CursorPage<Employee>
+     */
+    public static CursorPage<Employee> page(List<Employee> found, int limit) {
+        if (found.size() <= limit) {
+            return new CursorPage<>(found, null);
+        }
+        List<Employee> items = new ArrayList<>(found.subList(0, limit));
+        return new CursorPage<>(items, cursorAfter(items.get(limit - 1)));
+    }
+
+    /**
+     * @param last the last result on a page that has a next page
+     * @return String opaque cursor for the next page
+     */
+    public static String cursorAfter(Employee last) {
+        String key = last.getLastName() + CURSOR_SEPARATOR + last.getFirstName() + CURSOR_SEPARATOR + last.getEmployeeId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor
+     * @return Employee holding the name and id to continue after, null for the first page
+     */
+    public static Employee decodeCursor(String cursor) {
+        if (StringUtils.isEmpty(cursor)) {
+            return null;
+        }
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(CURSOR_SEPARATOR, 3);
+            if (key.length == 3) {
+                Employee after = new Employee();
+                after.setLastName(key[0]);
+                after.setFirstName(key[1]);
+                after.setEmployeeId(key[2]);
+                return after;
+            }
+        } catch (IllegalArgumentException e) {
+            //not base64, the cursor was not one of ours
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * The first string after every string that starts with the prefix
+     * @param prefix
+     * @return String
+     */
+    private static String successor(String prefix) {
+        int last = prefix.length() - 1;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.EmployeePatch;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds the single round trip updates shared by the blocking and reactive stacks. Only the fields a client may edit
+ * are set, so the derived manager id is kept without reading the document first, and the version is bumped in the
+ * same write. Matching on the expected version turns an update into a compare and set.
+ */
+public final class EmployeeUpdates {
+
+    public static final String VERSION = "version";
+
+    private static final String EMPLOYEE_ID = "employeeId";
+
+    private static final String DIRECT_REPORTS = "directReports";
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private EmployeeUpdates() {
+    }
+
+    /**
+     * Match the employee, and only at the expected version when one is given
+     * @param employeeId
+     * @param expectedVersion null to update whatever version is stored
+     * @return Query
+     */
+    public static Query matching(String employeeId, Long expectedVersion) {
+        Criteria criteria = where(EMPLOYEE_ID).is(employeeId);
+        if (expectedVersion != null) {
+            //employees written before versioning, or by bulk inserts, have no version yet and count as version 0
+            criteria = expectedVersion == 0 ? criteria.and(VERSION).in(0L, null) : criteria.and(VERSION).is(expectedVersion);
+        }
+        return new Query(criteria);
+    }
+
+    /**
+     * Match the employee as for any update, and for a patch that adds direct reports only while it lists none of
+     * them. $addToSet compares whole subdocuments, so a report stored with more than its id would be added again.
+     * @param employeeId
+     * @param expectedVersion null to update whatever version is stored
+     * @param patch
+     * @return Query
+     */
+    public static Query matching(String employeeId, Long expectedVersion, EmployeePatch patch) {
+        Query query = matching(employeeId, expectedVersion);
+        if (CollectionUtils.isNotEmpty(patch.getAddDirectReports())) {
+            query.addCriteria(where(DIRECT_REPORTS).not().elemMatch(where("_id").in(patch.getAddDirectReports())));
+        }
+        return query;
+    }
+
+    /**
+     * The patch without the reports the employee already lists, to apply once the patch matched nothing because
+     * some of the reports it adds were listed already
+     * @param patch
+     * @param current the employee as stored
+     * @return EmployeePatch or null if the patch changes nothing else
+     */
+    public static EmployeePatch withoutListed(EmployeePatch patch, Employee current) {
+        Set<String> listed = new HashSet<>();
+        for (Employee report : CollectionUtils.emptyIfNull(current.getDirectReports())) {
+            listed.add(report.getEmployeeId());
+        }
+        List<String> adds = patch.getAddDirectReports().stream()
+                .filter(id -> !listed.contains(id))
+                .collect(Collectors.toList());
+        if (adds.isEmpty() && patch.getFirstName() == null && patch.getLastName() == null
+                && patch.getPosition() == null && patch.getDepartment() == null) {
+            return null;
+        }
+
+        EmployeePatch remaining = new EmployeePatch();
+        remaining.setFirstName(patch.getFirstName());
+        remaining.setLastName(patch.getLastName());
+        remaining.setPosition(patch.getPosition());
+        remaining.setDepartment(patch.getDepartment());
+        remaining.setAddDirectReports(adds);
+        return remaining;
+    }
+
+    /**
+     * Set the client editable fields of the employee and bump its version
+     * @param employee
+     * @return Update
+     */
+    public static Update replacing(Employee employee) {
+        return new Update()
+                .set("firstName", employee.getFirstName())
+                .set("lastName", employee.getLastName())
+                .set("position", employee.getPosition())
+                .set("department", employee.getDepartment())
+                .set(DIRECT_REPORTS, employee.getDirectReports())
+                .inc(VERSION, 1);
+    }
+
+    /**
+     * Set only the fields a patch changes and add or remove direct reports in place, so the size of the write does
+     * not grow with the size of the team. Reports are added by id, apply it with the patch's own query so one that is
+     * already listed is not added again.
+     * @param patch
+     * @return Update
+     */
+    public static Update patching(EmployeePatch patch) {
+        boolean adds = CollectionUtils.isNotEmpty(patch.getAddDirectReports());
+        boolean removes = CollectionUtils.isNotEmpty(patch.getRemoveDirectReports());
+        if (adds && removes) {
+            //mongo rejects two operators on the same array in one update and two writes would not be atomic
+            throw new IllegalArgumentException("Direct reports cannot be added and removed in the same patch!");
+        }
+
+        Update update = new Update();
+        setIfPresent(update, "firstName", patch.getFirstName());
+        setIfPresent(update, "lastName", patch.getLastName());
+        setIfPresent(update, "position", patch.getPosition());
+        setIfPresent(update, "department", patch.getDepartment());
+        if (adds) {
+            update.addToSet(DIRECT_REPORTS).each(patch.getAddDirectReports().stream()
+                    .map(EmployeeUpdates::reference)
+                    .toArray());
+        } else if (removes) {
+            update.pull(DIRECT_REPORTS, new Document("_id", new Document("$in", patch.getRemoveDirectReports())));
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            throw new IllegalArgumentException("Patch does not change anything!");
+        }
+        return update.inc(VERSION, 1);
+    }
+
+    private static void setIfPresent(Update update, String field, String value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    private static Employee reference(String employeeId) {
+        if (StringUtils.isBlank(employeeId)) {
+            throw new IllegalArgumentException("Direct report ids cannot be blank!");
+        }
+        Employee report = new Employee();
+        report.setEmployeeId(employeeId);
+        return report;
+    }
+
+    /**
+     * @return FindAndModifyOptions returning the employee as written by the update
+     */
+    public static FindAndModifyOptions returnNew() {
+        return RETURN_NEW;
+    }
+}
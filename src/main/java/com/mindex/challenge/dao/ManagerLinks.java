@@ -0,0 +1,258 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.apache.commons.collections4.CollectionUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.mindex.challenge.config.CacheConfig.EMPLOYEE_CACHE;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps the manager id of every employee in line with the direct reports of their manager, so the management chain
+ * can be walked upwards one indexed lookup at a time. A report a manager claims is taken off the reporting lines of
+ * whoever listed it before, so every employee is listed by their own manager only. Ensures the manager id index and
+ * backfills the field on employees written before it existed.
+ */
+@Component
+public class ManagerLinks {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ManagerLinks.class);
+
+    private static final String EMPLOYEE_ID = "employeeId";
+
+    private static final String MANAGER_ID = "managerId";
+
+    private static final String DIRECT_REPORTS = "directReports";
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @PostConstruct
+    public void init() {
+        ensureIndex();
+        backfill();
+    }
+
+    /**
+     * Create the manager id index if it is missing, does not rely on automatic index creation being enabled
+     */
+    public void ensureIndex() {
+        mongoTemplate.indexOps(Employee.class).createIndex(new Index().on(MANAGER_ID, Sort.Direction.ASC));
+    }
+
+    /**
+     * Point the direct reports of a manager at them and release anyone they no longer list
+     * @param manager
+     * @return List<Employee> the managers that lost reports to them, with their remaining reporting lines
+     */
+    public List<Employee> link(Employee manager) {
+        String managerId = manager.getEmployeeId();
+        List<String> reportIds = reportIds(manager);
+
+        Query listed = new Query(where(MANAGER_ID).is(managerId).and(EMPLOYEE_ID).nin(reportIds));
+        listed.fields().include(EMPLOYEE_ID);
+        List<String> releasedIds = new ArrayList<>();
+        for (Employee released : mongoTemplate.find(listed, Employee.class)) {
+            releasedIds.add(released.getEmployeeId());
+        }
+        release(managerId, releasedIds);
+        return claim(managerId, reportIds);
+    }
+
+    /**
+     * Point reports added to a manager at them and take them off the reporting lines of whoever listed them before,
+     * in the same bulk write
+     * @param managerId
+     * @param reportIds
+     * @return List<Employee> the managers that lost reports to them, with their remaining reporting lines
+     */
+    public List<Employee> claim(String managerId, Collection<String> reportIds) {
+        if (CollectionUtils.isEmpty(reportIds)) {
+            return Collections.emptyList();
+        }
+        List<String> previousIds = listingIds(reportIds, Collections.singleton(managerId));
+        BulkOperations updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Employee.class);
+        claim(updates, managerId, reportIds);
+        updates.execute();
+        evict(reportIds);
+        evict(previousIds);
+        return reportingLines(previousIds);
+    }
+
+    /**
+     * Release reports a manager no longer lists
+     * @param managerId
+     * @param reportIds
+     */
+    public void release(String managerId, Collection<String> reportIds) {
+        if (CollectionUtils.isEmpty(reportIds)) {
+            return;
+        }
+        //only release reports that have not been claimed by another manager in the meantime
+        mongoTemplate.updateMulti(new Query(where(EMPLOYEE_ID).in(reportIds).and(MANAGER_ID).is(managerId)),
+                new Update().unset(MANAGER_ID), Employee.class);
+        evict(reportIds);
+    }
+
+    /**
+     * Point the direct reports of newly created managers at them in a single bulk write, there is nobody to release
+     * because nobody could have been linked to them before. The writes are ordered, so a report two of the managers
+     * list ends up with the last of them.
+     * @param managers
+     * @return List<Employee> the other managers that lost reports to them, with their remaining reporting lines
+     */
+    public List<Employee> linkAll(Collection<Employee> managers) {
+        BulkOperations updates = null;
+        List<String> managerIds = new ArrayList<>();
+        List<String> linkedIds = new ArrayList<>();
+        for (Employee manager : managers) {
+            List<String> reportIds = reportIds(manager);
+            if (reportIds.isEmpty()) {
+                continue;
+            }
+            if (updates == null) {
+                updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Employee.class);
+            }
+            claim(updates, manager.getEmployeeId(), reportIds);
+            managerIds.add(manager.getEmployeeId());
+            linkedIds.addAll(reportIds);
+        }
+        if (updates == null) {
+            return Collections.emptyList();
+        }
+        List<String> previousIds = listingIds(linkedIds, managerIds);
+        updates.execute();
+        evict(linkedIds);
+        evict(previousIds);
+        return reportingLines(previousIds);
+    }
+
+    /**
+     * Set the manager id on every listed report that does not have one yet
+     * @return int the number of employees migrated
+     */
+    public int backfill() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Employee.class));
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        int migrated = 0;
+
+        for (Document manager : collection.find(Filters.exists(DIRECT_REPORTS)).projection(Projections.include(DIRECT_REPORTS + "._id"))) {
+            for (Object report : CollectionUtils.emptyIfNull((List<?>) manager.get(DIRECT_REPORTS))) {
+                if (!(report instanceof Document) || ((Document) report).get("_id") == null) {
+                    continue;
+                }
+                updates.add(new UpdateOneModel<>(
+                        Filters.and(Filters.eq("_id", ((Document) report).get("_id")), Filters.exists(MANAGER_ID, false)),
+                        Updates.set(MANAGER_ID, manager.get("_id"))));
+                if (updates.size() == BATCH_SIZE) {
+                    migrated += flush(collection, updates);
+                }
+            }
+        }
+        migrated += flush(collection, updates);
+
+        if (migrated > 0) {
+            //cached employees were read before their manager id was set
+            cacheManager.getCache(EMPLOYEE_CACHE).clear();
+            LOG.info("Backfilled manager id on {} employees", migrated);
+        }
+        return migrated;
+    }
+
+    /**
+     * Take the reports off the reporting lines of anyone else who lists them and point them at the manager,
+     * bumping the version of those who lose them so an update based on their old reporting lines is turned down
+     * @param updates
+     * @param managerId
+     * @param reportIds
+     */
+    private static void claim(BulkOperations updates, String managerId, Collection<String> reportIds) {
+        updates.updateMulti(new Query(where(DIRECT_REPORTS).elemMatch(where("_id").in(reportIds)).and(EMPLOYEE_ID).ne(managerId)),
+                new Update().pull(DIRECT_REPORTS, new Document("_id", new Document("$in", reportIds))).inc(EmployeeUpdates.VERSION, 1));
+        updates.updateMulti(new Query(where(EMPLOYEE_ID).in(reportIds)), Update.update(MANAGER_ID, managerId));
+    }
+
+    /**
+     * @param reportIds
+     * @param managerIds
+     * @return List<String> ids of the employees other than the managers that list any of the reports
+     */
+    private List<String> listingIds(Collection<String> reportIds, Collection<String> managerIds) {
+        Query listing = new Query(where(DIRECT_REPORTS).elemMatch(where("_id").in(reportIds)).and(EMPLOYEE_ID).nin(managerIds));
+        listing.fields().include(EMPLOYEE_ID);
+        List<String> ids = new ArrayList<>();
+        for (Employee employee : mongoTemplate.find(listing, Employee.class)) {
+            ids.add(employee.getEmployeeId());
+        }
+        return ids;
+    }
+
+    /**
+     * @param employeeIds
+     * @return List<Employee> the employees with only their ids and reporting lines loaded
+     */
+    private List<Employee> reportingLines(List<String> employeeIds) {
+        if (employeeIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query query = new Query(where(EMPLOYEE_ID).in(employeeIds));
+        query.fields().include(EMPLOYEE_ID).include(DIRECT_REPORTS + "._id");
+        return mongoTemplate.find(query, Employee.class);
+    }
+
+    private List<String> reportIds(Employee manager) {
+        List<String> ids = new ArrayList<>();
+        for (Employee report : CollectionUtils.emptyIfNull(manager.getDirectReports())) {
+            if (report != null && report.getEmployeeId() != null) {
+                ids.add(report.getEmployeeId());
+            }
+        }
+        return ids;
+    }
+
+    private void evict(Collection<String> employeeIds) {
+        Cache cache = cacheManager.getCache(EMPLOYEE_CACHE);
+        for (String employeeId : employeeIds) {
+            cache.evict(employeeId);
+        }
+    }
+
+    private int flush(MongoCollection<Document> collection, List<WriteModel<Document>> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int count = collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getMatchedCount();
+        updates.clear();
+        return count;
+    }
+}
@@ -0,0 +1,664 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Read optimized, in memory copy of the reporting lines between employees.
+ * Employee ids are mapped to int ordinals and direct reports are kept in compressed sparse row form, i.e. the reports
+ * of ordinal i are targets[offsets[i]] up to targets[offsets[i + 1]], so the tree can be walked without hydrating a
+ * single Employee. Rows changed since the last compaction live in an override table until enough of them pile up.
+ * While the reporting lines form a forest every employee has a single manager, so the index also keeps a parent
+ * pointer and a materialized number of reports per employee. Updates push only the change in count up the chain of
+ * managers, which turns reading a count into an array lookup. When the lines stop forming a forest (an employee listed
+ * under two managers, or a cycle) the counts are recomputed on next read: employees whose whole subtree is still a
+ * private tree keep an exact count, employees that can reach a cycle are flagged, and anything else is answered by a
+ * walk over the rows with a visited bitset that reuses the private counts instead of descending into them.
+ * The index is loaded from the database on first use and patched as employees are created and updated.
+ */
+@Component
+public class OrgGraphIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrgGraphIndex.class);
+
+    //returned when the index has never seen an employee id
+    public static final int UNKNOWN = -1;
+
+    private static final int NO_MANAGER = -1;
+
+    //report counts for employees whose subtree shares reports with another manager and has to be walked
+    private static final int SHARED = -1;
+
+    //report counts for employees that can reach a cycle
+    private static final int CYCLE = -2;
+
+    private static final byte NEW = 0;
+    private static final byte ON_PATH = 1;
+    private static final byte DONE = 2;
+
+    private static final int[] NO_REPORTS = new int[0];
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MIN_OVERRIDES_BEFORE_COMPACTION = 1024;
+
+    //rough per object costs on a 64 bit JVM with compressed oops, used for the footprint report
+    private static final int REFERENCE_BYTES = 4;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int STRING_BYTES = 24 + ARRAY_HEADER_BYTES;
+    private static final int MAP_ENTRY_BYTES = 32 + 16 + 2 * REFERENCE_BYTES;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //walk stacks are reused per thread so a steady stream of reads does not allocate
+    private final ThreadLocal<IntList> stacks = ThreadLocal.withInitial(IntList::new);
+
+    private final ThreadLocal<BitSet> visitedSets = ThreadLocal.withInitial(BitSet::new);
+
+    private volatile boolean built;
+
+    //whether report counts reflect the current rows
+    private volatile boolean counted;
+
+    private Map<String, Integer> ordinals;
+
+    private String[] ids;
+
+    private int size;
+
+    private int[] offsets;
+
+    private int[] targets;
+
+    private int compactedSize;
+
+    private int[][] overrides;
+
+    private int overrideCount;
+
+    private int[] parents;
+
+    //number of managers listing each employee, anything above one means the lines are not a forest
+    private int[] managerCounts;
+
+    private int sharedReports;
+
+    //exact distinct count for employees heading a private tree, otherwise SHARED or CYCLE
+    private int[] reportCounts;
+
+    //whether the lines form a forest, in which case every report count is exact and kept up to date by updates
+    private boolean materialized;
+
+    /**
+     * Count all of the distinct reports under an employee
+     * @param employeeId
+     * @return int number of reports or UNKNOWN when the employee is not in the index
+     * @throws CyclicReportingStructureException when a cycle can be reached from the employee
+     */
+    public int countReports(String employeeId) {
+        while (true) {
+            ensureBuilt();
+            lock.readLock().lock();
+            try {
+                //an update may have slipped in between loading the counts and taking the lock
+                if (!built || !counted) {
+                    continue;
+                }
+                Integer ordinal = ordinals.get(employeeId);
+                if (ordinal == null) {
+                    return UNKNOWN;
+                }
+                if (reportCounts[ordinal] == CYCLE) {
+                    throw new CyclicReportingStructureException("Reporting structure for employee " + employeeId + " contains a cycle");
+                }
+                if (reportCounts[ordinal] >= 0) {
+                    return reportCounts[ordinal];
+                }
+
+                IntList stack = stacks.get();
+                BitSet visited = visitedSets.get();
+                stack.clear();
+                visited.clear();
+                stack.add(ordinal);
+                visited.set(ordinal);
+                int total = 0;
+                while (stack.size() > 0) {
+                    int manager = stack.pop();
+                    int reports = reportCount(manager);
+                    for (int i = 0; i < reports; i++) {
+                        int report = reportAt(manager, i);
+                        if (visited.get(report)) {
+                            continue;
+                        }
+                        visited.set(report);
+                        total++;
+                        //nobody inside a private tree can be reached any other way, so take its size instead of walking it
+                        if (reportCounts[report] >= 0) {
+                            total += reportCounts[report];
+                        } else {
+                            stack.add(report);
+                        }
+                    }
+                }
+                return total;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Count the distinct reports no more than maxDepth levels below an employee, walking the rows a level at a time.
+     * The walk is bounded, so a cycle is not an error here and everyone on it is counted once.
+     * @param employeeId
+     * @param maxDepth 1 for direct reports only
+     * @return int number of reports or UNKNOWN when the employee is not in the index
+     */
+    public int countReports(String employeeId, int maxDepth) {
+        while (true) {
+            ensureBuilt();
+            lock.readLock().lock();
+            try {
+                if (!built) {
+                    continue;
+                }
+                Integer ordinal = ordinals.get(employeeId);
+                if (ordinal == null) {
+                    return UNKNOWN;
+                }
+
+                IntList level = stacks.get();
+                IntList next = new IntList();
+                BitSet visited = visitedSets.get();
+                level.clear();
+                visited.clear();
+                level.add(ordinal);
+                visited.set(ordinal);
+                int total = 0;
+                for (int depth = 0; depth < maxDepth && level.size() > 0; depth++) {
+                    next.clear();
+                    for (int i = 0; i < level.size(); i++) {
+                        int manager = level.get(i);
+                        int reports = reportCount(manager);
+                        for (int j = 0; j < reports; j++) {
+                            int report = reportAt(manager, j);
+                            if (!visited.get(report)) {
+                                visited.set(report);
+                                total++;
+                                next.add(report);
+                            }
+                        }
+                    }
+                    IntList swap = level;
+                    level = next;
+                    next = swap;
+                }
+                return total;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replace the direct reports of an employee in the index, this is a no-op until the index has been loaded.
+     * An update arriving while the index is being loaded waits for the load and is applied on top of it, the cursor
+     * may already have passed the employee.
+     * @param employee
+     */
+    public void update(Employee employee) {
+        lock.writeLock().lock();
+        try {
+            //not loaded yet, the load reads this write from the database
+            if (!built) {
+                return;
+            }
+            int ordinal = ordinalOf(employee.getEmployeeId());
+            List<Employee> reports = employee.getDirectReports() == null ? Collections.emptyList() : employee.getDirectReports();
+            int[] row = new int[reports.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = ordinalOf(reports.get(i).getEmployeeId());
+            }
+
+            //detach the old reports and attach the new ones, collecting how much the count of this employee moves
+            int delta = 0;
+            for (int report : rowOf(ordinal)) {
+                delta -= detach(ordinal, report);
+            }
+            for (int report : row) {
+                delta += attach(ordinal, report);
+            }
+
+            if (overrides[ordinal] == null) {
+                overrideCount++;
+            }
+            overrides[ordinal] = row;
+
+            if (materialized) {
+                //only this employee and the managers above it can see a different count
+                for (int manager = ordinal; manager != NO_MANAGER; manager = parents[manager]) {
+                    reportCounts[manager] += delta;
+                }
+            } else {
+                //without a single chain of managers there is no telling whose counts moved, recompute on next read
+                counted = false;
+            }
+
+            if (overrideCount > Math.max(MIN_OVERRIDES_BEFORE_COMPACTION, size / 8)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the index so it is reloaded from the database on next use, i.e. after a bulk load
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+            ordinals = null;
+            ids = null;
+            offsets = null;
+            targets = null;
+            overrides = null;
+            parents = null;
+            managerCounts = null;
+            reportCounts = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the contents of the index with the reporting lines of the employees passed in
+     * @param employees
+     */
+    public void rebuild(Iterator<Employee> employees) {
+        lock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            ordinals = new HashMap<>();
+            ids = new String[INITIAL_CAPACITY];
+            overrides = new int[INITIAL_CAPACITY][];
+            overrideCount = 0;
+            parents = new int[INITIAL_CAPACITY];
+            managerCounts = new int[INITIAL_CAPACITY];
+            reportCounts = new int[INITIAL_CAPACITY];
+            sharedReports = 0;
+            size = 0;
+
+            //collect every reporting line first since reports may show up before their own record does
+            IntList sources = new IntList();
+            IntList reports = new IntList();
+            while (employees.hasNext()) {
+                Employee employee = employees.next();
+                int source = ordinalOf(employee.getEmployeeId());
+                for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
+                    sources.add(source);
+                    reports.add(ordinalOf(report.getEmployeeId()));
+                }
+            }
+
+            //counting sort the lines by manager into compressed sparse rows
+            offsets = new int[size + 1];
+            for (int i = 0; i < sources.size(); i++) {
+                offsets[sources.get(i) + 1]++;
+            }
+            for (int i = 0; i < size; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] cursor = Arrays.copyOf(offsets, size);
+            targets = new int[reports.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                targets[cursor[sources.get(i)]++] = reports.get(i);
+                if (++managerCounts[reports.get(i)] == 2) {
+                    sharedReports++;
+                }
+            }
+            compactedSize = size;
+            materialize();
+            built = true;
+
+            LOG.info("Built org graph index of {} employees and {} reporting lines in {} ms, estimated footprint {} KB, counts {}",
+                    size, targets.length, System.currentTimeMillis() - start, estimateFootprintBytes() / 1024,
+                    materialized ? "materialized" : "walked since the reporting lines are not a forest");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Estimate how much heap the index holds on to
+     * @return long bytes
+     */
+    public long estimateFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            if (!built) {
+                return 0;
+            }
+            long bytes = 2L * ARRAY_HEADER_BYTES + 4L * offsets.length + 4L * targets.length;
+            bytes += 2L * (ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * ids.length);
+            bytes += 3L * (ARRAY_HEADER_BYTES + 4L * parents.length);
+            for (int i = 0; i < size; i++) {
+                bytes += STRING_BYTES + 2L * ids[i].length() + MAP_ENTRY_BYTES;
+                if (overrides[i] != null) {
+                    bytes += ARRAY_HEADER_BYTES + 4L * overrides[i].length;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether counts are currently answered from the materialized counts rather than by walking the rows
+     * @return boolean
+     */
+    boolean isMaterialized() {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return built && materialized;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load the index from the database if it has not been loaded yet
+     */
+    private void ensureBuilt() {
+        if (built && counted) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (built && !counted) {
+                materialize();
+            } else if (!built) {
+                //only the reporting lines are needed, so leave every other field in the database
+                Query query = new Query();
+                query.fields().include("directReports._id");
+                try (Stream<Employee> employees = mongoTemplate.stream(query, Employee.class)) {
+                    rebuild(employees.iterator());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Push the direct reports of an ordinal onto the stack
+     * @param ordinal
+     * @param stack
+     * @return int number of direct reports pushed
+     */
+    private int pushReports(int ordinal, IntList stack) {
+        int[] override = overrides[ordinal];
+        if (override != null) {
+            for (int report : override) {
+                stack.add(report);
+            }
+            return override.length;
+        }
+        if (ordinal >= compactedSize) {
+            return 0;
+        }
+        for (int i = offsets[ordinal]; i < offsets[ordinal + 1]; i++) {
+            stack.add(targets[i]);
+        }
+        return offsets[ordinal + 1] - offsets[ordinal];
+    }
+
+    /**
+     * Get the direct reports of an ordinal
+     * @param ordinal
+     * @return int[]
+     */
+    private int[] rowOf(int ordinal) {
+        if (overrides[ordinal] != null) {
+            return overrides[ordinal];
+        }
+        if (ordinal >= compactedSize) {
+            return NO_REPORTS;
+        }
+        return Arrays.copyOfRange(targets, offsets[ordinal], offsets[ordinal + 1]);
+    }
+
+    /**
+     * Remove a reporting line from the parent pointers
+     * @param manager
+     * @param report
+     * @return int how much the count of the manager drops by
+     */
+    private int detach(int manager, int report) {
+        if (managerCounts[report]-- == 2) {
+            sharedReports--;
+        }
+        if (parents[report] == manager) {
+            parents[report] = NO_MANAGER;
+        }
+        return 1 + reportCounts[report];
+    }
+
+    /**
+     * Add a reporting line to the parent pointers, giving up on the materialized counts if the line breaks the forest
+     * @param manager
+     * @param report
+     * @return int how much the count of the manager grows by
+     */
+    private int attach(int manager, int report) {
+        if (++managerCounts[report] == 2) {
+            sharedReports++;
+            materialized = false;
+        } else if (materialized && isManagedBy(manager, report)) {
+            //the report already sits above the manager, so this line closes a cycle
+            materialized = false;
+        }
+        parents[report] = manager;
+        return 1 + reportCounts[report];
+    }
+
+    /**
+     * Check whether an employee is the manager passed in or one of the managers above it, only valid for a forest
+     * @param ordinal
+     * @param manager
+     * @return boolean
+     */
+    private boolean isManagedBy(int ordinal, int manager) {
+        for (int current = ordinal; current != NO_MANAGER; current = parents[current]) {
+            if (current == manager) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recompute the parent pointers and report counts from the rows with an iterative depth first walk, flagging
+     * employees that can reach a cycle and employees whose subtree shares reports with another manager
+     */
+    private void materialize() {
+        byte[] states = new byte[size];
+        int[] positions = new int[size];
+        IntList path = new IntList();
+        boolean cycles = false;
+        Arrays.fill(parents, 0, size, NO_MANAGER);
+        Arrays.fill(reportCounts, 0, size, 0);
+
+        for (int start = 0; start < size; start++) {
+            if (states[start] != NEW) {
+                continue;
+            }
+            states[start] = ON_PATH;
+            path.add(start);
+            while (path.size() > 0) {
+                int manager = path.peek();
+                if (positions[manager] < reportCount(manager)) {
+                    int report = reportAt(manager, positions[manager]++);
+                    parents[report] = manager;
+                    if (states[report] == NEW) {
+                        states[report] = ON_PATH;
+                        path.add(report);
+                    } else if (states[report] == ON_PATH) {
+                        //the report is still being walked above us, so this line closes a cycle
+                        reportCounts[manager] = CYCLE;
+                        cycles = true;
+                    }
+                    continue;
+                }
+
+                //every report is done, so the count of this employee can be settled from theirs
+                path.pop();
+                states[manager] = DONE;
+                if (reportCounts[manager] == CYCLE) {
+                    continue;
+                }
+                int total = 0;
+                for (int i = 0; i < reportCount(manager) && total != CYCLE; i++) {
+                    int report = reportAt(manager, i);
+                    if (reportCounts[report] == CYCLE) {
+                        total = CYCLE;
+                    } else if (total == SHARED || reportCounts[report] == SHARED || managerCounts[report] > 1) {
+                        total = SHARED;
+                    } else {
+                        total += 1 + reportCounts[report];
+                    }
+                }
+                reportCounts[manager] = total;
+            }
+        }
+        materialized = sharedReports == 0 && !cycles;
+        counted = true;
+    }
+
+    /**
+     * Get the number of direct reports of an ordinal
+     * @param ordinal
+     * @return int
+     */
+    private int reportCount(int ordinal) {
+        if (overrides[ordinal] != null) {
+            return overrides[ordinal].length;
+        }
+        return ordinal < compactedSize ? offsets[ordinal + 1] - offsets[ordinal] : 0;
+    }
+
+    /**
+     * Get one direct report of an ordinal
+     * @param ordinal
+     * @param index
+     * @return int
+     */
+    private int reportAt(int ordinal, int index) {
+        return overrides[ordinal] != null ? overrides[ordinal][index] : targets[offsets[ordinal] + index];
+    }
+
+    /**
+     * Get the ordinal of an employee id, assigning the next one if the id has not been seen yet
+     * @param employeeId
+     * @return int
+     */
+    private int ordinalOf(String employeeId) {
+        Integer ordinal = ordinals.get(employeeId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            overrides = Arrays.copyOf(overrides, size * 2);
+            parents = Arrays.copyOf(parents, size * 2);
+            managerCounts = Arrays.copyOf(managerCounts, size * 2);
+            reportCounts = Arrays.copyOf(reportCounts, size * 2);
+        }
+        ids[size] = employeeId;
+        parents[size] = NO_MANAGER;
+        managerCounts[size] = 0;
+        reportCounts[size] = 0;
+        ordinals.put(employeeId, size);
+        return size++;
+    }
+
+    /**
+     * Fold the override table back into the compressed rows
+     */
+    private void compact() {
+        IntList rows = new IntList();
+        int[] compactedOffsets = new int[size + 1];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            pushReports(ordinal, rows);
+            compactedOffsets[ordinal + 1] = rows.size();
+        }
+        offsets = compactedOffsets;
+        targets = rows.toArray();
+        compactedSize = size;
+        Arrays.fill(overrides, null);
+        overrideCount = 0;
+        LOG.debug("Compacted org graph index of {} employees", size);
+    }
+
+    /**
+     * Growable int array so ordinals never get boxed
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int peek() {
+            return values[size - 1];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
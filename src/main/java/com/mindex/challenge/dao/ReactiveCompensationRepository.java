@@ -0,0 +1,21 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non blocking counterpart of {@link CompensationRepository} for the reactive profile, reads are not cached
+ */
+@Repository
+public interface ReactiveCompensationRepository extends ReactiveMongoRepository<Compensation, String> {
+    Mono<Compensation> findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(String employeeId, LocalDate asOf);
+
+    @Query(value = "{ 'employeeId' : ?0, 'effectiveDate' : { '$gte' : ?1, '$lte' : ?2 } }", sort = "{ 'effectiveDate' : 1 }")
+    Flux<Compensation> findHistory(String employeeId, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,24 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Non blocking counterpart of {@link EmployeeRepository} for the reactive profile, reads are not cached
+ */
+@Repository
+public interface ReactiveEmployeeRepository extends ReactiveMongoRepository<Employee, String> {
+    Mono<Employee> findByEmployeeId(String employeeId);
+
+    Flux<Employee> findByEmployeeIdIn(Collection<String> employeeIds);
+
+    //only the ids and reporting lines, enough to walk past parts of the tree that are not returned
+    @Query(value = "{ '_id' : { '$in' : ?0 } }", fields = "{ 'directReports._id' : 1 }")
+    Flux<Employee> findDirectReportsByEmployeeIdIn(Collection<String> employeeIds);
+}
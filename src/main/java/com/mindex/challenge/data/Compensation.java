@@ -2,19 +2,28 @@ package com.mindex.challenge.data;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.mindex.challenge.config.DateDeserializer;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
-import javax.validation.constraints.Min;
-import javax.validation.constraints.NotNull;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+//each employee has an append only history of compensation, at most one record takes effect on any given day.
+//the index answers both the as of lookup and history ranges with a single bounded scan per employee
+@CompoundIndex(name = Compensation.HISTORY_INDEX, def = "{'employeeId' : 1, 'effectiveDate' : -1}", unique = true)
 public class Compensation {
 
+    public static final String HISTORY_INDEX = "employeeId_effectiveDate";
+
     @DBRef
     @NotNull(message = "Employee is required!")
     private Employee employee;
 
+    //denormalized from the employee reference so compensation can be looked up by id in one indexed query
+    private String employeeId;
+
     @Min(value = 0, message = "Salary amount must be greater than 0!")
     private BigDecimal salary;
 
@@ -36,6 +45,14 @@ public class Compensation {
         this.employee = employee;
     }
 
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(String employeeId) {
+        this.employeeId = employeeId;
+    }
+
     public BigDecimal getSalary() {
         return salary;
     }
@@ -56,6 +73,7 @@ public class Compensation {
     public String toString() {
         return "Compensation{" +
                 "employee=" + employee +
+                ", employeeId='" + employeeId + '\'' +
                 ", salary=" + salary +
                 ", effectiveDate=" + effectiveDate +
                 '}';
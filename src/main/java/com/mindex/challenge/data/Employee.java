@@ -1,13 +1,35 @@
 package com.mindex.challenge.data;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 
-import javax.validation.constraints.NotEmpty;
-import javax.validation.constraints.Pattern;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
 import java.util.List;
 
+//directory search indexes, see EmployeeSearch. filters first, then the name order pages are read in, then whichever
+//directory fields are left so a search is answered from the index alone
+@CompoundIndexes({
+        @CompoundIndex(name = Employee.BY_DEPARTMENT_AND_POSITION, def = "{'department' : 1, 'position' : 1, 'lastName' : 1, 'firstName' : 1, '_id' : 1}"),
+        @CompoundIndex(name = Employee.BY_DEPARTMENT, def = "{'department' : 1, 'lastName' : 1, 'firstName' : 1, '_id' : 1, 'position' : 1}"),
+        @CompoundIndex(name = Employee.BY_POSITION, def = "{'position' : 1, 'lastName' : 1, 'firstName' : 1, '_id' : 1, 'department' : 1}"),
+        @CompoundIndex(name = Employee.BY_NAME, def = "{'lastName' : 1, 'firstName' : 1, '_id' : 1, 'department' : 1, 'position' : 1}")
+})
 public class Employee {
 
+    public static final String BY_DEPARTMENT_AND_POSITION = "department_position_name";
+
+    public static final String BY_DEPARTMENT = "department_name";
+
+    public static final String BY_POSITION = "position_name";
+
+    public static final String BY_NAME = "name";
+
     @Id
     private String employeeId;
 
@@ -28,6 +50,17 @@ public class Employee {
     private String department;
     private List<Employee> directReports;
 
+    //derived from whoever lists this employee in their direct reports, clients cannot set it
+    @Indexed
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String managerId;
+
+    //bumped by every update and sent back as the ETag, an update carrying it only applies to that version.
+    //left out of the json until the employee has been stored
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
     public Employee() {
     }
 
@@ -79,6 +112,22 @@ public class Employee {
         this.directReports = directReports;
     }
 
+    public String getManagerId() {
+        return managerId;
+    }
+
+    public void setManagerId(String managerId) {
+        this.managerId = managerId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Employee{" +
@@ -88,6 +137,8 @@ public class Employee {
                 ", position='" + position + '\'' +
                 ", department='" + department + '\'' +
                 ", directReports=" + directReports +
+                ", managerId='" + managerId + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,11 @@
+package com.mindex.challenge.exceptions;
+
+/**
+ * Custom exception for when the reporting lines under an employee loop back on themselves
+ */
+public class CyclicReportingStructureException extends RuntimeException {
+
+    public CyclicReportingStructureException(String message) {
+        super(message);
+    }
+}
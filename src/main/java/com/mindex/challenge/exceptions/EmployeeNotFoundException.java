@@ -0,0 +1,12 @@
+package com.mindex.challenge.exceptions;
+
+/**
+ * Custom exception for when an update targets an employee that does not exist, a bad request unless the update
+ * was conditional on If-Match
+ */
+public class EmployeeNotFoundException extends IllegalArgumentException {
+
+    public EmployeeNotFoundException(String message) {
+        super(message);
+    }
+}
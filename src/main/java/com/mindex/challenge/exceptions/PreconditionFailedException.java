@@ -0,0 +1,11 @@
+package com.mindex.challenge.exceptions;
+
+/**
+ * Custom exception for when a conditional request's If-Match header no longer matches the stored record
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mindex.challenge.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+/**
+ * Counts every command the blocking driver sends against the current request, whether it came from a repository,
+ * the mongo template or a bulk write, including each getMore of a cursor. The blocking driver notifies the listener
+ * on the thread that runs the command, which is the thread the count is attached to.
+ */
+public class CommandCountingListener implements CommandListener {
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        RepositoryCallCounter.increment();
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        //counted when started
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        //counted when started
+    }
+}
@@ -0,0 +1,85 @@
+package com.mindex.challenge.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the database commands sent on behalf of the current request so N+1 access patterns show up per endpoint.
+ * The count follows the request onto executor threads through {@link #propagate(Runnable)}.
+ */
+public final class RepositoryCallCounter {
+
+    private static final ThreadLocal<AtomicInteger> CALLS = new ThreadLocal<>();
+
+    private RepositoryCallCounter() {
+    }
+
+    /**
+     * Start counting for the current thread
+     * @return AtomicInteger the count, to be attached again when the request moves to another thread
+     */
+    public static AtomicInteger start() {
+        AtomicInteger calls = new AtomicInteger();
+        CALLS.set(calls);
+        return calls;
+    }
+
+    /**
+     * Continue counting on the current thread against a count started elsewhere
+     * @param calls
+     */
+    public static void attach(AtomicInteger calls) {
+        CALLS.set(calls);
+    }
+
+    /**
+     * Stop counting on the current thread without ending the count
+     */
+    public static void detach() {
+        CALLS.remove();
+    }
+
+    /**
+     * Count a call, ignored when the thread is not counting i.e. startup or background work
+     */
+    public static void increment() {
+        AtomicInteger calls = CALLS.get();
+        if (calls != null) {
+            calls.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stop counting for the current thread
+     * @return int the number of calls since start, -1 when the thread was not counting
+     */
+    public static int stop() {
+        AtomicInteger calls = CALLS.get();
+        CALLS.remove();
+        return calls == null ? -1 : calls.get();
+    }
+
+    /**
+     * Wrap a task handed to an executor so the calls it makes count against the submitting thread
+     * @param task
+     * @return Runnable
+     */
+    public static Runnable propagate(Runnable task) {
+        AtomicInteger calls = CALLS.get();
+        if (calls == null) {
+            return task;
+        }
+        return () -> {
+            AtomicInteger previous = CALLS.get();
+            CALLS.set(calls);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CALLS.remove();
+                } else {
+                    CALLS.set(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.mindex.challenge.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records how many database commands each request sent, tagged the same way as http.server.requests.
+ * Async requests keep their count in a request attribute between the first dispatch and the one writing the result.
+ */
+public class RepositoryCallsInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String REPOSITORY_CALLS_SUMMARY = "http.server.requests.repository.calls";
+
+    private static final String CALLS_ATTRIBUTE = RepositoryCallsInterceptor.class.getName() + ".calls";
+
+    private final MeterRegistry meterRegistry;
+
+    public RepositoryCallsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object calls = request.getAttribute(CALLS_ATTRIBUTE);
+        if (calls instanceof AtomicInteger) {
+            RepositoryCallCounter.attach((AtomicInteger) calls);
+        } else {
+            request.setAttribute(CALLS_ATTRIBUTE, RepositoryCallCounter.start());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //the container thread goes back to the pool, the count carries on with the async dispatch
+        RepositoryCallCounter.detach();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int calls = RepositoryCallCounter.stop();
+        if (calls < 0) {
+            return;
+        }
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder(REPOSITORY_CALLS_SUMMARY)
+                .description("Database commands sent while handling a request")
+                .baseUnit("calls")
+                .tag("method", request.getMethod())
+                .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                .register(meterRegistry)
+                .record(calls);
+    }
+}
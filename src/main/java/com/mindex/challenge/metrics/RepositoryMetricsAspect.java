@@ -0,0 +1,60 @@
+package com.mindex.challenge.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to the employee and compensation repositories. Runs outside the cache so hits are included,
+ * the timer shows how long the caller waited and mongodb.driver.commands how long mongo took. Calls are counted
+ * against the request by {@link CommandCountingListener} instead, which also sees the mongo template.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RepositoryMetricsAspect {
+
+    public static final String REPOSITORY_TIMER = "employee.repository";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("execution(* com.mindex.challenge.dao.EmployeeRepository+.*(..)) || execution(* com.mindex.challenge.dao.CompensationRepository+.*(..))")
+    public Object timeRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(REPOSITORY_TIMER)
+                    .description("Time spent in repository calls")
+                    .tag("repository", repositoryName(joinPoint))
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Name the repository interface rather than the generated proxy class
+     * @param joinPoint
+     * @return String
+     */
+    private String repositoryName(ProceedingJoinPoint joinPoint) {
+        for (Class<?> type : joinPoint.getThis().getClass().getInterfaces()) {
+            if (type.getName().startsWith("com.mindex.challenge.dao.")) {
+                return type.getSimpleName();
+            }
+        }
+        return joinPoint.getSignature().getDeclaringType().getSimpleName();
+    }
+}
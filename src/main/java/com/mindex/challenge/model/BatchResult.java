@@ -0,0 +1,86 @@
+package com.mindex.challenge.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResult {
+
+    private int created;
+
+    private List<ItemError> errors = new ArrayList<>();
+
+    public BatchResult() {
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ItemError> errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Record a failed item by its position in the submitted batch
+     * @param index
+     * @param message
+     */
+    public void addError(int index, String message) {
+        errors.add(new ItemError(index, message));
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "created=" + created +
+                ", errors=" + errors +
+                '}';
+    }
+
+    public static class ItemError {
+
+        private int index;
+
+        private String message;
+
+        public ItemError(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        public ItemError() {
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "ItemError{" +
+                    "index=" + index +
+                    ", message='" + message + '\'' +
+                    '}';
+        }
+    }
+}
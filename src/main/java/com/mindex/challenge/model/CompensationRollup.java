@@ -0,0 +1,123 @@
+package com.mindex.challenge.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Salary figures across an employee and everyone in their reporting subtree as of a date. Employees without
+ * compensation on that date count towards employees but not compensated, and mean, min and max stay empty
+ * until at least one employee is compensated.
+ */
+public class CompensationRollup {
+
+    private String employeeId;
+
+    private LocalDate asOf;
+
+    private int employees;
+
+    private int compensated;
+
+    private BigDecimal total;
+
+    private BigDecimal mean;
+
+    private BigDecimal min;
+
+    private BigDecimal max;
+
+    //keyed by percentile, i.e. p50 and p99.9
+    private Map<String, BigDecimal> percentiles = Collections.emptyMap();
+
+    public CompensationRollup() {
+    }
+
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(String employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public LocalDate getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(LocalDate asOf) {
+        this.asOf = asOf;
+    }
+
+    public int getEmployees() {
+        return employees;
+    }
+
+    public void setEmployees(int employees) {
+        this.employees = employees;
+    }
+
+    public int getCompensated() {
+        return compensated;
+    }
+
+    public void setCompensated(int compensated) {
+        this.compensated = compensated;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public BigDecimal getMean() {
+        return mean;
+    }
+
+    public void setMean(BigDecimal mean) {
+        this.mean = mean;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public void setMin(BigDecimal min) {
+        this.min = min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public void setMax(BigDecimal max) {
+        this.max = max;
+    }
+
+    public Map<String, BigDecimal> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(Map<String, BigDecimal> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    @Override
+    public String toString() {
+        return "CompensationRollup{" +
+                "employeeId='" + employeeId + '\'' +
+                ", asOf=" + asOf +
+                ", employees=" + employees +
+                ", compensated=" + compensated +
+                ", total=" + total +
+                ", mean=" + mean +
+                ", min=" + min +
+                ", max=" + max +
+                ", percentiles=" + percentiles +
+                '}';
+    }
+}
@@ -0,0 +1,157 @@
+package com.mindex.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One row of the full employee export, flat so the same columns can be written as newline delimited json or csv.
+ * The reporting structure is carried by managerId, the compensation columns are only set when it was joined in.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EmployeeExport {
+
+    public static final List<String> CSV_COLUMNS = Arrays.asList("employeeId", "firstName", "lastName", "position",
+            "department", "managerId", "version", "salary", "effectiveDate");
+
+    private String employeeId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String position;
+
+    private String department;
+
+    private String managerId;
+
+    private Long version;
+
+    private BigDecimal salary;
+
+    private LocalDate effectiveDate;
+
+    public EmployeeExport() {
+    }
+
+    /**
+     * @param employee
+     * @param compensation null when not joined in or the employee had none
+     * @return EmployeeExport
+     */
+    public static EmployeeExport of(Employee employee, Compensation compensation) {
+        EmployeeExport export = new EmployeeExport();
+        export.setEmployeeId(employee.getEmployeeId());
+        export.setFirstName(employee.getFirstName());
+        export.setLastName(employee.getLastName());
+        export.setPosition(employee.getPosition());
+        export.setDepartment(employee.getDepartment());
+        export.setManagerId(employee.getManagerId());
+        export.setVersion(employee.getVersion());
+        if (compensation != null) {
+            export.setSalary(compensation.getSalary());
+            export.setEffectiveDate(compensation.getEffectiveDate());
+        }
+        return export;
+    }
+
+    /**
+     * @return List<Object> the values in the order of CSV_COLUMNS, null where unset
+     */
+    public List<Object> toCsvValues() {
+        return Arrays.asList(employeeId, firstName, lastName, position, department, managerId, version, salary, effectiveDate);
+    }
+
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(String employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(String department) {
+        this.department = department;
+    }
+
+    public String getManagerId() {
+        return managerId;
+    }
+
+    public void setManagerId(String managerId) {
+        this.managerId = managerId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public BigDecimal getSalary() {
+        return salary;
+    }
+
+    public void setSalary(BigDecimal salary) {
+        this.salary = salary;
+    }
+
+    public LocalDate getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    public void setEffectiveDate(LocalDate effectiveDate) {
+        this.effectiveDate = effectiveDate;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeeExport{" +
+                "employeeId='" + employeeId + '\'' +
+                ", firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                ", position='" + position + '\'' +
+                ", department='" + department + '\'' +
+                ", managerId='" + managerId + '\'' +
+                ", version=" + version +
+                ", salary=" + salary +
+                ", effectiveDate=" + effectiveDate +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+package com.mindex.challenge.model;
+
+import jakarta.validation.constraints.Pattern;
+import java.util.List;
+
+/**
+ * The changes of a partial employee update, fields left out are kept as they are. Direct reports are added or removed
+ * by id so a change to a large team never resends the rest of it.
+ */
+public class EmployeePatch {
+
+    //match only characters and at least one
+    @Pattern(regexp = "^[A-Za-z]+$", message = "First name must only contain characters!")
+    private String firstName;
+
+    //match only characters and at least one
+    @Pattern(regexp = "^[A-Za-z]+$", message = "Last name must only contain characters!")
+    private String lastName;
+
+    //at least one non whitespace character
+    @Pattern(regexp = "(?s).*\\S.*", message = "Position name cannot be blank!")
+    private String position;
+
+    //at least one non whitespace character
+    @Pattern(regexp = "(?s).*\\S.*", message = "Department name cannot be blank!")
+    private String department;
+
+    private List<String> addDirectReports;
+
+    private List<String> removeDirectReports;
+
+    public EmployeePatch() {
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(String department) {
+        this.department = department;
+    }
+
+    public List<String> getAddDirectReports() {
+        return addDirectReports;
+    }
+
+    public void setAddDirectReports(List<String> addDirectReports) {
+        this.addDirectReports = addDirectReports;
+    }
+
+    public List<String> getRemoveDirectReports() {
+        return removeDirectReports;
+    }
+
+    public void setRemoveDirectReports(List<String> removeDirectReports) {
+        this.removeDirectReports = removeDirectReports;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeePatch{" +
+                "firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                ", position='" + position + '\'' +
+                ", department='" + department + '\'' +
+                ", addDirectReports=" + addDirectReports +
+                ", removeDirectReports=" + removeDirectReports +
+                '}';
+    }
+}
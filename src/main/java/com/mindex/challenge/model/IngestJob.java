@@ -0,0 +1,132 @@
+package com.mindex.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a streaming employee ingest, updated by the ingesting thread and readable while it runs
+ */
+public class IngestJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    //only the first errors are kept so a bad upload can not grow the heap, the counters still cover all of them
+    private static final int MAX_ERRORS = 100;
+
+    private final String jobId;
+
+    private final Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile String failureMessage;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final List<BatchResult.ItemError> errors = Collections.synchronizedList(new ArrayList<>());
+
+    public IngestJob(String jobId) {
+        this.jobId = jobId;
+        this.startedAt = Instant.now();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public List<BatchResult.ItemError> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public void incrementReceived() {
+        received.incrementAndGet();
+    }
+
+    public void addCreated(long count) {
+        created.addAndGet(count);
+    }
+
+    /**
+     * Count a failed record and keep its details if there is still room
+     * @param index
+     * @param message
+     */
+    public void addError(long index, String message) {
+        failed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new BatchResult.ItemError((int) Math.min(index, Integer.MAX_VALUE), message));
+            }
+        }
+    }
+
+    public void complete() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String message) {
+        finishedAt = Instant.now();
+        failureMessage = message;
+        status = Status.FAILED;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestJob{" +
+                "jobId='" + jobId + '\'' +
+                ", status=" + status +
+                ", received=" + received +
+                ", created=" + created +
+                ", failed=" + failed +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.mindex.challenge.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a multi get, one item per requested id in the order they were asked for. Ids that were not found
+ * are kept in their place and marked, so a client can zip the items with its own list of ids.
+ */
+public class MultiGetResult<T> {
+
+    private List<Item<T>> items;
+
+    public MultiGetResult() {
+    }
+
+    /**
+     * Line up what was found with the requested ids
+     * @param ids
+     * @param found keyed by id
+     * @return MultiGetResult<T>
+     */
+    public static <T> MultiGetResult<T> inRequestOrder(List<String> ids, Map<String, T> found) {
+        List<Item<T>> items = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            items.add(new Item<>(id, found.get(id)));
+        }
+        MultiGetResult<T> result = new MultiGetResult<>();
+        result.setItems(items);
+        return result;
+    }
+
+    public List<Item<T>> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item<T>> items) {
+        this.items = items;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiGetResult{" +
+                "items=" + items +
+                '}';
+    }
+
+    public static class Item<T> {
+
+        private String id;
+
+        private boolean found;
+
+        private T value;
+
+        public Item(String id, T value) {
+            this.id = id;
+            this.found = value != null;
+            this.value = value;
+        }
+
+        public Item() {
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public boolean isFound() {
+            return found;
+        }
+
+        public void setFound(boolean found) {
+            this.found = found;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public void setValue(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return "Item{" +
+                    "id='" + id + '\'' +
+                    ", found=" + found +
+                    ", value=" + value +
+                    '}';
+        }
+    }
+}
@@ -4,4 +4,17 @@ public class ApplicationConstants {
 
     //Generic message for when a employee record is not found
     public final static String EMPLOYEE_NOT_FOUND = "No employee found with id: ";
+
+    //Newline delimited json, one record per line
+    public final static String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public final static String TEXT_CSV_VALUE = "text/csv";
+
+    //Timer names, tagged with the class and method by the timed aspect
+    public final static String SERVICE_TIMER = "employee.service";
+
+    public final static String ENGINE_TIMER = "reporting.structure.engine";
+
+    //Percentiles of a compensation rollup when the client does not ask for any
+    public final static String DEFAULT_ROLLUP_PERCENTILES = "50,90,99";
 }
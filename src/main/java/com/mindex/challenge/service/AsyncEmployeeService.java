@@ -0,0 +1,26 @@
+package com.mindex.challenge.service;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.ReportingStructure;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncEmployeeService {
+    CompletableFuture<Employee> readEmployee(String id);
+    CompletableFuture<MultiGetResult<Employee>> readEmployees(List<String> ids);
+    CompletableFuture<ReportingStructure> readEmployeeReportingStructure(String id, int maxDepth, Set<String> fields);
+    CompletableFuture<List<Employee>> readEmployeeManagers(String id);
+    CompletableFuture<CursorPage<Employee>> readEmployeeReports(String id, String cursor, int limit);
+    CompletableFuture<CursorPage<Employee>> searchEmployees(String department, String position, String namePrefix, String cursor, int limit);
+    CompletableFuture<Compensation> readEmployeeCompensation(String id, LocalDate asOf);
+    CompletableFuture<List<Compensation>> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to);
+    CompletableFuture<MultiGetResult<Compensation>> readEmployeeCompensations(List<String> ids, LocalDate asOf);
+    CompletableFuture<CompensationRollup> readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles);
+}
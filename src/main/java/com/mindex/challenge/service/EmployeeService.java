@@ -2,13 +2,37 @@ package com.mindex.challenge.service;
 
 import com.mindex.challenge.data.Compensation;
 import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeeExport;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
 import com.mindex.challenge.model.ReportingStructure;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
 public interface EmployeeService {
     Employee createEmployee(Employee employee);
+    BatchResult createEmployees(List<Employee> employees);
     Employee readEmployee(String id);
+    MultiGetResult<Employee> readEmployees(List<String> ids);
     Employee updateEmployee(Employee employee);
+    Employee patchEmployee(String id, EmployeePatch patch, Long expectedVersion);
+    List<Employee> readEmployeeManagers(String id);
     ReportingStructure readEmployeeReportingStructure(String id);
+    ReportingStructure readEmployeeReportingStructure(String id, int maxDepth, Set<String> fields);
+    CursorPage<Employee> readEmployeeReports(String id, String cursor, int limit);
+    CursorPage<Employee> searchEmployees(String department, String position, String namePrefix, String cursor, int limit);
+    void streamEmployeeReports(String id, Consumer<List<Employee>> sink);
+    long exportEmployees(String after, LocalDate compensationAsOf, Consumer<List<EmployeeExport>> sink);
     Compensation createEmployeeCompensation(Compensation compensation);
     Compensation readEmployeeCompensation(String id);
+    Compensation readEmployeeCompensation(String id, LocalDate asOf);
+    List<Compensation> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to);
+    MultiGetResult<Compensation> readEmployeeCompensations(List<String> ids, LocalDate asOf);
+    CompensationRollup readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles);
 }
@@ -0,0 +1,12 @@
+package com.mindex.challenge.service;
+
+import com.mindex.challenge.model.IngestJob;
+
+import java.io.InputStream;
+import java.util.Collection;
+
+public interface IngestService {
+    IngestJob ingestEmployees(InputStream inputStream);
+    IngestJob readIngestJob(String jobId);
+    Collection<IngestJob> readIngestJobs();
+}
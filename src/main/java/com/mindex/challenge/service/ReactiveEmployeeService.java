@@ -0,0 +1,31 @@
+package com.mindex.challenge.service;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.ReportingStructure;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReactiveEmployeeService {
+    Mono<Employee> createEmployee(Employee employee);
+    Mono<Employee> readEmployee(String id);
+    Mono<MultiGetResult<Employee>> readEmployees(List<String> ids);
+    Mono<Employee> updateEmployee(Employee employee);
+    Mono<Employee> patchEmployee(String id, EmployeePatch patch, Long expectedVersion);
+    Mono<ReportingStructure> readEmployeeReportingStructure(String id, int maxDepth);
+    Flux<Employee> readEmployeeManagers(String id);
+    Flux<Employee> streamEmployeeReports(String id);
+    Mono<CursorPage<Employee>> searchEmployees(String department, String position, String namePrefix, String cursor, int limit);
+    Mono<Compensation> createEmployeeCompensation(Compensation compensation);
+    Mono<Compensation> readEmployeeCompensation(String id, LocalDate asOf);
+    Flux<Compensation> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to);
+    Mono<MultiGetResult<Compensation>> readEmployeeCompensations(List<String> ids, LocalDate asOf);
+    Mono<CompensationRollup> readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles);
+}
@@ -0,0 +1,25 @@
+package com.mindex.challenge.service;
+
+import com.mindex.challenge.data.Employee;
+
+/**
+ * Strategy for counting all of the reports under an employee
+ */
+public interface ReportingStructureEngine {
+
+    //max depth that counts every level of reports
+    int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    default int countReports(Employee employee) {
+        return countReports(employee, UNLIMITED_DEPTH);
+    }
+
+    /**
+     * Count the distinct reports no more than maxDepth levels below an employee, 1 being their direct reports.
+     * Only an unlimited count fails on a cycle, a limited walk always ends and counts everyone on the cycle once.
+     * @param employee
+     * @param maxDepth
+     * @return int
+     */
+    int countReports(Employee employee, int maxDepth);
+}
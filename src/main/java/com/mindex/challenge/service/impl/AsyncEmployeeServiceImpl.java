@@ -0,0 +1,157 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.AsyncEmployeeService;
+import com.mindex.challenge.service.EmployeeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_SERVICE_EXECUTOR;
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_TRAVERSAL_EXECUTOR;
+
+/**
+ * Runs employee reads on bounded executors so slow traversals do not hold servlet threads. Reads that walk a
+ * reporting subtree run on the traversal executor and everything else on the employee service executor, so
+ * traversals that saturate their pool cannot starve point reads.
+ * Every method throws a RejectedExecutionException straight away when its executor is saturated.
+ */
+@Service
+public class AsyncEmployeeServiceImpl implements AsyncEmployeeService {
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    @Qualifier(EMPLOYEE_SERVICE_EXECUTOR)
+    private Executor executor;
+
+    @Autowired
+    @Qualifier(EMPLOYEE_TRAVERSAL_EXECUTOR)
+    private Executor traversalExecutor;
+
+    /**
+     * Retrieve an employee by their id
+     * @param id
+     * @return CompletableFuture<Employee>
+     */
+    @Override
+    public CompletableFuture<Employee> readEmployee(String id) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployee(id), executor);
+    }
+
+    /**
+     * Retrieve many employees by id
+     * @param ids
+     * @return CompletableFuture<MultiGetResult<Employee>>
+     */
+    @Override
+    public CompletableFuture<MultiGetResult<Employee>> readEmployees(List<String> ids) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployees(ids), executor);
+    }
+
+    /**
+     * Retrieve an employee's report structure
+     * @param id
+     * @param maxDepth
+     * @param fields
+     * @return CompletableFuture<ReportingStructure>
+     */
+    @Override
+    public CompletableFuture<ReportingStructure> readEmployeeReportingStructure(String id, int maxDepth, Set<String> fields) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeReportingStructure(id, maxDepth, fields), traversalExecutor);
+    }
+
+    /**
+     * Retrieve an employee's chain of managers
+     * @param id
+     * @return CompletableFuture<List<Employee>>
+     */
+    @Override
+    public CompletableFuture<List<Employee>> readEmployeeManagers(String id) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeManagers(id), executor);
+    }
+
+    /**
+     * Retrieve a page of an employee's distinct reports
+     * @param id
+     * @param cursor
+     * @param limit
+     * @return CompletableFuture<CursorPage<Employee>>
+     */
+    @Override
+    public CompletableFuture<CursorPage<Employee>> readEmployeeReports(String id, String cursor, int limit) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeReports(id, cursor, limit), traversalExecutor);
+    }
+
+    /**
+     * Search employees by department, position and the start of their last name
+     * @param department
+     * @param position
+     * @param namePrefix
+     * @param cursor
+     * @param limit
+     * @return CompletableFuture<CursorPage<Employee>>
+     */
+    @Override
+    public CompletableFuture<CursorPage<Employee>> searchEmployees(String department, String position, String namePrefix, String cursor, int limit) {
+        return CompletableFuture.supplyAsync(() -> employeeService.searchEmployees(department, position, namePrefix, cursor, limit), executor);
+    }
+
+    /**
+     * Retrieve an employee's compensation as of a date
+     * @param id
+     * @param asOf
+     * @return CompletableFuture<Compensation>
+     */
+    @Override
+    public CompletableFuture<Compensation> readEmployeeCompensation(String id, LocalDate asOf) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeCompensation(id, asOf), executor);
+    }
+
+    /**
+     * Retrieve an employee's compensation records effective between two dates
+     * @param id
+     * @param from
+     * @param to
+     * @return CompletableFuture<List<Compensation>>
+     */
+    @Override
+    public CompletableFuture<List<Compensation>> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeCompensationHistory(id, from, to), executor);
+    }
+
+    /**
+     * Retrieve the compensation of many employees as of a date
+     * @param ids
+     * @param asOf
+     * @return CompletableFuture<MultiGetResult<Compensation>>
+     */
+    @Override
+    public CompletableFuture<MultiGetResult<Compensation>> readEmployeeCompensations(List<String> ids, LocalDate asOf) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readEmployeeCompensations(ids, asOf), executor);
+    }
+
+    /**
+     * Sum up the salaries of an employee's whole reporting subtree as of a date
+     * @param id
+     * @param asOf
+     * @param percentiles
+     * @return CompletableFuture<CompensationRollup>
+     */
+    @Override
+    public CompletableFuture<CompensationRollup> readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles) {
+        return CompletableFuture.supplyAsync(() -> employeeService.readCompensationRollup(id, asOf, percentiles), traversalExecutor);
+    }
+}
@@ -0,0 +1,172 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import io.micrometer.core.annotation.Timed;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static com.mindex.challenge.service.ApplicationConstants.ENGINE_TIMER;
+
+/**
+ * Counts reports client side, fetching the reporting tree one level at a time.
+ * Given an executor, levels wider than a partition are split and the partitions are fetched in parallel.
+ */
+public class BatchedReportingStructureEngine implements ReportingStructureEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchedReportingStructureEngine.class);
+
+    private final EmployeeRepository employeeRepository;
+
+    private final Executor executor;
+
+    private final int partitionSize;
+
+    public BatchedReportingStructureEngine(EmployeeRepository employeeRepository) {
+        this(employeeRepository, null, Integer.MAX_VALUE);
+    }
+
+    public BatchedReportingStructureEngine(EmployeeRepository employeeRepository, Executor executor, int partitionSize) {
+        this.employeeRepository = employeeRepository;
+        this.executor = executor;
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Get an employee's number of reports.
+     * Reports are defined as the employee's direct reports and all of their distinct reports.
+     * @param employee
+     * @param maxDepth
+     * @return int
+     */
+    @Override
+    @Timed(ENGINE_TIMER)
+    public int countReports(Employee employee, int maxDepth) {
+        //reporting lines of everyone fetched so far, only needed to look for a cycle if a report shows up twice
+        Map<String, List<String>> reportingLines = new HashMap<>();
+        Set<String> visited = new HashSet<>();
+        visited.add(employee.getEmployeeId());
+        boolean revisited = false;
+
+        //walk the tree one level at a time so each level costs a single $in query instead of one query per report,
+        //which keeps the number of round trips proportional to the depth of the tree rather than its size
+        List<Employee> employees = Collections.singletonList(employee);
+        for (int depth = 0; depth < maxDepth && !employees.isEmpty(); depth++) {
+            List<String> level = new ArrayList<>();
+            for (Employee manager : employees) {
+                List<String> reportIds = getDirectReportIds(manager);
+                reportingLines.put(manager.getEmployeeId(), reportIds);
+                for (String reportId : reportIds) {
+                    if (visited.add(reportId)) {
+                        level.add(reportId);
+                    } else {
+                        revisited = true;
+                    }
+                }
+            }
+            //only the reporting lines are needed to go down another level, so leave the rest of each document behind
+            employees = level.isEmpty() || depth + 1 == maxDepth ? Collections.emptyList() : fetchLevel(level);
+        }
+
+        if (revisited && maxDepth == UNLIMITED_DEPTH && hasCycle(employee.getEmployeeId(), reportingLines)) {
+            throw new CyclicReportingStructureException("Reporting structure for employee " + employee.getEmployeeId() + " contains a cycle");
+        }
+
+        int total = visited.size() - 1;
+        LOG.debug("Employee id {} direct reports are {}", employee.getEmployeeId(), total);
+        return total;
+    }
+
+    /**
+     * Load the reporting lines of a level, sibling subtrees do not depend on each other so a wide level is split
+     * into partitions that are loaded at the same time
+     * @param level
+     * @return List<Employee>
+     */
+    private List<Employee> fetchLevel(List<String> level) {
+        if (executor == null || level.size() <= partitionSize) {
+            return employeeRepository.findDirectReportsByEmployeeIdIn(level);
+        }
+        List<CompletableFuture<List<Employee>>> partitions = new ArrayList<>();
+        for (int i = 0; i < level.size(); i += partitionSize) {
+            List<String> partition = level.subList(i, Math.min(level.size(), i + partitionSize));
+            partitions.add(CompletableFuture.supplyAsync(() -> employeeRepository.findDirectReportsByEmployeeIdIn(partition), executor));
+        }
+        List<Employee> employees = new ArrayList<>(level.size());
+        try {
+            for (CompletableFuture<List<Employee>> partition : partitions) {
+                employees.addAll(partition.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return employees;
+    }
+
+    /**
+     * Collect the ids of an employee's direct reports
+     * @param employee
+     * @return List<String>
+     */
+    private List<String> getDirectReportIds(Employee employee) {
+        List<String> ids = new ArrayList<>();
+        for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
+            ids.add(report.getEmployeeId());
+        }
+        return ids;
+    }
+
+    /**
+     * Iterative depth first search for a reporting line that points back at someone above it
+     * @param employeeId
+     * @param reportingLines
+     * @return boolean
+     */
+    static boolean hasCycle(String employeeId, Map<String, List<String>> reportingLines) {
+        Set<String> onPath = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Iterator<String>> reports = new ArrayDeque<>();
+        path.push(employeeId);
+        onPath.add(employeeId);
+        reports.push(reportingLines.getOrDefault(employeeId, Collections.emptyList()).iterator());
+
+        while (!path.isEmpty()) {
+            if (reports.peek().hasNext()) {
+                String report = reports.peek().next();
+                if (onPath.contains(report)) {
+                    return true;
+                }
+                if (seen.add(report)) {
+                    path.push(report);
+                    onPath.add(report);
+                    reports.push(reportingLines.getOrDefault(report, Collections.emptyList()).iterator());
+                }
+            } else {
+                onPath.remove(path.pop());
+                reports.pop();
+            }
+        }
+        return false;
+    }
+}
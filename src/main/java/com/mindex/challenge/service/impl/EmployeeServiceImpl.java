@@ -1,55 +1,252 @@
 package com.mindex.challenge.service.impl;
 
 import com.mindex.challenge.dao.CompensationRepository;
+import com.mindex.challenge.dao.CompensationLookups;
 import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.EmployeeSearch;
+import com.mindex.challenge.dao.EmployeeUpdates;
+import com.mindex.challenge.dao.ManagerLinks;
+import com.mindex.challenge.dao.OrgGraphIndex;
 import com.mindex.challenge.data.Compensation;
 import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.exceptions.EmployeeNotFoundException;
 import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeeExport;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
 import com.mindex.challenge.model.ReportingStructure;
 import com.mindex.challenge.service.EmployeeService;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.annotation.Timed;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.mindex.challenge.config.CacheConfig.EMPLOYEE_CACHE;
 import static com.mindex.challenge.service.ApplicationConstants.EMPLOYEE_NOT_FOUND;
+import static com.mindex.challenge.service.ApplicationConstants.SERVICE_TIMER;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Service
 public class EmployeeServiceImpl implements EmployeeService {
 
     private static final Logger LOG = LoggerFactory.getLogger(EmployeeServiceImpl.class);
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    //ids a single multi get resolves, keeps the $in query and the response bounded
+    static final int MAX_MULTI_GET_IDS = 1000;
+
+    private static final String EMPLOYEE_ID_FIELD = "employeeId";
+
+    private static final String DIRECT_REPORTS_FIELD = "directReports";
+
+    //employee fields a reporting structure can be projected down to
+    private static final Set<String> PROJECTABLE_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            EMPLOYEE_ID_FIELD, "firstName", "lastName", "position", "department", DIRECT_REPORTS_FIELD, "managerId")));
+
+    //a reports cursor has one line per report on its path, each the report's index and then its id
+    private static final String CURSOR_SEPARATOR = "\n";
+
+    private static final String CURSOR_STEP_SEPARATOR = ":";
+
+    //reports loaded per query when streaming, small enough that the first rows go out before a wide level is loaded
+    private static final int REPORTS_STREAM_CHUNK_SIZE = 500;
+
+    //employees whose salaries are looked up by one aggregation when rolling up compensation
+    private static final int ROLLUP_CHUNK_SIZE = 1000;
+
+    //stand in for the open ends of a compensation history range, any effective date falls between them
+    static final LocalDate EARLIEST_EFFECTIVE_DATE = LocalDate.of(1, 1, 1);
+
+    static final LocalDate LATEST_EFFECTIVE_DATE = LocalDate.of(9999, 12, 31);
+
     @Autowired
     private EmployeeRepository employeeRepository;
 
     @Autowired
     private CompensationRepository compensationRepository;
 
+    @Autowired
+    private ReportingStructureEngine reportingStructureEngine;
+
+    @Autowired
+    private OrgGraphIndex orgGraphIndex;
+
+    @Autowired
+    private ManagerLinks managerLinks;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${employee.batch.chunk-size:1000}")
+    private int batchChunkSize;
+
+    @Value("${employee.export.batch-size:1000}")
+    private int exportBatchSize;
+
     /**
      * Create a new employee record
      * @param employee
      * @return Employee
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public Employee createEmployee(Employee employee) {
         LOG.debug("Creating employee [{}]", employee);
 
         employee.setEmployeeId(UUID.randomUUID().toString());
+        //the insert starts every employee at version 0, whatever the client sent
+        employee.setVersion(null);
         employeeRepository.insert(employee);
+        List<Employee> previousManagers = managerLinks.linkAll(Collections.singletonList(employee));
+        orgGraphIndex.update(employee);
+        previousManagers.forEach(orgGraphIndex::update);
 
         LOG.info("Employee with id {} created successfully!", employee.getEmployeeId());
         return employee;
     }
 
+    /**
+     * Create many employee records, invalid items are reported back by their position instead of failing the batch
+     * @param employees
+     * @return BatchResult
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public BatchResult createEmployees(List<Employee> employees) {
+        if (employees == null || employees.isEmpty()) {
+            throw new IllegalArgumentException("At least one employee is required!");
+        }
+        LOG.debug("Creating batch of {} employees", employees.size());
+
+        BatchResult result = new BatchResult();
+        List<Employee> chunk = new ArrayList<>(Math.min(batchChunkSize, employees.size()));
+        //position in the request of each employee in the current chunk so write errors can be reported against it
+        int[] positions = new int[batchChunkSize];
+
+        for (int i = 0; i < employees.size(); i++) {
+            Employee employee = employees.get(i);
+            String violations = validate(employee);
+            if (violations != null) {
+                result.addError(i, violations);
+                continue;
+            }
+            employee.setEmployeeId(UUID.randomUUID().toString());
+            //bulk inserts bypass the version initialization of a repository insert
+            employee.setVersion(0L);
+            positions[chunk.size()] = i;
+            chunk.add(employee);
+            if (chunk.size() == batchChunkSize) {
+                insertChunk(chunk, positions, result);
+            }
+        }
+        insertChunk(chunk, positions, result);
+
+        if (result.getCreated() > 0) {
+            //cheaper to rebuild once on the next read than to patch the index for every new employee
+            orgGraphIndex.invalidate();
+        }
+
+        LOG.info("Created {} of {} employees in batch, {} failed", result.getCreated(), employees.size(), result.getErrors().size());
+        return result;
+    }
+
+    /**
+     * Validate a batch item the same way a single create request is validated
+     * @param employee
+     * @return String the violation messages or null when valid
+     */
+    private String validate(Employee employee) {
+        if (employee == null) {
+            return "Employee is required!";
+        }
+        Set<ConstraintViolation<Employee>> violations = validator.validate(employee);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(StringUtils.LF));
+    }
+
+    /**
+     * Write a chunk in one unordered bulk insert so a single bad document does not stop the rest
+     * @param chunk
+     * @param positions
+     * @param result
+     */
+    private void insertChunk(List<Employee> chunk, int[] positions, BatchResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Employee> inserted = new ArrayList<>(chunk);
+        try {
+            int insertedCount = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class)
+                    .insert(chunk)
+                    .execute()
+                    .getInsertedCount();
+            result.setCreated(result.getCreated() + insertedCount);
+        } catch (BulkOperationException e) {
+            result.setCreated(result.getCreated() + e.getResult().getInsertedCount());
+            for (BulkWriteError error : e.getErrors()) {
+                result.addError(positions[error.getIndex()], error.getMessage());
+                inserted.set(error.getIndex(), null);
+            }
+            inserted.removeIf(Objects::isNull);
+        }
+        managerLinks.linkAll(inserted);
+        chunk.clear();
+    }
+
     /**
      * Retrieve an employee by their id
      * @param id
      * @return Employee
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public Employee readEmployee(String id) {
         LOG.debug("Reading employee with id [{}]", id);
 
@@ -64,21 +261,181 @@ public class EmployeeServiceImpl implements EmployeeService {
     }
 
     /**
-     * Update an employee record
+     * Retrieve many employees by id with a single $in query, in the order they were asked for
+     * @param ids
+     * @return MultiGetResult<Employee> with ids that were not found marked
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public MultiGetResult<Employee> readEmployees(List<String> ids) {
+        checkMultiGetIds(ids);
+        LOG.debug("Reading {} employees by id", ids.size());
+
+        Map<String, Employee> found = new HashMap<>();
+        for (Employee employee : employeeRepository.findByEmployeeIdIn(new HashSet<>(ids))) {
+            found.put(employee.getEmployeeId(), employee);
+        }
+
+        LOG.info("Found {} of {} employees by id", found.size(), ids.size());
+        return MultiGetResult.inRequestOrder(ids, found);
+    }
+
+    /**
+     * Find employees by department, position and the start of their last name, a page at a time in name order
+     * @param department null or empty to search every department
+     * @param position null or empty to search every position
+     * @param namePrefix case sensitive start of the last name, null or empty for any name
+     * @param cursor
+     * @param limit
+     * @return CursorPage<Employee> of employees with only their directory fields
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public CursorPage<Employee> searchEmployees(String department, String position, String namePrefix, String cursor, int limit) {
+        LOG.debug("Searching employees in department [{}] with position [{}] and name prefix [{}] from cursor [{}]",
+                department, position, namePrefix, cursor);
+
+        checkPageLimit(limit);
+        Query query = EmployeeSearch.query(StringUtils.defaultIfEmpty(department, null), StringUtils.defaultIfEmpty(position, null),
+                namePrefix, EmployeeSearch.decodeCursor(cursor), limit);
+        CursorPage<Employee> page = EmployeeSearch.page(mongoTemplate.find(query, Employee.class), limit);
+
+        LOG.info("Found {} employees in department {} with position {} and name prefix {}",
+                page.getItems().size(), department, position, namePrefix);
+        return page;
+    }
+
+    /**
+     * Update an employee record in a single conditional write. When the employee carries a version the update
+     * only applies if that is still the stored version, otherwise the last writer wins.
      * @param employee
      * @return Employee
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public Employee updateEmployee(Employee employee) {
         LOG.debug("Updating employee [{}]", employee);
 
-        if (employeeRepository.findByEmployeeId(employee.getEmployeeId()) == null) {
-            throw new IllegalArgumentException(EMPLOYEE_NOT_FOUND + employee.getEmployeeId());
+        String id = employee.getEmployeeId();
+        Long expectedVersion = employee.getVersion();
+        Employee updated = mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion),
+                EmployeeUpdates.replacing(employee), EmployeeUpdates.returnNew(), Employee.class);
+        if (updated == null) {
+            throw notUpdated(id, expectedVersion);
         }
-        employeeRepository.save(employee);
+        cacheManager.getCache(EMPLOYEE_CACHE).evict(id);
+        List<Employee> previousManagers = managerLinks.link(updated);
+        orgGraphIndex.update(updated);
+        previousManagers.forEach(orgGraphIndex::update);
 
-        LOG.info("Employee with id {} updated successfully!", employee.getEmployeeId());
-        return employee;
+        LOG.info("Employee with id {} updated to version {}!", id, updated.getVersion());
+        return updated;
+    }
+
+    /**
+     * Apply only the changed fields of an employee in a single conditional write, direct reports are added or
+     * removed in place instead of rewriting the whole list
+     * @param id
+     * @param patch
+     * @param expectedVersion null to patch whatever version is stored
+     * @return Employee
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public Employee patchEmployee(String id, EmployeePatch patch, Long expectedVersion) {
+        LOG.debug("Patching employee with id [{}] at version [{}] with [{}]", id, expectedVersion, patch);
+
+        Employee updated = mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion, patch),
+                EmployeeUpdates.patching(patch), EmployeeUpdates.returnNew(), Employee.class);
+        if (updated == null && CollectionUtils.isNotEmpty(patch.getAddDirectReports())) {
+            updated = patchWithoutListed(id, patch, expectedVersion);
+        }
+        if (updated == null) {
+            throw notUpdated(id, expectedVersion);
+        }
+        cacheManager.getCache(EMPLOYEE_CACHE).evict(id);
+        //only the reports the patch touched need their manager id changed
+        List<Employee> previousManagers = managerLinks.claim(id, patch.getAddDirectReports());
+        managerLinks.release(id, patch.getRemoveDirectReports());
+        orgGraphIndex.update(updated);
+        previousManagers.forEach(orgGraphIndex::update);
+
+        LOG.info("Employee with id {} patched to version {}!", id, updated.getVersion());
+        return updated;
+    }
+
+    /**
+     * Apply a patch that matched nothing again without the reports the employee already lists,
+     * only a patch adding a report that was listed already pays for this lookup
+     * @param id
+     * @param patch
+     * @param expectedVersion
+     * @return Employee or null if the employee is missing or at another version
+     */
+    private Employee patchWithoutListed(String id, EmployeePatch patch, Long expectedVersion) {
+        Employee current = mongoTemplate.findOne(EmployeeUpdates.matching(id, expectedVersion), Employee.class);
+        if (current == null) {
+            return null;
+        }
+        EmployeePatch remaining = EmployeeUpdates.withoutListed(patch, current);
+        if (remaining == null) {
+            //every report was listed already and nothing else changes
+            return current;
+        }
+        return mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion, remaining),
+                EmployeeUpdates.patching(remaining), EmployeeUpdates.returnNew(), Employee.class);
+    }
+
+    /**
+     * Tell a missing employee from a stale version once a conditional update matched nothing,
+     * only a failed update pays for this lookup
+     * @param id
+     * @param expectedVersion
+     * @return RuntimeException to throw
+     */
+    private RuntimeException notUpdated(String id, Long expectedVersion) {
+        if (expectedVersion == null || !mongoTemplate.exists(EmployeeUpdates.matching(id, null), Employee.class)) {
+            return new EmployeeNotFoundException(EMPLOYEE_NOT_FOUND + id);
+        }
+        return new OptimisticLockingFailureException("Employee with id " + id + " has changed since version " + expectedVersion);
+    }
+
+    /**
+     * Retrieve an employee's chain of managers, nearest first and ending at the top of the organization.
+     * Each hop is a cached lookup by id of the previous manager's manager id.
+     * @param id
+     * @return List<Employee>
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public List<Employee> readEmployeeManagers(String id) {
+        LOG.debug("Reading employee managers with id [{}]", id);
+
+        Employee employee = employeeRepository.findByEmployeeId(id);
+        if (employee == null) {
+            throw new EmptyObjectException(EMPLOYEE_NOT_FOUND + id);
+        }
+
+        List<Employee> managers = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        visited.add(id);
+        String managerId = employee.getManagerId();
+        while (managerId != null) {
+            if (!visited.add(managerId)) {
+                throw new CyclicReportingStructureException("Management chain for employee " + id + " contains a cycle");
+            }
+            Employee manager = employeeRepository.findByEmployeeId(managerId);
+            if (manager == null) {
+                //the manager was removed without releasing their reports, treat the chain as ending here
+                LOG.warn("Manager with id {} of employee chain {} not found", managerId, id);
+                break;
+            }
+            managers.add(manager);
+            managerId = manager.getManagerId();
+        }
+
+        LOG.info("Found {} managers for employee with id {}!", managers.size(), id);
+        return managers;
     }
 
     /**
@@ -87,75 +444,377 @@ public class EmployeeServiceImpl implements EmployeeService {
      * @return ReportingStructure
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public ReportingStructure readEmployeeReportingStructure(String id) {
-        LOG.debug("Reading employee reporting structure with id [{}]", id);
+        return readEmployeeReportingStructure(id, ReportingStructureEngine.UNLIMITED_DEPTH, null);
+    }
 
-        Employee employee = employeeRepository.findByEmployeeId(id);
+    /**
+     * Retrieve an employee's report structure counting no more than maxDepth levels of reports,
+     * with the employee trimmed down to the requested fields
+     * @param id
+     * @param maxDepth 1 to only count direct reports
+     * @param fields employee fields to return, null or empty for all of them
+     * @return ReportingStructure
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public ReportingStructure readEmployeeReportingStructure(String id, int maxDepth, Set<String> fields) {
+        LOG.debug("Reading employee reporting structure with id [{}], max depth [{}] and fields {}", id, maxDepth, fields);
+
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1");
+        }
+        boolean projected = CollectionUtils.isNotEmpty(fields);
+        Employee employee = projected ? readEmployeeProjection(id, fields) : employeeRepository.findByEmployeeId(id);
         if (employee == null) {
             throw new EmptyObjectException(EMPLOYEE_NOT_FOUND + id);
         }
 
-        ReportingStructure structure = new ReportingStructure(employee, getNumberOfReports(employee));
+        ReportingStructure structure = new ReportingStructure(employee, reportingStructureEngine.countReports(employee, maxDepth));
+        if (projected) {
+            //the id and reporting lines are always loaded to count from, only hand them back if they were asked for
+            if (!fields.contains(EMPLOYEE_ID_FIELD)) {
+                employee.setEmployeeId(null);
+            }
+            if (!fields.contains(DIRECT_REPORTS_FIELD)) {
+                employee.setDirectReports(null);
+            }
+        }
         LOG.info("Found reporting structure for employee with id {}!", id);
         return structure;
     }
 
     /**
-     * Create a compensation record for an employee
+     * Retrieve a page of an employee's distinct reports, breadth first starting with their direct reports
+     * @param id
+     * @param cursor next cursor of the previous page, null for the first page
+     * @param limit
+     * @return CursorPage<Employee>
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public CursorPage<Employee> readEmployeeReports(String id, String cursor, int limit) {
+        LOG.debug("Reading employee reports with id [{}] from cursor [{}]", id, cursor);
+
+        checkPageLimit(limit);
+        Employee employee = employeeRepository.findByEmployeeId(id);
+        if (employee == null) {
+            throw new EmptyObjectException(EMPLOYEE_NOT_FOUND + id);
+        }
+
+        List<Employee> reports = new ArrayList<>(limit);
+        List<ReportingChainWalker.Step> next = new ReportingChainWalker(employeeRepository).page(employee, decodeCursor(cursor), limit, reports);
+
+        LOG.info("Found {} reports for employee with id {}!", reports.size(), id);
+        return new CursorPage<>(reports, next == null ? null : encodeCursor(next));
+    }
+
+    /**
+     * Hand all of an employee's distinct reports to the sink a chunk at a time as they are loaded,
+     * in the same order they are paged in
+     * @param id
+     * @param sink
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public void streamEmployeeReports(String id, Consumer<List<Employee>> sink) {
+        LOG.debug("Streaming employee reports with id [{}]", id);
+
+        Employee employee = employeeRepository.findByEmployeeId(id);
+        if (employee == null) {
+            throw new EmptyObjectException(EMPLOYEE_NOT_FOUND + id);
+        }
+        new ReportingChainWalker(employeeRepository).stream(employee, REPORTS_STREAM_CHUNK_SIZE, sink);
+    }
+
+    /**
+     * Hand every employee to the sink in id order, a batch at a time, so the collection is never held in memory.
+     * Each batch is a keyset page streamed from its own cursor, seeking past the last id of the previous batch on the
+     * _id index, and its compensation is joined in with one aggregation.
+     * @param after resume after this employee id, null or empty to start at the beginning
+     * @param compensationAsOf join in the compensation in effect on this date, null to leave it out
+     * @param sink
+     * @return long number of employees exported
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public long exportEmployees(String after, LocalDate compensationAsOf, Consumer<List<EmployeeExport>> sink) {
+        LOG.debug("Exporting employees after id [{}] with compensation as of [{}]", after, compensationAsOf);
+
+        long exported = 0;
+        String lastId = StringUtils.defaultIfEmpty(after, null);
+        List<Employee> batch;
+        do {
+            //a cursor per batch rather than one for the whole export, a slow client cannot time it out on the server
+            Query query = new Query();
+            if (lastId != null) {
+                query.addCriteria(where(EMPLOYEE_ID_FIELD).gt(lastId));
+            }
+            query.with(Sort.by(EMPLOYEE_ID_FIELD)).limit(exportBatchSize).cursorBatchSize(exportBatchSize);
+            query.fields().exclude(DIRECT_REPORTS_FIELD);
+
+            batch = new ArrayList<>(exportBatchSize);
+            try (Stream<Employee> employees = mongoTemplate.stream(query, Employee.class)) {
+                employees.forEach(batch::add);
+            }
+            if (!batch.isEmpty()) {
+                sink.accept(toExports(batch, compensationAsOf));
+                exported += batch.size();
+                lastId = batch.get(batch.size() - 1).getEmployeeId();
+            }
+        } while (batch.size() == exportBatchSize);
+
+        LOG.info("Exported {} employees after id {}", exported, after);
+        return exported;
+    }
+
+    /**
+     * @param employees
+     * @param compensationAsOf null to leave compensation out
+     * @return List<EmployeeExport> in the order of the employees
+     */
+    private List<EmployeeExport> toExports(List<Employee> employees, LocalDate compensationAsOf) {
+        Map<String, Compensation> compensations = new HashMap<>();
+        if (compensationAsOf != null) {
+            Set<String> ids = employees.stream().map(Employee::getEmployeeId).collect(Collectors.toSet());
+            for (Compensation compensation : mongoTemplate.aggregate(CompensationLookups.compensationAsOf(ids, compensationAsOf), Compensation.class)) {
+                compensations.put(compensation.getEmployeeId(), compensation);
+            }
+        }
+        List<EmployeeExport> exports = new ArrayList<>(employees.size());
+        for (Employee employee : employees) {
+            exports.add(EmployeeExport.of(employee, compensations.get(employee.getEmployeeId())));
+        }
+        return exports;
+    }
+
+    /**
+     * Load an employee with only the requested fields and their reporting lines, bypassing the employee cache
+     * @param id
+     * @param fields
+     * @return Employee
+     */
+    private Employee readEmployeeProjection(String id, Set<String> fields) {
+        Query query = new Query(where(EMPLOYEE_ID_FIELD).is(id));
+        for (String field : fields) {
+            if (!PROJECTABLE_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown employee field " + field + ", expected any of " + PROJECTABLE_FIELDS);
+            }
+            query.fields().include(field);
+        }
+        if (!fields.contains(DIRECT_REPORTS_FIELD)) {
+            query.fields().include("directReports._id");
+        }
+        return mongoTemplate.findOne(query, Employee.class);
+    }
+
+    /**
+     * The cursor is the path down to the last report of the page, every report with its index in the reporting lines
+     * of its manager, encoded so clients treat it as opaque
+     * @param path
+     * @return String
+     */
+    private String encodeCursor(List<ReportingChainWalker.Step> path) {
+        List<String> steps = new ArrayList<>(path.size());
+        for (ReportingChainWalker.Step step : path) {
+            steps.add(step.index + CURSOR_STEP_SEPARATOR + step.id);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.join(CURSOR_SEPARATOR, steps).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<ReportingChainWalker.Step> decodeCursor(String cursor) {
+        if (StringUtils.isEmpty(cursor)) {
+            return Collections.emptyList();
+        }
+        try {
+            String[] steps = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(CURSOR_SEPARATOR);
+            List<ReportingChainWalker.Step> path = new ArrayList<>(steps.length);
+            for (String step : steps) {
+                String[] position = step.split(CURSOR_STEP_SEPARATOR, 2);
+                int index = Integer.parseInt(position[0]);
+                if (position.length == 2 && !position[1].isEmpty() && index >= 0) {
+                    path.add(new ReportingChainWalker.Step(position[1], index));
+                }
+            }
+            if (path.size() == steps.length) {
+                return path;
+            }
+        } catch (IllegalArgumentException e) {
+            //NumberFormatException is an IllegalArgumentException too, both mean the cursor was not one of ours
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Add a compensation record to an employee's history, at most one record can take effect on any given day
      * @param compensation
      * @return Compensation
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public Compensation createEmployeeCompensation(Compensation compensation) {
         Employee employee = employeeRepository.findByEmployeeId(compensation.getEmployee().getEmployeeId());
         if (employee == null) {
             throw new IllegalArgumentException(EMPLOYEE_NOT_FOUND + compensation.getEmployee().getEmployeeId());
         }
-        //depending on requirements an upsert could be done here instead of throwing an exception
-        //otherwise an update should be done through an PUT endpoint
-        if (compensationRepository.findByEmployee(employee) != null) {
-            throw new IllegalArgumentException("Compensation already exists for employee " + employee.getEmployeeId());
-        }
         compensation.setEmployee(employee);
-        compensationRepository.insert(compensation);
-        LOG.info("Created compensation for employee id {} successfully!", employee.getEmployeeId());
+        compensation.setEmployeeId(employee.getEmployeeId());
+        try {
+            //the unique history index rejects a second record on the same day without reading the history first
+            compensationRepository.insert(compensation);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalArgumentException("Compensation effective " + compensation.getEffectiveDate()
+                    + " already exists for employee " + employee.getEmployeeId());
+        }
+        LOG.info("Created compensation effective {} for employee id {} successfully!", compensation.getEffectiveDate(), employee.getEmployeeId());
         return compensation;
     }
 
     /**
-     * Retrieve an employee's compensation record
+     * Retrieve an employee's current compensation record
      * @param id
      * @return Compensation
      */
     @Override
+    @Timed(SERVICE_TIMER)
     public Compensation readEmployeeCompensation(String id) {
-        Compensation compensation = compensationRepository.findByEmployee(employeeRepository.findByEmployeeId(id));
+        return readEmployeeCompensation(id, LocalDate.now());
+    }
+
+    /**
+     * Retrieve the compensation record an employee had on a given date, the latest one effective on or before it
+     * @param id
+     * @param asOf
+     * @return Compensation
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public Compensation readEmployeeCompensation(String id, LocalDate asOf) {
+        //look up by the indexed employee id rather than loading the employee first and matching on the reference
+        Compensation compensation = compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(id, asOf);
 
         if (compensation == null) {
-            throw new EmptyObjectException("No compensation found for employee with id: " + id);
+            throw new EmptyObjectException("No compensation found for employee with id: " + id + " as of " + asOf);
         }
 
-        LOG.info("Found compensation for employee id {} successfully!", id);
+        LOG.info("Found compensation as of {} for employee id {} successfully!", asOf, id);
         return compensation;
     }
 
     /**
-     * Get an employee's number of reports.
-     * Reports are defined as the employee's direct reports and all of their distinct reports.
-     * @param employee
-     * @return int
-     */
-    private int getNumberOfReports(Employee employee) {
-        int total = 0;
-        if (employee != null) {
-            total += CollectionUtils.isNotEmpty(employee.getDirectReports()) ? employee.getDirectReports().size() : 0;
-            for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
-                //use recursion since reports are a tree structure and we want to traverse the tree and do the same
-                //operation at each node
-                total += getNumberOfReports(employeeRepository.findByEmployeeId(report.getEmployeeId()));
+     * Retrieve the compensation records of an employee that took effect between two dates, oldest first
+     * @param id
+     * @param from first effective date to include, null for the start of the history
+     * @param to last effective date to include, null for the end of the history
+     * @return List<Compensation>
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public List<Compensation> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to) {
+        checkEffectiveDates(from, to);
+        List<Compensation> history = compensationRepository.findHistory(id,
+                from == null ? EARLIEST_EFFECTIVE_DATE : from, to == null ? LATEST_EFFECTIVE_DATE : to);
+
+        LOG.info("Found {} compensation records between {} and {} for employee id {}", history.size(), from, to, id);
+        return history;
+    }
+
+    /**
+     * Retrieve the compensation many employees had on a date, in the order they were asked for. The records are
+     * looked up with one aggregation and their employees with one $in query, however many ids are asked for.
+     * @param ids
+     * @param asOf
+     * @return MultiGetResult<Compensation> with employees without compensation on the date marked
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public MultiGetResult<Compensation> readEmployeeCompensations(List<String> ids, LocalDate asOf) {
+        checkMultiGetIds(ids);
+        LOG.debug("Reading compensation as of [{}] for {} employees by id", asOf, ids.size());
+
+        Map<String, Compensation> found = new HashMap<>();
+        for (Compensation compensation : mongoTemplate.aggregate(CompensationLookups.compensationAsOf(new HashSet<>(ids), asOf), Compensation.class)) {
+            found.put(compensation.getEmployeeId(), compensation);
+        }
+        if (!found.isEmpty()) {
+            for (Employee employee : employeeRepository.findByEmployeeIdIn(found.keySet())) {
+                found.get(employee.getEmployeeId()).setEmployee(employee);
             }
-            LOG.debug("Employee id {} direct reports are {}", employee.getEmployeeId(), total);
         }
-        return total;
+
+        LOG.info("Found compensation as of {} for {} of {} employees by id", asOf, found.size(), ids.size());
+        return MultiGetResult.inRequestOrder(ids, found);
+    }
+
+    /**
+     * Sum up the salaries of an employee and their whole reporting subtree as of a date. The subtree is walked with
+     * reporting lines only and the salaries of each chunk of it are looked up with a single aggregation.
+     * @param id
+     * @param asOf
+     * @param percentiles each greater than 0 and at most 100
+     * @return CompensationRollup
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    public CompensationRollup readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles) {
+        LOG.debug("Reading compensation rollup for employee with id [{}] as of [{}]", id, asOf);
+
+        SalaryAccumulator.checkPercentiles(percentiles);
+        Employee employee = employeeRepository.findByEmployeeId(id);
+        if (employee == null) {
+            throw new EmptyObjectException(EMPLOYEE_NOT_FOUND + id);
+        }
+
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        addSalaries(salaries, Collections.singletonList(id), asOf);
+        int[] reports = {0};
+        new ReportingChainWalker(employeeRepository).streamIds(employee, ROLLUP_CHUNK_SIZE, ids -> {
+            reports[0] += ids.size();
+            addSalaries(salaries, ids, asOf);
+        });
+
+        LOG.info("Rolled up compensation of {} reports as of {} for employee id {}", reports[0], asOf, id);
+        return salaries.toRollup(id, asOf, reports[0] + 1, percentiles);
+    }
+
+    private void addSalaries(SalaryAccumulator salaries, List<String> ids, LocalDate asOf) {
+        for (Compensation compensation : mongoTemplate.aggregate(CompensationLookups.salariesAsOf(ids, asOf), Compensation.class)) {
+            salaries.add(compensation.getSalary());
+        }
+    }
+
+    /**
+     * Reject a page size that is not positive or larger than a single query should return
+     * @param limit
+     */
+    static void checkPageLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Reject a multi get without ids or with more than can be looked up in one query, repeated ids are fine
+     * @param ids
+     */
+    static void checkMultiGetIds(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required!");
+        }
+        if (ids.size() > MAX_MULTI_GET_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_MULTI_GET_IDS + " ids can be read at once, got " + ids.size());
+        }
+    }
+
+    /**
+     * Reject a range of effective dates that ends before it starts, either end can be left open
+     * @param from
+     * @param to
+     */
+    static void checkEffectiveDates(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("From date " + from + " is after to date " + to);
+        }
     }
 }
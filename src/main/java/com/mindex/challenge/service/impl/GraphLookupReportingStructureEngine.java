@@ -0,0 +1,155 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import com.mongodb.MongoCommandException;
+import io.micrometer.core.annotation.Timed;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.GraphLookupOperation;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.mindex.challenge.service.ApplicationConstants.ENGINE_TIMER;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.graphLookup;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Counts reports server side with a single $graphLookup aggregation.
+ * Falls back to another engine when the server does not support the operator, i.e. the embedded MemoryBackend.
+ */
+public class GraphLookupReportingStructureEngine implements ReportingStructureEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphLookupReportingStructureEngine.class);
+
+    private static final String REPORTS = "reports";
+
+    private static final String NUMBER_OF_REPORTS = "numberOfReports";
+
+    private static final String REPORTING_LINES = "reportingLines";
+
+    private static final String CYCLES_BACK = "cyclesBack";
+
+    //the lookup cannot tell a shared report from a cycle, the fallback walks the structure to find out
+    private static final int NEEDS_TRAVERSAL = -1;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ReportingStructureEngine fallback;
+
+    //flipped once the server rejects the pipeline so we stop paying for a failed round trip on every request
+    private volatile boolean graphLookupSupported = true;
+
+    public GraphLookupReportingStructureEngine(MongoTemplate mongoTemplate, ReportingStructureEngine fallback) {
+        this.mongoTemplate = mongoTemplate;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Get an employee's number of reports.
+     * Reports are defined as the employee's direct reports and all of their distinct reports.
+     * @param employee
+     * @param maxDepth
+     * @return int
+     * @throws CyclicReportingStructureException when the whole structure is walked and contains a cycle
+     */
+    @Override
+    @Timed(ENGINE_TIMER)
+    public int countReports(Employee employee, int maxDepth) {
+        if (graphLookupSupported) {
+            try {
+                int total = countReports(employee, maxDepth, lookupReports(employee.getEmployeeId(), maxDepth));
+                if (total != NEEDS_TRAVERSAL) {
+                    return total;
+                }
+            } catch (DataAccessException e) {
+                //a command error means the server does not understand the pipeline, anything else may be transient
+                if (ExceptionUtils.indexOfThrowable(e, MongoCommandException.class) != -1) {
+                    LOG.warn("$graphLookup is not supported by the server, falling back to client side traversal", e);
+                    graphLookupSupported = false;
+                } else {
+                    LOG.warn("$graphLookup failed for employee id {}, falling back to client side traversal", employee.getEmployeeId(), e);
+                }
+            }
+        }
+        return fallback.countReports(employee, maxDepth);
+    }
+
+    /**
+     * Turn the result of the lookup into a count, the lookup leaves duplicates out so a cycle has to be spotted here
+     * @param employee
+     * @param maxDepth
+     * @param reports
+     * @return int number of reports or NEEDS_TRAVERSAL when only a traversal can tell whether the structure has a cycle
+     */
+    private int countReports(Employee employee, int maxDepth, Document reports) {
+        if (reports == null) {
+            return 0;
+        }
+        int total = reports.getInteger(NUMBER_OF_REPORTS, 0);
+        boolean cyclesBack = reports.getBoolean(CYCLES_BACK, false);
+        if (maxDepth == UNLIMITED_DEPTH) {
+            if (cyclesBack) {
+                throw new CyclicReportingStructureException("Reporting structure for employee " + employee.getEmployeeId() + " contains a cycle");
+            }
+            //in a tree every report is listed exactly once, more lines than reports is a shared report or a cycle below
+            if (reports.getInteger(REPORTING_LINES, 0) > total) {
+                LOG.debug("Employee id {} reporting structure is not a tree, checking it for cycles client side", employee.getEmployeeId());
+                return NEEDS_TRAVERSAL;
+            }
+        }
+        //a limited walk counts everyone on a cycle once, the employee at the top is not their own report
+        return cyclesBack ? total - 1 : total;
+    }
+
+    /**
+     * Walk the reporting tree in the database and only return its size, the number of reporting lines in it and
+     * whether it leads back to the employee
+     * @param employeeId
+     * @param maxDepth
+     * @return Document or null when the employee does not exist
+     */
+    private Document lookupReports(String employeeId, int maxDepth) {
+        GraphLookupOperation.GraphLookupOperationBuilder lookup = graphLookup(mongoTemplate.getCollectionName(Employee.class))
+                .startWith("directReports._id")
+                .connectFrom("directReports._id")
+                .connectTo("_id");
+        if (maxDepth != UNLIMITED_DEPTH) {
+            //the direct reports matched from startWith are depth 0
+            lookup.maxDepth(maxDepth - 1);
+        }
+        Document linesPerReport = new Document("$map", new Document("input", "$" + REPORTS)
+                .append("as", "report")
+                .append("in", linesOf("$$report.directReports")));
+        Document counts = new Document(NUMBER_OF_REPORTS, new Document("$size", "$" + REPORTS))
+                .append(REPORTING_LINES, new Document("$add", Arrays.asList(linesOf("$directReports"), new Document("$sum", linesPerReport))))
+                .append(CYCLES_BACK, new Document("$in", Arrays.asList(employeeId, "$" + REPORTS + "._id")));
+        Aggregation aggregation = newAggregation(
+                match(where("_id").is(employeeId)),
+                lookup.as(REPORTS),
+                context -> new Document("$project", counts));
+
+        Document result = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Employee.class), Document.class)
+                .getUniqueMappedResult();
+
+        LOG.debug("Employee id {} reports lookup is {}", employeeId, result);
+        return result;
+    }
+
+    /**
+     * @param directReports expression for a directReports array that may be missing
+     * @return Document expression for its size
+     */
+    private static Document linesOf(String directReports) {
+        return new Document("$size", new Document("$ifNull", Arrays.asList(directReports, Collections.emptyList())));
+    }
+}
@@ -0,0 +1,48 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.dao.OrgGraphIndex;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.mindex.challenge.service.ApplicationConstants.ENGINE_TIMER;
+
+/**
+ * Counts reports by walking the in memory org graph index instead of querying the database.
+ * Falls back to another engine for employees the index has not seen.
+ */
+public class IndexedReportingStructureEngine implements ReportingStructureEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexedReportingStructureEngine.class);
+
+    private final OrgGraphIndex orgGraphIndex;
+
+    private final ReportingStructureEngine fallback;
+
+    public IndexedReportingStructureEngine(OrgGraphIndex orgGraphIndex, ReportingStructureEngine fallback) {
+        this.orgGraphIndex = orgGraphIndex;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Get an employee's number of reports.
+     * Reports are defined as the employee's direct reports and all of their distinct reports.
+     * @param employee
+     * @param maxDepth
+     * @return int
+     */
+    @Override
+    @Timed(ENGINE_TIMER)
+    public int countReports(Employee employee, int maxDepth) {
+        int total = maxDepth == UNLIMITED_DEPTH ? orgGraphIndex.countReports(employee.getEmployeeId())
+                : orgGraphIndex.countReports(employee.getEmployeeId(), maxDepth);
+        if (total == OrgGraphIndex.UNKNOWN) {
+            LOG.warn("Employee id {} is not in the org graph index, falling back to client side traversal", employee.getEmployeeId());
+            return fallback.countReports(employee, maxDepth);
+        }
+        LOG.debug("Employee id {} direct reports are {}", employee.getEmployeeId(), total);
+        return total;
+    }
+}
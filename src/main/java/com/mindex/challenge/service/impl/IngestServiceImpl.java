@@ -0,0 +1,163 @@
+package com.mindex.challenge.service.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.IngestJob;
+import com.mindex.challenge.service.EmployeeService;
+import com.mindex.challenge.service.IngestService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+public class IngestServiceImpl implements IngestService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestServiceImpl.class);
+
+    //finished jobs are forgotten oldest first once this many are tracked
+    private static final int MAX_JOBS = 100;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${employee.ingest.batch-size:1000}")
+    private int ingestBatchSize;
+
+    private final Map<String, IngestJob> jobs = new LinkedHashMap<String, IngestJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IngestJob> eldest) {
+            return size() > MAX_JOBS && eldest.getValue().isFinished();
+        }
+    };
+
+    /**
+     * Stream newline delimited employees from the input and create them a batch at a time,
+     * only one batch is held in memory regardless of the size of the upload
+     * @param inputStream
+     * @return IngestJob
+     */
+    @Override
+    public IngestJob ingestEmployees(InputStream inputStream) {
+        IngestJob job = new IngestJob(UUID.randomUUID().toString());
+        synchronized (jobs) {
+            jobs.put(job.getJobId(), job);
+        }
+        LOG.info("Starting employee ingest job {}", job.getJobId());
+
+        List<Employee> batch = new ArrayList<>(ingestBatchSize);
+        //record index of each buffered employee so errors from the batch can be reported against the upload
+        long[] indexes = new long[ingestBatchSize];
+
+        IOException malformed = null;
+        try {
+            try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    long index = job.getReceived();
+                    job.incrementReceived();
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        job.addError(index, "Expected an employee object but found " + token);
+                        continue;
+                    }
+                    //read one record as a tree first so a record that does not bind leaves the parser on the next line
+                    JsonNode node = parser.readValueAsTree();
+                    try {
+                        Employee employee = objectMapper.treeToValue(node, Employee.class);
+                        indexes[batch.size()] = index;
+                        batch.add(employee);
+                    } catch (JsonProcessingException e) {
+                        job.addError(index, e.getOriginalMessage());
+                        continue;
+                    }
+                    if (batch.size() == ingestBatchSize) {
+                        flush(job, batch, indexes);
+                    }
+                }
+            } catch (IOException e) {
+                //a syntax error leaves no reliable place to resume from, the records read before it are still written
+                malformed = e;
+                LOG.warn("Employee ingest job {} stopped after {} records", job.getJobId(), job.getReceived(), e);
+            }
+            flush(job, batch, indexes);
+            if (malformed == null) {
+                job.complete();
+            } else {
+                job.fail(malformed.getMessage());
+            }
+        } catch (RuntimeException e) {
+            //the database did not take a batch, the batches before it stay written and the job must not stay running
+            job.fail(e.getMessage());
+            LOG.error("Employee ingest job {} failed after {} records", job.getJobId(), job.getReceived(), e);
+        }
+
+        LOG.info("Finished employee ingest job [{}]", job);
+        return job;
+    }
+
+    /**
+     * Get an ingest job by its id
+     * @param jobId
+     * @return IngestJob
+     */
+    @Override
+    public IngestJob readIngestJob(String jobId) {
+        IngestJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new EmptyObjectException("No ingest job found with id: " + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * Get all running and recently finished ingest jobs
+     * @return Collection<IngestJob>
+     */
+    @Override
+    public Collection<IngestJob> readIngestJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Create the buffered employees and record the outcome against the job
+     * @param job
+     * @param batch
+     * @param indexes
+     */
+    private void flush(IngestJob job, List<Employee> batch, long[] indexes) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BatchResult result = employeeService.createEmployees(batch);
+        job.addCreated(result.getCreated());
+        for (BatchResult.ItemError error : result.getErrors()) {
+            job.addError(indexes[error.getIndex()], error.getMessage());
+        }
+        batch.clear();
+    }
+}
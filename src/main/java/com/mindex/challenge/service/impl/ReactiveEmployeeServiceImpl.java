@@ -0,0 +1,520 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.dao.EmployeeSearch;
+import com.mindex.challenge.dao.EmployeeUpdates;
+import com.mindex.challenge.dao.CompensationLookups;
+import com.mindex.challenge.dao.ManagerLinks;
+import com.mindex.challenge.dao.OrgGraphIndex;
+import com.mindex.challenge.dao.ReactiveCompensationRepository;
+import com.mindex.challenge.dao.ReactiveEmployeeRepository;
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.exceptions.EmployeeNotFoundException;
+import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.ReactiveEmployeeService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.mindex.challenge.config.CacheConfig.COMPENSATION_CACHE;
+import static com.mindex.challenge.config.CacheConfig.EMPLOYEE_CACHE;
+import static com.mindex.challenge.service.ApplicationConstants.EMPLOYEE_NOT_FOUND;
+import static com.mindex.challenge.service.ReportingStructureEngine.UNLIMITED_DEPTH;
+
+/**
+ * Employee service for the reactive profile, reads never block the event loop. Manager links and the org graph index
+ * are kept up to date on the bounded elastic scheduler since they are shared with the blocking stack.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveEmployeeServiceImpl implements ReactiveEmployeeService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveEmployeeServiceImpl.class);
+
+    //reports loaded per query when streaming, same as the blocking stack
+    private static final int REPORTS_STREAM_CHUNK_SIZE = 500;
+
+    //employees whose salaries are looked up by one aggregation when rolling up compensation
+    private static final int ROLLUP_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private ReactiveEmployeeRepository employeeRepository;
+
+    @Autowired
+    private ReactiveCompensationRepository compensationRepository;
+
+    @Autowired
+    private ManagerLinks managerLinks;
+
+    @Autowired
+    private OrgGraphIndex orgGraphIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${reporting.structure.fan-out.partition-size:500}")
+    private int partitionSize;
+
+    /**
+     * Create a new employee record
+     * @param employee
+     * @return Mono<Employee>
+     */
+    @Override
+    public Mono<Employee> createEmployee(Employee employee) {
+        LOG.debug("Creating employee [{}]", employee);
+
+        employee.setEmployeeId(UUID.randomUUID().toString());
+        //the insert starts every employee at version 0, whatever the client sent
+        employee.setVersion(null);
+        return employeeRepository.insert(employee)
+                .flatMap(created -> offload(() -> {
+                    List<Employee> previousManagers = managerLinks.linkAll(Collections.singletonList(created));
+                    orgGraphIndex.update(created);
+                    previousManagers.forEach(orgGraphIndex::update);
+                }).thenReturn(created))
+                .doOnNext(created -> LOG.info("Employee with id {} created successfully!", created.getEmployeeId()));
+    }
+
+    /**
+     * Retrieve an employee by their id
+     * @param id
+     * @return Mono<Employee>
+     */
+    @Override
+    public Mono<Employee> readEmployee(String id) {
+        LOG.debug("Reading employee with id [{}]", id);
+
+        return employeeRepository.findByEmployeeId(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new EmptyObjectException(EMPLOYEE_NOT_FOUND + id))))
+                .doOnNext(employee -> LOG.info("Found employee with id {}!", id));
+    }
+
+    /**
+     * Retrieve many employees by id with a single $in query, in the order they were asked for
+     * @param ids
+     * @return Mono<MultiGetResult<Employee>> with ids that were not found marked
+     */
+    @Override
+    public Mono<MultiGetResult<Employee>> readEmployees(List<String> ids) {
+        return Mono.defer(() -> {
+            EmployeeServiceImpl.checkMultiGetIds(ids);
+            return employeeRepository.findByEmployeeIdIn(new HashSet<>(ids))
+                    .collectMap(Employee::getEmployeeId)
+                    .map(found -> MultiGetResult.inRequestOrder(ids, found));
+        });
+    }
+
+    /**
+     * Update an employee record in a single conditional write, see the blocking stack
+     * @param employee
+     * @return Mono<Employee>
+     */
+    @Override
+    public Mono<Employee> updateEmployee(Employee employee) {
+        LOG.debug("Updating employee [{}]", employee);
+
+        String id = employee.getEmployeeId();
+        Long expectedVersion = employee.getVersion();
+        return mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion),
+                        EmployeeUpdates.replacing(employee), EmployeeUpdates.returnNew(), Employee.class)
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion)))
+                .flatMap(updated -> offload(() -> {
+                    cacheManager.getCache(EMPLOYEE_CACHE).evict(updated.getEmployeeId());
+                    List<Employee> previousManagers = managerLinks.link(updated);
+                    orgGraphIndex.update(updated);
+                    previousManagers.forEach(orgGraphIndex::update);
+                }).thenReturn(updated))
+                .doOnNext(updated -> LOG.info("Employee with id {} updated to version {}!", id, updated.getVersion()));
+    }
+
+    /**
+     * Apply only the changed fields of an employee in a single conditional write, see the blocking stack
+     * @param id
+     * @param patch
+     * @param expectedVersion null to patch whatever version is stored
+     * @return Mono<Employee>
+     */
+    @Override
+    public Mono<Employee> patchEmployee(String id, EmployeePatch patch, Long expectedVersion) {
+        LOG.debug("Patching employee with id [{}] at version [{}] with [{}]", id, expectedVersion, patch);
+
+        return Mono.fromCallable(() -> EmployeeUpdates.patching(patch))
+                .flatMap(update -> mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion, patch),
+                        update, EmployeeUpdates.returnNew(), Employee.class))
+                .switchIfEmpty(Mono.defer(() -> CollectionUtils.isEmpty(patch.getAddDirectReports()) ? Mono.empty()
+                        : patchWithoutListed(id, patch, expectedVersion)))
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion)))
+                .flatMap(updated -> offload(() -> {
+                    cacheManager.getCache(EMPLOYEE_CACHE).evict(id);
+                    List<Employee> previousManagers = managerLinks.claim(id, patch.getAddDirectReports());
+                    managerLinks.release(id, patch.getRemoveDirectReports());
+                    orgGraphIndex.update(updated);
+                    previousManagers.forEach(orgGraphIndex::update);
+                }).thenReturn(updated))
+                .doOnNext(updated -> LOG.info("Employee with id {} patched to version {}!", id, updated.getVersion()));
+    }
+
+    /**
+     * Apply a patch that matched nothing again without the reports the employee already lists, see the blocking stack
+     * @param id
+     * @param patch
+     * @param expectedVersion
+     * @return Mono<Employee> empty if the employee is missing or at another version
+     */
+    private Mono<Employee> patchWithoutListed(String id, EmployeePatch patch, Long expectedVersion) {
+        return mongoTemplate.findOne(EmployeeUpdates.matching(id, expectedVersion), Employee.class)
+                .flatMap(current -> {
+                    EmployeePatch remaining = EmployeeUpdates.withoutListed(patch, current);
+                    //every report was listed already and nothing else changes
+                    return remaining == null ? Mono.just(current)
+                            : mongoTemplate.findAndModify(EmployeeUpdates.matching(id, expectedVersion, remaining),
+                                    EmployeeUpdates.patching(remaining), EmployeeUpdates.returnNew(), Employee.class);
+                });
+    }
+
+    /**
+     * Tell a missing employee from a stale version once a conditional update matched nothing
+     * @param id
+     * @param expectedVersion
+     * @return Mono<Employee> always an error
+     */
+    private Mono<Employee> notUpdated(String id, Long expectedVersion) {
+        Mono<Boolean> exists = expectedVersion == null ? Mono.just(false)
+                : mongoTemplate.exists(EmployeeUpdates.matching(id, null), Employee.class);
+        return exists.flatMap(found -> Mono.error(found
+                ? new OptimisticLockingFailureException("Employee with id " + id + " has changed since version " + expectedVersion)
+                : new EmployeeNotFoundException(EMPLOYEE_NOT_FOUND + id)));
+    }
+
+    /**
+     * Retrieve an employee's report structure counting no more than maxDepth levels of reports
+     * @param id
+     * @param maxDepth 1 to only count direct reports
+     * @return Mono<ReportingStructure>
+     */
+    @Override
+    public Mono<ReportingStructure> readEmployeeReportingStructure(String id, int maxDepth) {
+        LOG.debug("Reading employee reporting structure with id [{}] and max depth [{}]", id, maxDepth);
+
+        if (maxDepth < 1) {
+            return Mono.error(new IllegalArgumentException("Max depth must be at least 1"));
+        }
+        return readEmployee(id)
+                .flatMap(employee -> countReports(employee, maxDepth).map(count -> new ReportingStructure(employee, count)))
+                .doOnNext(structure -> LOG.info("Found reporting structure for employee with id {}!", id));
+    }
+
+    /**
+     * Count an employee's distinct reports one level at a time, each level is expanded into the next with one
+     * $in query per partition and the partitions of a wide level are loaded concurrently
+     * @param employee
+     * @param maxDepth
+     * @return Mono<Integer>
+     */
+    private Mono<Integer> countReports(Employee employee, int maxDepth) {
+        return Mono.defer(() -> {
+            Map<String, List<String>> reportingLines = new HashMap<>();
+            Set<String> visited = new HashSet<>();
+            visited.add(employee.getEmployeeId());
+            AtomicBoolean revisited = new AtomicBoolean();
+            AtomicInteger depth = new AtomicInteger();
+
+            //levels are expanded one after another so the visited set is never touched concurrently
+            return Flux.just(Collections.singletonList(employee))
+                    .expand(employees -> {
+                        List<String> level = new ArrayList<>();
+                        for (Employee manager : employees) {
+                            List<String> reportIds = getDirectReportIds(manager);
+                            reportingLines.put(manager.getEmployeeId(), reportIds);
+                            for (String reportId : reportIds) {
+                                if (visited.add(reportId)) {
+                                    level.add(reportId);
+                                } else {
+                                    revisited.set(true);
+                                }
+                            }
+                        }
+                        if (level.isEmpty() || depth.incrementAndGet() == maxDepth) {
+                            return Flux.empty();
+                        }
+                        return Flux.fromIterable(level)
+                                .buffer(partitionSize)
+                                .flatMap(employeeRepository::findDirectReportsByEmployeeIdIn)
+                                .collectList();
+                    })
+                    .then(Mono.fromCallable(() -> {
+                        if (revisited.get() && maxDepth == UNLIMITED_DEPTH
+                                && BatchedReportingStructureEngine.hasCycle(employee.getEmployeeId(), reportingLines)) {
+                            throw new CyclicReportingStructureException("Reporting structure for employee " + employee.getEmployeeId() + " contains a cycle");
+                        }
+                        return visited.size() - 1;
+                    }));
+        });
+    }
+
+    /**
+     * Retrieve an employee's chain of managers, nearest first and ending at the top of the organization
+     * @param id
+     * @return Flux<Employee>
+     */
+    @Override
+    public Flux<Employee> readEmployeeManagers(String id) {
+        LOG.debug("Reading employee managers with id [{}]", id);
+
+        return readEmployee(id).flatMapMany(employee -> {
+            Set<String> visited = new HashSet<>();
+            visited.add(id);
+            return Flux.just(employee)
+                    .expand(current -> {
+                        String managerId = current.getManagerId();
+                        if (managerId == null) {
+                            return Flux.empty();
+                        }
+                        if (!visited.add(managerId)) {
+                            return Flux.error(new CyclicReportingStructureException("Management chain for employee " + id + " contains a cycle"));
+                        }
+                        return employeeRepository.findByEmployeeId(managerId)
+                                .switchIfEmpty(Mono.defer(() -> {
+                                    //the manager was removed without releasing their reports, treat the chain as ending here
+                                    LOG.warn("Manager with id {} of employee chain {} not found", managerId, id);
+                                    return Mono.empty();
+                                }));
+                    })
+                    .skip(1);
+        });
+    }
+
+    /**
+     * Stream all of an employee's distinct reports breadth first, each level is loaded in chunks as it is reached
+     * @param id
+     * @return Flux<Employee>
+     */
+    @Override
+    public Flux<Employee> streamEmployeeReports(String id) {
+        LOG.debug("Streaming employee reports with id [{}]", id);
+
+        return readEmployee(id).flatMapMany(employee -> {
+            Set<String> visited = new HashSet<>();
+            visited.add(id);
+            return Flux.just(Collections.singletonList(employee))
+                    .expand(employees -> {
+                        List<String> reportIds = new ArrayList<>();
+                        for (Employee manager : employees) {
+                            for (String reportId : getDirectReportIds(manager)) {
+                                if (visited.add(reportId)) {
+                                    reportIds.add(reportId);
+                                }
+                            }
+                        }
+                        return Flux.fromIterable(reportIds)
+                                .buffer(REPORTS_STREAM_CHUNK_SIZE)
+                                .concatMap(chunk -> employeeRepository.findByEmployeeIdIn(chunk).collectList());
+                    })
+                    .skip(1)
+                    .flatMapIterable(Function.identity());
+        });
+    }
+
+    /**
+     * Find employees by department, position and the start of their last name, a page at a time in name order
+     * @param department null or empty to search every department
+     * @param position null or empty to search every position
+     * @param namePrefix case sensitive start of the last name, null or empty for any name
+     * @param cursor
+     * @param limit
+     * @return Mono<CursorPage<Employee>> of employees with only their directory fields
+     */
+    @Override
+    public Mono<CursorPage<Employee>> searchEmployees(String department, String position, String namePrefix, String cursor, int limit) {
+        LOG.debug("Searching employees in department [{}] with position [{}] and name prefix [{}] from cursor [{}]",
+                department, position, namePrefix, cursor);
+
+        return Mono.defer(() -> {
+            EmployeeServiceImpl.checkPageLimit(limit);
+            Query query = EmployeeSearch.query(StringUtils.defaultIfEmpty(department, null), StringUtils.defaultIfEmpty(position, null),
+                    namePrefix, EmployeeSearch.decodeCursor(cursor), limit);
+            return mongoTemplate.find(query, Employee.class)
+                    .collectList()
+                    .map(found -> EmployeeSearch.page(found, limit));
+        });
+    }
+
+    /**
+     * Add a compensation record to an employee's history, at most one record can take effect on any given day
+     * @param compensation
+     * @return Mono<Compensation>
+     */
+    @Override
+    public Mono<Compensation> createEmployeeCompensation(Compensation compensation) {
+        String employeeId = compensation.getEmployee().getEmployeeId();
+        return employeeRepository.findByEmployeeId(employeeId)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new IllegalArgumentException(EMPLOYEE_NOT_FOUND + employeeId))))
+                .flatMap(employee -> {
+                    compensation.setEmployee(employee);
+                    compensation.setEmployeeId(employeeId);
+                    return compensationRepository.insert(compensation);
+                })
+                .onErrorMap(DuplicateKeyException.class, e -> new IllegalArgumentException("Compensation effective "
+                        + compensation.getEffectiveDate() + " already exists for employee " + employeeId))
+                .doOnNext(created -> {
+                    //shared with the blocking stack, which caches today's answer under the employee id and the date
+                    cacheManager.getCache(COMPENSATION_CACHE).evict(employeeId + "@" + LocalDate.now());
+                    LOG.info("Created compensation effective {} for employee id {} successfully!", created.getEffectiveDate(), employeeId);
+                });
+    }
+
+    /**
+     * Retrieve the compensation record an employee had on a given date, the latest one effective on or before it
+     * @param id
+     * @param asOf
+     * @return Mono<Compensation>
+     */
+    @Override
+    public Mono<Compensation> readEmployeeCompensation(String id, LocalDate asOf) {
+        return compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(id, asOf)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new EmptyObjectException("No compensation found for employee with id: " + id + " as of " + asOf))))
+                .doOnNext(compensation -> LOG.info("Found compensation as of {} for employee id {} successfully!", asOf, id));
+    }
+
+    /**
+     * Retrieve the compensation records of an employee that took effect between two dates, oldest first
+     * @param id
+     * @param from first effective date to include, null for the start of the history
+     * @param to last effective date to include, null for the end of the history
+     * @return Flux<Compensation>
+     */
+    @Override
+    public Flux<Compensation> readEmployeeCompensationHistory(String id, LocalDate from, LocalDate to) {
+        return Flux.defer(() -> {
+            EmployeeServiceImpl.checkEffectiveDates(from, to);
+            return compensationRepository.findHistory(id, from == null ? EmployeeServiceImpl.EARLIEST_EFFECTIVE_DATE : from,
+                    to == null ? EmployeeServiceImpl.LATEST_EFFECTIVE_DATE : to);
+        });
+    }
+
+    /**
+     * Retrieve the compensation many employees had on a date, in the order they were asked for. The records are
+     * looked up with one aggregation and their employees with one $in query, however many ids are asked for.
+     * @param ids
+     * @param asOf
+     * @return Mono<MultiGetResult<Compensation>> with employees without compensation on the date marked
+     */
+    @Override
+    public Mono<MultiGetResult<Compensation>> readEmployeeCompensations(List<String> ids, LocalDate asOf) {
+        return Mono.defer(() -> {
+            EmployeeServiceImpl.checkMultiGetIds(ids);
+            return mongoTemplate.aggregate(CompensationLookups.compensationAsOf(new HashSet<>(ids), asOf), Compensation.class)
+                    .collectMap(Compensation::getEmployeeId)
+                    .flatMap(found -> found.isEmpty() ? Mono.just(found) : employeeRepository.findByEmployeeIdIn(found.keySet())
+                            .doOnNext(employee -> found.get(employee.getEmployeeId()).setEmployee(employee))
+                            .then(Mono.just(found)))
+                    .map(found -> MultiGetResult.inRequestOrder(ids, found));
+        });
+    }
+
+    /**
+     * Sum up the salaries of an employee and their whole reporting subtree as of a date. The subtree is expanded
+     * with reporting lines only and the salaries of each chunk of it are looked up with a single aggregation.
+     * @param id
+     * @param asOf
+     * @param percentiles each greater than 0 and at most 100
+     * @return Mono<CompensationRollup>
+     */
+    @Override
+    public Mono<CompensationRollup> readCompensationRollup(String id, LocalDate asOf, List<Double> percentiles) {
+        LOG.debug("Reading compensation rollup for employee with id [{}] as of [{}]", id, asOf);
+
+        return Mono.defer(() -> {
+            SalaryAccumulator.checkPercentiles(percentiles);
+            return readEmployee(id);
+        }).flatMap(employee -> {
+            SalaryAccumulator salaries = new SalaryAccumulator();
+            Set<String> visited = new HashSet<>();
+            visited.add(id);
+            return Flux.just(Collections.singletonList(employee))
+                    .expand(employees -> {
+                        List<String> level = new ArrayList<>();
+                        for (Employee manager : employees) {
+                            for (String reportId : getDirectReportIds(manager)) {
+                                if (visited.add(reportId)) {
+                                    level.add(reportId);
+                                }
+                            }
+                        }
+                        return Flux.fromIterable(level)
+                                .buffer(ROLLUP_CHUNK_SIZE)
+                                .concatMap(chunk -> employeeRepository.findDirectReportsByEmployeeIdIn(chunk).collectList());
+                    })
+                    //one chunk at a time, the accumulator is not thread safe
+                    .concatMap(employees -> {
+                        List<String> ids = new ArrayList<>(employees.size());
+                        for (Employee report : employees) {
+                            ids.add(report.getEmployeeId());
+                        }
+                        return mongoTemplate.aggregate(CompensationLookups.salariesAsOf(ids, asOf), Compensation.class)
+                                .doOnNext(compensation -> salaries.add(compensation.getSalary()))
+                                .then(Mono.just(ids.size()));
+                    })
+                    .reduce(0, Integer::sum)
+                    .map(employees -> salaries.toRollup(id, asOf, employees, percentiles));
+        }).doOnNext(rollup -> LOG.info("Rolled up compensation of {} employees as of {} for employee id {}", rollup.getEmployees(), asOf, id));
+    }
+
+    /**
+     * Run blocking work shared with the servlet stack off the event loop
+     * @param task
+     * @return Mono<Void>
+     */
+    private Mono<Void> offload(Runnable task) {
+        return Mono.fromRunnable(task).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    /**
+     * Collect the ids of an employee's direct reports
+     * @param employee
+     * @return List<String>
+     */
+    private List<String> getDirectReportIds(Employee employee) {
+        List<String> ids = new ArrayList<>();
+        for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
+            ids.add(report.getEmployeeId());
+        }
+        return ids;
+    }
+}
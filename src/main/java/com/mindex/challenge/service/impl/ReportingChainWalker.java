@@ -0,0 +1,312 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.data.Employee;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Walks an employee's distinct reports breadth first, level by level and in reporting line order,
+ * so the same data always produces the same sequence and a position in it can be resumed from.
+ * Reports that show up again through another manager or a cycle are only visited once.
+ */
+class ReportingChainWalker {
+
+    private final EmployeeRepository employeeRepository;
+
+    ReportingChainWalker(EmployeeRepository employeeRepository) {
+        this.employeeRepository = employeeRepository;
+    }
+
+    /**
+     * Collect up to limit reports that come after a position in the sequence. The position is the path from the root
+     * down to the last report of the previous page, so a page only walks the managers between that report and the end
+     * of the page instead of every level before it. Reports are found in a level through their own manager, one
+     * listed as a report of another manager as well is left to that one.
+     * When the tree changed since the position was handed out every report is still located by its id, and a report
+     * that is no longer where it was is resumed from its old index in the reporting lines of its manager.
+     * @param root
+     * @param after the path of the last report of the previous page, empty for the first page
+     * @param limit
+     * @param page receives the reports on the page
+     * @return List<Step> the path of the last report on the page or null when there are no more reports
+     */
+    List<Step> page(Employee root, List<Step> after, int limit, List<Employee> page) {
+        String rootId = root.getEmployeeId();
+        Node top = new Node(rootId, 0, null, root);
+        //one more than the page to know whether there is a next one
+        int wanted = limit + 1;
+        List<Node> found = new ArrayList<>(wanted);
+
+        int target = after.size();
+        if (target > 0) {
+            List<Node> path = resume(top, after);
+            for (int level = Math.min(path.size() - 1, target - 1); level >= 0 && found.size() < wanted; level--) {
+                int from = level + 1 < path.size() ? path.get(level + 1).index + 1 : after.get(level).index;
+                descend(reports(Collections.singletonList(path.get(level)), from, rootId), level + 1, target, wanted, rootId, found);
+            }
+        }
+        for (target++; found.size() < wanted; target++) {
+            if (!descend(reports(Collections.singletonList(top), 0, rootId), 1, target, wanted, rootId, found)) {
+                break;
+            }
+        }
+
+        List<Node> onPage = found.subList(0, Math.min(limit, found.size()));
+        List<String> ids = new ArrayList<>(onPage.size());
+        for (Node node : onPage) {
+            ids.add(node.id);
+        }
+        page.addAll(fetch(ids, true));
+        return found.size() > limit ? onPage.get(limit - 1).path() : null;
+    }
+
+    /**
+     * Hand every report to the sink as soon as its chunk is loaded, only the ids of the next level are kept
+     * @param root
+     * @param chunkSize
+     * @param sink
+     */
+    void stream(Employee root, int chunkSize, Consumer<List<Employee>> sink) {
+        Set<String> visited = new HashSet<>();
+        visited.add(root.getEmployeeId());
+        List<String> level = nextLevel(Collections.singletonList(root), visited);
+
+        while (!level.isEmpty()) {
+            List<String> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += chunkSize) {
+                List<Employee> chunk = fetch(level.subList(i, Math.min(level.size(), i + chunkSize)), true);
+                next.addAll(nextLevel(chunk, visited));
+                sink.accept(chunk);
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Hand the ids of every report to the sink a chunk at a time, only the reporting lines are ever loaded
+     * @param root
+     * @param chunkSize
+     * @param sink receives the ids of reports that exist, in walk order
+     */
+    void streamIds(Employee root, int chunkSize, Consumer<List<String>> sink) {
+        Set<String> visited = new HashSet<>();
+        visited.add(root.getEmployeeId());
+        List<String> level = nextLevel(Collections.singletonList(root), visited);
+
+        while (!level.isEmpty()) {
+            List<String> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += chunkSize) {
+                List<Employee> reportingLines = fetch(level.subList(i, Math.min(level.size(), i + chunkSize)), false);
+                next.addAll(nextLevel(reportingLines, visited));
+                List<String> ids = new ArrayList<>(reportingLines.size());
+                for (Employee employee : reportingLines) {
+                    ids.add(employee.getEmployeeId());
+                }
+                sink.accept(ids);
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Locate the managers on a path again, stopping at the first report that is no longer found through its manager
+     * @param top
+     * @param after
+     * @return List<Node> the root followed by the reports of the path that were located
+     */
+    private List<Node> resume(Node top, List<Step> after) {
+        List<String> ids = new ArrayList<>(after.size());
+        for (Step step : after) {
+            ids.add(step.id);
+        }
+        Map<String, Employee> reportingLines = new HashMap<>();
+        for (Employee employee : fetch(ids, false)) {
+            reportingLines.put(employee.getEmployeeId(), employee);
+        }
+
+        List<Node> path = new ArrayList<>(after.size() + 1);
+        path.add(top);
+        for (Step step : after) {
+            Node manager = path.get(path.size() - 1);
+            Employee report = reportingLines.get(step.id);
+            int index = indexOf(manager.reportingLines, step.id);
+            if (report == null || index < 0 || !reportsTo(report, manager, top.id)) {
+                break;
+            }
+            path.add(new Node(step.id, index, manager, report));
+        }
+        return path;
+    }
+
+    /**
+     * Add the reports at the target level below some reports of one level to what was found, in walk order,
+     * loading the levels in between a chunk of managers at a time until enough were found
+     * @param nodes reports of one level with their reporting lines loaded
+     * @param level
+     * @param target
+     * @param wanted
+     * @param rootId
+     * @param found
+     * @return boolean true when there was any report at the target level
+     */
+    private boolean descend(List<Node> nodes, int level, int target, int wanted, String rootId, List<Node> found) {
+        if (level == target) {
+            for (int i = 0; i < nodes.size() && found.size() < wanted; i++) {
+                found.add(nodes.get(i));
+            }
+            return !nodes.isEmpty();
+        }
+        boolean reached = false;
+        for (int i = 0; i < nodes.size() && found.size() < wanted; i += wanted) {
+            List<Node> reports = reports(nodes.subList(i, Math.min(nodes.size(), i + wanted)), 0, rootId);
+            reached |= descend(reports, level + 1, target, wanted, rootId, found);
+        }
+        return reached;
+    }
+
+    /**
+     * The reports of some managers with their reporting lines, in reporting line order,
+     * leaving out reports whose own manager is someone else and the root when a cycle leads back to it
+     * @param managers
+     * @param from index in the reporting lines of every manager to start at
+     * @param rootId
+     * @return List<Node>
+     */
+    private List<Node> reports(List<Node> managers, int from, String rootId) {
+        List<Node> listed = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (Node manager : managers) {
+            List<Employee> directReports = ListUtils.emptyIfNull(manager.reportingLines.getDirectReports());
+            for (int i = Math.max(0, from); i < directReports.size(); i++) {
+                Employee report = directReports.get(i);
+                if (report != null && report.getEmployeeId() != null) {
+                    listed.add(new Node(report.getEmployeeId(), i, manager, null));
+                    ids.add(report.getEmployeeId());
+                }
+            }
+        }
+        Map<String, Employee> reportingLines = new HashMap<>();
+        for (Employee employee : fetch(ids, false)) {
+            reportingLines.put(employee.getEmployeeId(), employee);
+        }
+
+        List<Node> reports = new ArrayList<>(listed.size());
+        Set<String> seen = new HashSet<>();
+        for (Node node : listed) {
+            Employee report = reportingLines.get(node.id);
+            if (report != null && reportsTo(report, node.manager, rootId) && seen.add(node.id)) {
+                reports.add(new Node(node.id, node.index, node.manager, report));
+            }
+        }
+        return reports;
+    }
+
+    private static boolean reportsTo(Employee report, Node manager, String rootId) {
+        return manager.id.equals(report.getManagerId()) && !rootId.equals(report.getEmployeeId());
+    }
+
+    private static int indexOf(Employee manager, String reportId) {
+        List<Employee> directReports = ListUtils.emptyIfNull(manager.getDirectReports());
+        for (int i = 0; i < directReports.size(); i++) {
+            if (directReports.get(i) != null && reportId.equals(directReports.get(i).getEmployeeId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ids of the reports of a level that have not been seen yet, in reporting line order
+     * @param employees
+     * @param visited
+     * @return List<String>
+     */
+    private List<String> nextLevel(List<Employee> employees, Set<String> visited) {
+        List<String> ids = new ArrayList<>();
+        for (Employee employee : employees) {
+            for (Employee report : CollectionUtils.emptyIfNull(employee.getDirectReports())) {
+                if (report != null && report.getEmployeeId() != null && visited.add(report.getEmployeeId())) {
+                    ids.add(report.getEmployeeId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Load employees in a single $in query and put them back in the order they were asked for,
+     * ids without a document are dropped
+     * @param ids
+     * @param full false to only load the reporting lines
+     * @return List<Employee>
+     */
+    private List<Employee> fetch(List<String> ids, boolean full) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Employee> found = full ? employeeRepository.findByEmployeeIdIn(ids) : employeeRepository.findDirectReportsByEmployeeIdIn(ids);
+        Map<String, Employee> byId = new HashMap<>();
+        for (Employee employee : found) {
+            byId.put(employee.getEmployeeId(), employee);
+        }
+        List<Employee> ordered = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Employee employee = byId.get(id);
+            if (employee != null) {
+                ordered.add(employee);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * One report on the path to a position, with its index in the reporting lines of its manager
+     */
+    static final class Step {
+
+        final String id;
+        final int index;
+
+        Step(String id, int index) {
+            this.id = id;
+            this.index = index;
+        }
+    }
+
+    private static final class Node {
+
+        private final String id;
+        private final int index;
+        private final Node manager;
+        private final Employee reportingLines;
+
+        private Node(String id, int index, Node manager, Employee reportingLines) {
+            this.id = id;
+            this.index = index;
+            this.manager = manager;
+            this.reportingLines = reportingLines;
+        }
+
+        /**
+         * @return List<Step> the path from below the root down to this report
+         */
+        private List<Step> path() {
+            LinkedList<Step> path = new LinkedList<>();
+            for (Node node = this; node.manager != null; node = node.manager) {
+                path.addFirst(new Step(node.id, node.index));
+            }
+            return path;
+        }
+    }
+}
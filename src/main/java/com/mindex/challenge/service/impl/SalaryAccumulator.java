@@ -0,0 +1,152 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.model.CompensationRollup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the salaries of a reporting subtree as whole cents in a growing long array, so summing and ranking a
+ * large organization neither allocates a BigDecimal per addition nor boxes a value per employee.
+ * Salaries with fractions of a cent are rounded half even to the cent when they are added. A salary too large for a
+ * long of cents, or a total that would overflow one, moves the accumulator over to BigDecimal for the rest of the run.
+ */
+class SalaryAccumulator {
+
+    private static final int CENTS = 2;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    //whole amounts of up to 16 digits still fit a long once multiplied by 100, any 18 digits of cents do
+    private static final int MAX_WHOLE_DIGITS = 16;
+
+    private static final int MAX_CENTS_DIGITS = 18;
+
+    private static final long OUT_OF_RANGE = Long.MIN_VALUE;
+
+    private long[] cents = new long[64];
+
+    private int count;
+
+    private long total;
+
+    //only set once a salary or the total no longer fits in cents, cents is dropped then
+    private BigDecimal[] decimals;
+
+    private BigDecimal decimalTotal;
+
+    /**
+     * Validate the requested percentiles before any work is done
+     * @param percentiles
+     */
+    static void checkPercentiles(List<Double> percentiles) {
+        for (Double percentile : percentiles) {
+            if (percentile == null || !(percentile > 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentiles must be greater than 0 and at most 100, got " + percentile);
+            }
+        }
+    }
+
+    /**
+     * @param salary null when the compensation record has no salary, which is skipped
+     */
+    void add(BigDecimal salary) {
+        if (salary == null) {
+            return;
+        }
+        if (decimals == null) {
+            long value = toCents(salary);
+            long sum = total + value;
+            //as in Math.addExact, the sum overflowed if it has a different sign than both operands
+            if (value != OUT_OF_RANGE && ((total ^ sum) & (value ^ sum)) >= 0) {
+                if (count == cents.length) {
+                    cents = Arrays.copyOf(cents, count * 2);
+                }
+                cents[count++] = value;
+                total = sum;
+                return;
+            }
+            switchToDecimals();
+        }
+        if (count == decimals.length) {
+            decimals = Arrays.copyOf(decimals, count * 2);
+        }
+        BigDecimal rounded = salary.setScale(CENTS, RoundingMode.HALF_EVEN);
+        decimals[count++] = rounded;
+        decimalTotal = decimalTotal.add(rounded);
+    }
+
+    /**
+     * @param salary
+     * @return long the salary rounded to whole cents, OUT_OF_RANGE when that does not fit a long
+     */
+    private static long toCents(BigDecimal salary) {
+        if (salary.scale() == 0 && salary.precision() <= MAX_WHOLE_DIGITS) {
+            //whole amounts, the usual case, are read without allocating
+            return salary.longValue() * 100;
+        }
+        BigDecimal rounded = salary.setScale(CENTS, RoundingMode.HALF_EVEN);
+        return rounded.precision() <= MAX_CENTS_DIGITS ? rounded.unscaledValue().longValue() : OUT_OF_RANGE;
+    }
+
+    private void switchToDecimals() {
+        decimals = new BigDecimal[cents.length];
+        for (int i = 0; i < count; i++) {
+            decimals[i] = BigDecimal.valueOf(cents[i], CENTS);
+        }
+        decimalTotal = BigDecimal.valueOf(total, CENTS);
+        cents = null;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * Sort the collected salaries once and read the figures off them, percentiles use the nearest rank
+     * @param employeeId
+     * @param asOf
+     * @param employees
+     * @param percentiles
+     * @return CompensationRollup
+     */
+    CompensationRollup toRollup(String employeeId, LocalDate asOf, int employees, List<Double> percentiles) {
+        CompensationRollup rollup = new CompensationRollup();
+        rollup.setEmployeeId(employeeId);
+        rollup.setAsOf(asOf);
+        rollup.setEmployees(employees);
+        rollup.setCompensated(count);
+        BigDecimal sum = decimals == null ? BigDecimal.valueOf(total, CENTS) : decimalTotal;
+        rollup.setTotal(sum);
+        if (count == 0) {
+            return rollup;
+        }
+
+        if (decimals == null) {
+            Arrays.sort(cents, 0, count);
+        } else {
+            Arrays.sort(decimals, 0, count);
+        }
+        rollup.setMean(sum.divide(BigDecimal.valueOf(count), CENTS, RoundingMode.HALF_EVEN));
+        rollup.setMin(salary(0));
+        rollup.setMax(salary(count - 1));
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (double percentile : percentiles) {
+            //ranked in decimal, in floating point 70% of 10 salaries comes out just above 7 and rounds up to the 8th
+            BigDecimal exact = BigDecimal.valueOf(percentile);
+            int rank = exact.multiply(BigDecimal.valueOf(count)).divide(HUNDRED, 0, RoundingMode.CEILING).intValue();
+            values.put("p" + exact.stripTrailingZeros().toPlainString(), salary(Math.max(rank, 1) - 1));
+        }
+        rollup.setPercentiles(values);
+        return rollup;
+    }
+
+    private BigDecimal salary(int index) {
+        return decimals == null ? BigDecimal.valueOf(cents[index], CENTS) : decimals[index];
+    }
+}
@@ -1,10 +1,14 @@
 package com.mindex.challenge;
 
 import com.mindex.challenge.controller.EmployeeController;
+import com.mindex.challenge.dao.ReactiveEmployeeRepository;
+import com.mindex.challenge.service.ReactiveEmployeeService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -16,8 +20,19 @@ public class ChallengeApplicationTests {
 	@Autowired
 	private EmployeeController employeeController;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@Test
 	public void contextLoads() {
 		assertThat(employeeController).isNotNull();
 	}
+
+	@Test
+	public void reactiveStackIsNotCreated() {
+		assertThat(applicationContext.getBeanNamesForType(ReactiveEmployeeService.class)).isEmpty();
+		assertThat(applicationContext.getBeanNamesForType(ReactiveEmployeeRepository.class)).isEmpty();
+		assertThat(applicationContext.getBeanNamesForType(ReactiveMongoTemplate.class)).isEmpty();
+		assertThat(applicationContext.getBeanNamesForType(com.mongodb.reactivestreams.client.MongoClient.class)).isEmpty();
+	}
 }
\ No newline at end of file
@@ -1,15 +1,27 @@
 package com.mindex.challenge;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.ManagerLinks;
+import com.mindex.challenge.dao.OrgGraphIndex;
 import com.mindex.challenge.data.Employee;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -18,6 +30,12 @@ public class DataBootstrapTest {
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private DataBootstrap dataBootstrap;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     public void test() {
         Employee employee = employeeRepository.findByEmployeeId("16a596ae-edd3-4847-99fe-c4518e82c86f");
@@ -27,4 +45,42 @@ public class DataBootstrapTest {
         assertEquals("Development Manager", employee.getPosition());
         assertEquals("Engineering", employee.getDepartment());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void loadKeepsIds() throws Exception {
+        String employees = "[{\"employeeId\":\"bootstrap-1\",\"firstName\":\"Ringo\",\"directReports\":[{\"employeeId\":\"bootstrap-2\"}]},"
+                + "{\"employeeId\":\"bootstrap-2\",\"firstName\":\"Pete\"}]";
+        assertEquals(2, dataBootstrap.load(new ByteArrayInputStream(employees.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("Ringo", employeeRepository.findByEmployeeId("bootstrap-1").getFirstName());
+        assertEquals("bootstrap-2", employeeRepository.findByEmployeeId("bootstrap-1").getDirectReports().get(0).getEmployeeId());
+        assertEquals("bootstrap-1", employeeRepository.findByEmployeeId("bootstrap-2").getManagerId());
+    }
+
+    @Test
+    public void loadConcatenatedObjects() throws Exception {
+        String employees = "{\"employeeId\":\"bootstrap-3\",\"firstName\":\"Stuart\"}\n{\"employeeId\":\"bootstrap-4\",\"firstName\":\"Brian\"}\n";
+        assertEquals(2, dataBootstrap.load(new ByteArrayInputStream(employees.getBytes(StandardCharsets.UTF_8))));
+        assertNotNull(employeeRepository.findByEmployeeId("bootstrap-4"));
+    }
+
+    @Test
+    public void asyncLoadFailureInvalidatesIndex() {
+        EmployeeRepository failingRepository = Mockito.mock(EmployeeRepository.class);
+        when(failingRepository.insert(Mockito.anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+        OrgGraphIndex orgGraphIndex = Mockito.mock(OrgGraphIndex.class);
+
+        DataBootstrap bootstrap = new DataBootstrap();
+        ReflectionTestUtils.setField(bootstrap, "employeeRepository", failingRepository);
+        ReflectionTestUtils.setField(bootstrap, "orgGraphIndex", orgGraphIndex);
+        ReflectionTestUtils.setField(bootstrap, "managerLinks", Mockito.mock(ManagerLinks.class));
+        ReflectionTestUtils.setField(bootstrap, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(bootstrap, "chunkSize", 1000);
+        ReflectionTestUtils.setField(bootstrap, "async", true);
+        ReflectionTestUtils.setField(bootstrap, "taskExecutor", new SyncTaskExecutor());
+
+        //runs on the executor, which must not see the failure escape
+        bootstrap.onApplicationReady();
+        verify(failingRepository).insert(Mockito.anyList());
+        verify(orgGraphIndex).invalidate();
+    }
+}
@@ -0,0 +1,94 @@
+package com.mindex.challenge;
+
+import com.mindex.challenge.model.ReportingStructure;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_SERVICE_EXECUTOR;
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_TRAVERSAL_EXECUTOR;
+import static com.mindex.challenge.config.AsyncConfig.REPORTING_TRAVERSAL_EXECUTOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "employee.async.traversal.virtual.max-concurrency=1"})
+public class VirtualThreadsTest {
+
+    private static final String EMPLOYEE_ID = "16a596ae-edd3-4847-99fe-c4518e82c86f";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ServletWebServerApplicationContext applicationContext;
+
+    @Autowired
+    @Qualifier(EMPLOYEE_SERVICE_EXECUTOR)
+    private Executor executor;
+
+    @Autowired
+    @Qualifier(EMPLOYEE_TRAVERSAL_EXECUTOR)
+    private Executor traversalExecutor;
+
+    @Autowired
+    @Qualifier(REPORTING_TRAVERSAL_EXECUTOR)
+    private Executor reportingTraversalExecutor;
+
+    @Test
+    public void requestsRunOnVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) applicationContext.getWebServer();
+        assertTrue(webServer.getTomcat().getConnector().getProtocolHandler().getExecutor() instanceof VirtualThreadExecutor);
+
+        ReportingStructure structure = new RestTemplate().getForObject(
+                "http://localhost:" + port + "/employee/{id}/direct-reports", ReportingStructure.class, EMPLOYEE_ID);
+        assertEquals(4, structure.getNumberOfReports());
+    }
+
+    @Test
+    public void asyncReadsRunOnVirtualThreads() {
+        for (Executor each : new Executor[]{executor, traversalExecutor, reportingTraversalExecutor}) {
+            assertTrue(CompletableFuture.supplyAsync(() -> Thread.currentThread().isVirtual(), each).join());
+        }
+    }
+
+    @Test
+    public void traversalsPastMaxConcurrencyAreRejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        traversalExecutor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            traversalExecutor.execute(() -> {
+            });
+            throw new AssertionError("expected the traversal executor to be at its limit");
+        } catch (TaskRejectedException e) {
+            //the only traversal allowed in flight is still running
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -1,35 +1,74 @@
 package com.mindex.challenge.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mindex.challenge.config.EmployeeFieldsModule;
 import com.mindex.challenge.data.Compensation;
 import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.exceptions.EmployeeNotFoundException;
 import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeeExport;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.IngestJob;
+import com.mindex.challenge.model.MultiGetResult;
 import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.impl.AsyncEmployeeServiceImpl;
 import com.mindex.challenge.service.impl.EmployeeServiceImpl;
+import com.mindex.challenge.service.impl.IngestServiceImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_SERVICE_EXECUTOR;
+import static com.mindex.challenge.config.AsyncConfig.EMPLOYEE_TRAVERSAL_EXECUTOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(EmployeeController.class)
+@Import({AsyncEmployeeServiceImpl.class, EmployeeFieldsModule.class})
 public class EmployeeControllerTest {
 
     @Autowired
@@ -38,15 +77,32 @@ public class EmployeeControllerTest {
     @Autowired
     private ObjectMapper mapper;
 
-    @MockBean
+    @MockitoBean
     private EmployeeServiceImpl employeeService;
 
+    @MockitoBean
+    private IngestServiceImpl ingestService;
+
+    @MockitoBean(name = EMPLOYEE_SERVICE_EXECUTOR)
+    private Executor employeeServiceExecutor;
+
+    @MockitoBean(name = EMPLOYEE_TRAVERSAL_EXECUTOR)
+    private Executor employeeTraversalExecutor;
+
     private String employeeBasePath = "/employee";
 
     private String employeeId = "/123";
 
+    private String batch = "/batch";
+
+    private String ingest = "/ingest";
+
+    private String reports = "/reports";
+
     private String directReports = "/direct-reports";
 
+    private String managers = "/managers";
+
     private String compensation = "/compensation";
 
     private Employee testEmployee;
@@ -55,6 +111,14 @@ public class EmployeeControllerTest {
 
     @Before
     public void setup() {
+        //run async service calls on the test thread
+        Answer<Void> runOnTestThread = invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        };
+        doAnswer(runOnTestThread).when(employeeServiceExecutor).execute(Mockito.any(Runnable.class));
+        doAnswer(runOnTestThread).when(employeeTraversalExecutor).execute(Mockito.any(Runnable.class));
+
         testEmployee = new Employee();
         testEmployee.setEmployeeId("123");
         testEmployee.setFirstName("John");
@@ -102,20 +166,59 @@ public class EmployeeControllerTest {
         assertTrue(result.getResponse().getContentAsString() != null);
     }
 
+    @Test
+    public void createEmployees() throws Exception {
+        BatchResult batchResult = new BatchResult();
+        batchResult.setCreated(1);
+        batchResult.addError(1, "First name is required!");
+        when(employeeService.createEmployees(Mockito.anyList())).thenReturn(batchResult);
+        MvcResult result = mockMvc.perform(post(employeeBasePath + batch)
+                        .content(mapper.writeValueAsString(Arrays.asList(testEmployee, new Employee())))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        BatchResult batchResultReturn = mapper.readValue(result.getResponse().getContentAsString(), BatchResult.class);
+        assertEquals(1, batchResultReturn.getCreated());
+        assertEquals(1, batchResultReturn.getErrors().get(0).getIndex());
+    }
+
+    @Test
+    public void createEmployees400() throws Exception {
+        when(employeeService.createEmployees(Mockito.anyList())).thenThrow(IllegalArgumentException.class);
+        MvcResult result = mockMvc.perform(post(employeeBasePath + batch)
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(400))
+                .andReturn();
+        assertTrue(result.getResponse().getContentAsString() != null);
+    }
+
     @Test
     public void getEmployeeById() throws Exception {
         when(employeeService.readEmployee(Mockito.anyString())).thenReturn(new Employee());
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId))
+        MvcResult result = performAsync(get(employeeBasePath + employeeId))
                 .andDo(print())
                 .andExpect(status().is(200))
                 .andReturn();
         assertTrue(mapper.readValue(result.getResponse().getContentAsString(), Employee.class) != null);
     }
 
+    @Test
+    public void getEmployeeETag() throws Exception {
+        Employee employee = new Employee();
+        employee.setVersion(4L);
+        when(employeeService.readEmployee(Mockito.anyString())).thenReturn(employee);
+        performAsync(get(employeeBasePath + employeeId))
+                .andExpect(status().is(200))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
     @Test
     public void getEmployee204() throws Exception {
         when(employeeService.readEmployee(Mockito.anyString())).thenThrow(EmptyObjectException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId))
+        MvcResult result = performAsync(get(employeeBasePath + employeeId))
                 .andDo(print())
                 .andExpect(status().is(204))
                 .andReturn();
@@ -125,7 +228,7 @@ public class EmployeeControllerTest {
     @Test
     public void getEmployee500() throws Exception {
         when(employeeService.readEmployee(Mockito.anyString())).thenThrow(RuntimeException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId))
+        MvcResult result = performAsync(get(employeeBasePath + employeeId))
                 .andDo(print())
                 .andExpect(status().is(500))
                 .andReturn();
@@ -144,6 +247,118 @@ public class EmployeeControllerTest {
         assertTrue(mapper.readValue(result.getResponse().getContentAsString(), Employee.class) != null);
     }
 
+    @Test
+    public void updateEmployeeIfMatch() throws Exception {
+        Employee updated = new Employee();
+        updated.setVersion(3L);
+        when(employeeService.updateEmployee(Mockito.argThat(employee -> Long.valueOf(2).equals(employee.getVersion())))).thenReturn(updated);
+        mockMvc.perform(put(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    @Test
+    public void updateEmployee412() throws Exception {
+        when(employeeService.updateEmployee(Mockito.any(Employee.class))).thenThrow(OptimisticLockingFailureException.class);
+        mockMvc.perform(put(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(412));
+    }
+
+    @Test
+    public void updateEmployee412AnyMissing() throws Exception {
+        when(employeeService.updateEmployee(Mockito.argThat(employee -> employee.getVersion() == null)))
+                .thenThrow(new EmployeeNotFoundException("Employee not found with id: 123"));
+        mockMvc.perform(put(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(412));
+    }
+
+    @Test
+    public void updateEmployee412WeakTag() throws Exception {
+        mockMvc.perform(put(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "W/\"2\"")
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(412));
+        verify(employeeService, never()).updateEmployee(Mockito.any(Employee.class));
+    }
+
+    @Test
+    public void updateEmployee409() throws Exception {
+        when(employeeService.updateEmployee(Mockito.any(Employee.class))).thenThrow(OptimisticLockingFailureException.class);
+        testEmployee.setVersion(2L);
+        mockMvc.perform(put(employeeBasePath + employeeId)
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(409));
+    }
+
+    @Test
+    public void patchEmployee() throws Exception {
+        Employee patched = new Employee();
+        patched.setVersion(5L);
+        when(employeeService.patchEmployee(Mockito.eq("123"), Mockito.any(EmployeePatch.class), Mockito.eq(4L))).thenReturn(patched);
+        mockMvc.perform(patch(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "\"4\"")
+                        .content("{\"position\":\"Lead\",\"addDirectReports\":[\"456\"]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""));
+    }
+
+    @Test
+    public void patchEmployee400() throws Exception {
+        mockMvc.perform(patch(employeeBasePath + employeeId)
+                        .content("{\"firstName\":\"J0hn\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(400));
+        verify(employeeService, never()).patchEmployee(Mockito.anyString(), Mockito.any(EmployeePatch.class), Mockito.any());
+    }
+
+    @Test
+    public void patchEmployee412() throws Exception {
+        when(employeeService.patchEmployee(Mockito.anyString(), Mockito.any(EmployeePatch.class), Mockito.any())).thenThrow(OptimisticLockingFailureException.class);
+        mockMvc.perform(patch(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "\"4\"")
+                        .content("{\"position\":\"Lead\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(412));
+    }
+
+    @Test
+    public void patchEmployeeMissing() throws Exception {
+        when(employeeService.patchEmployee(Mockito.anyString(), Mockito.any(EmployeePatch.class), Mockito.isNull()))
+                .thenThrow(new EmployeeNotFoundException("Employee not found with id: 123"));
+        mockMvc.perform(patch(employeeBasePath + employeeId)
+                        .content("{\"position\":\"Lead\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(400));
+        //only a conditional patch has a precondition to fail
+        mockMvc.perform(patch(employeeBasePath + employeeId)
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .content("{\"position\":\"Lead\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(412));
+    }
+
     @Test
     public void updateEmployee400BadRequestBody() throws Exception {
         MvcResult result = mockMvc.perform(put(employeeBasePath + employeeId)
@@ -181,28 +396,79 @@ public class EmployeeControllerTest {
 
     @Test
     public void getEmployeeDirectReports() throws Exception {
-        when(employeeService.readEmployeeReportingStructure(Mockito.anyString())).thenReturn(new ReportingStructure());
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + directReports))
+        when(employeeService.readEmployeeReportingStructure(Mockito.anyString(), Mockito.anyInt(), Mockito.any())).thenReturn(new ReportingStructure());
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + directReports))
                 .andDo(print())
                 .andExpect(status().is(200))
                 .andReturn();
         assertTrue(mapper.readValue(result.getResponse().getContentAsString(), ReportingStructure.class) != null);
     }
 
+    @Test
+    public void getEmployeeDirectReportsProjected() throws Exception {
+        Employee employee = new Employee();
+        employee.setEmployeeId("123");
+        employee.setFirstName("John");
+        employee.setVersion(2L);
+        when(employeeService.readEmployeeReportingStructure("123", 2, new HashSet<>(Arrays.asList("employeeId", "firstName"))))
+                .thenReturn(new ReportingStructure(employee, 4));
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + directReports)
+                        .param("maxDepth", "2")
+                        .param("fields", "employeeId,firstName"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        //fields left out of the projection are not written at all
+        JsonNode employeeNode = mapper.readTree(result.getResponse().getContentAsString()).get("employee");
+        assertEquals(2, employeeNode.size());
+        assertEquals("123", employeeNode.get("employeeId").asText());
+        assertEquals("John", employeeNode.get("firstName").asText());
+    }
+
+    @Test
+    public void getEmployeeManagers() throws Exception {
+        when(employeeService.readEmployeeManagers(Mockito.anyString())).thenReturn(Collections.singletonList(testEmployee));
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + managers))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        assertEquals(1, mapper.readTree(result.getResponse().getContentAsString()).size());
+    }
+
+    @Test
+    public void getEmployeeManagers204() throws Exception {
+        when(employeeService.readEmployeeManagers(Mockito.anyString())).thenThrow(EmptyObjectException.class);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + managers))
+                .andDo(print())
+                .andExpect(status().is(204))
+                .andReturn();
+        assertTrue(StringUtils.isBlank(result.getResponse().getContentAsString()));
+    }
+
     @Test
     public void getEmployeeDirectReports204() throws Exception {
-        when(employeeService.readEmployeeReportingStructure(Mockito.anyString())).thenThrow(EmptyObjectException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + directReports))
+        when(employeeService.readEmployeeReportingStructure(Mockito.anyString(), Mockito.anyInt(), Mockito.any())).thenThrow(EmptyObjectException.class);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + directReports))
                 .andDo(print())
                 .andExpect(status().is(204))
                 .andReturn();
         assertTrue(StringUtils.isBlank(result.getResponse().getContentAsString()));
     }
 
+    @Test
+    public void getEmployeeDirectReports409() throws Exception {
+        when(employeeService.readEmployeeReportingStructure(Mockito.anyString(), Mockito.anyInt(), Mockito.any())).thenThrow(new CyclicReportingStructureException("cycle"));
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + directReports))
+                .andDo(print())
+                .andExpect(status().is(409))
+                .andReturn();
+        assertTrue(StringUtils.isNotBlank(result.getResponse().getContentAsString()));
+    }
+
     @Test
     public void getEmployeeDirectReports500() throws Exception {
-        when(employeeService.readEmployeeReportingStructure(Mockito.anyString())).thenThrow(RuntimeException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + directReports))
+        when(employeeService.readEmployeeReportingStructure(Mockito.anyString(), Mockito.anyInt(), Mockito.any())).thenThrow(RuntimeException.class);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + directReports))
                 .andDo(print())
                 .andExpect(status().is(500))
                 .andReturn();
@@ -292,20 +558,128 @@ public class EmployeeControllerTest {
         assertTrue(result.getResponse().getContentAsString() != null);
     }
 
+    @Test
+    public void getEmployee503() throws Exception {
+        doThrow(new TaskRejectedException("busy")).when(employeeServiceExecutor).execute(Mockito.any(Runnable.class));
+        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId))
+                .andDo(print())
+                .andExpect(status().is(503))
+                .andReturn();
+        assertEquals("1", result.getResponse().getHeader("Retry-After"));
+    }
+
     @Test
     public void getEmployeeCompensation() throws Exception {
-        when(employeeService.readEmployeeCompensation(Mockito.anyString())).thenReturn(new Compensation());
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + compensation))
+        when(employeeService.readEmployeeCompensation(Mockito.anyString(), Mockito.any(LocalDate.class))).thenReturn(new Compensation());
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + compensation))
                 .andDo(print())
                 .andExpect(status().is(200))
                 .andReturn();
         assertTrue(mapper.readValue(result.getResponse().getContentAsString(), Compensation.class) != null);
     }
 
+    @Test
+    public void getEmployeeCompensationAsOf() throws Exception {
+        when(employeeService.readEmployeeCompensation("123", LocalDate.of(2020, 6, 30))).thenReturn(testCompensation);
+        performAsync(get(employeeBasePath + employeeId + compensation).param("asOf", "2020-06-30"))
+                .andDo(print())
+                .andExpect(status().is(200));
+    }
+
+    @Test
+    public void getEmployeeCompensation400BadDate() throws Exception {
+        mockMvc.perform(get(employeeBasePath + employeeId + compensation).param("asOf", "2020-6-30"))
+                .andDo(print())
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    public void getEmployeeCompensationHistory() throws Exception {
+        when(employeeService.readEmployeeCompensationHistory("123", LocalDate.of(2020, 1, 1), null))
+                .thenReturn(Arrays.asList(testCompensation, testCompensation));
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + compensation + "/history").param("from", "2020-01-01"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        assertEquals(2, mapper.readTree(result.getResponse().getContentAsString()).size());
+    }
+
+    @Test
+    public void readEmployees() throws Exception {
+        when(employeeService.readEmployees(Arrays.asList("123", "missing")))
+                .thenReturn(MultiGetResult.inRequestOrder(Arrays.asList("123", "missing"), Collections.singletonMap("123", testEmployee)));
+        MvcResult result = performAsync(post(employeeBasePath + "/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"123\", \"missing\"]"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        JsonNode items = mapper.readTree(result.getResponse().getContentAsString()).get("items");
+        assertEquals(2, items.size());
+        assertTrue(items.get(0).get("found").asBoolean());
+        assertEquals(testEmployee.getFirstName(), items.get(0).get("value").get("firstName").asText());
+        assertEquals("missing", items.get(1).get("id").asText());
+        assertFalse(items.get(1).get("found").asBoolean());
+    }
+
+    @Test
+    public void searchEmployees() throws Exception {
+        when(employeeService.searchEmployees("Engineering", null, "Len", "abc", 10))
+                .thenReturn(new CursorPage<>(Collections.singletonList(testEmployee), "def"));
+        MvcResult result = performAsync(get(employeeBasePath)
+                        .param("department", "Engineering")
+                        .param("namePrefix", "Len")
+                        .param("cursor", "abc")
+                        .param("limit", "10"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+        assertEquals("123", page.get("items").get(0).get("employeeId").asText());
+        assertEquals("def", page.get("nextCursor").asText());
+    }
+
+    @Test
+    public void searchEmployees400() throws Exception {
+        when(employeeService.searchEmployees(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor: abc"));
+        performAsync(get(employeeBasePath).param("cursor", "abc"))
+                .andDo(print())
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    public void readEmployeeCompensations() throws Exception {
+        when(employeeService.readEmployeeCompensations(Collections.singletonList("123"), LocalDate.of(2020, 6, 30)))
+                .thenReturn(MultiGetResult.inRequestOrder(Collections.singletonList("123"), Collections.singletonMap("123", testCompensation)));
+        MvcResult result = performAsync(post(employeeBasePath + compensation + "/_mget")
+                        .param("asOf", "2020-06-30")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"123\"]"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        assertTrue(mapper.readTree(result.getResponse().getContentAsString()).get("items").get(0).get("found").asBoolean());
+    }
+
+    @Test
+    public void getCompensationRollup() throws Exception {
+        CompensationRollup rollup = new CompensationRollup();
+        rollup.setEmployees(3);
+        when(employeeService.readCompensationRollup("123", LocalDate.of(2020, 6, 30), Arrays.asList(50.0, 99.9))).thenReturn(rollup);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + compensation + "/rollup")
+                        .param("asOf", "2020-06-30")
+                        .param("percentiles", "50,99.9"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        assertEquals(3, mapper.readTree(result.getResponse().getContentAsString()).get("employees").asInt());
+    }
+
     @Test
     public void getEmployeeCompensation204() throws Exception {
-        when(employeeService.readEmployeeCompensation(Mockito.anyString())).thenThrow(EmptyObjectException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + compensation))
+        when(employeeService.readEmployeeCompensation(Mockito.anyString(), Mockito.any(LocalDate.class))).thenThrow(EmptyObjectException.class);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + compensation))
                 .andDo(print())
                 .andExpect(status().is(204))
                 .andReturn();
@@ -314,11 +688,185 @@ public class EmployeeControllerTest {
 
     @Test
     public void getEmployeeCompensation500() throws Exception {
-        when(employeeService.readEmployeeCompensation(Mockito.anyString())).thenThrow(RuntimeException.class);
-        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + compensation))
+        when(employeeService.readEmployeeCompensation(Mockito.anyString(), Mockito.any(LocalDate.class))).thenThrow(RuntimeException.class);
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + compensation))
                 .andDo(print())
                 .andExpect(status().is(500))
                 .andReturn();
         assertTrue(result.getResponse().getContentAsString() != null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void ingestEmployees() throws Exception {
+        IngestJob job = new IngestJob("job");
+        job.incrementReceived();
+        job.addCreated(1);
+        job.complete();
+        when(ingestService.ingestEmployees(Mockito.any(InputStream.class))).thenReturn(job);
+        MvcResult result = mockMvc.perform(post(employeeBasePath + ingest)
+                        .content(mapper.writeValueAsString(testEmployee) + "\n")
+                        .contentType("application/x-ndjson"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        JsonNode jobReturn = mapper.readTree(result.getResponse().getContentAsString());
+        assertEquals("COMPLETED", jobReturn.get("status").asText());
+        assertEquals(1, jobReturn.get("created").asLong());
+    }
+
+    @Test
+    public void ingestEmployees415() throws Exception {
+        mockMvc.perform(post(employeeBasePath + ingest)
+                        .content(mapper.writeValueAsString(testEmployee))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().is(415));
+    }
+
+    @Test
+    public void getIngestJobs() throws Exception {
+        when(ingestService.readIngestJobs()).thenReturn(Collections.singletonList(new IngestJob("job")));
+        MvcResult result = mockMvc.perform(get(employeeBasePath + ingest))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        assertEquals("RUNNING", mapper.readTree(result.getResponse().getContentAsString()).get(0).get("status").asText());
+    }
+
+    @Test
+    public void getIngestJob204() throws Exception {
+        when(ingestService.readIngestJob(Mockito.anyString())).thenThrow(EmptyObjectException.class);
+        mockMvc.perform(get(employeeBasePath + ingest + "/job"))
+                .andDo(print())
+                .andExpect(status().is(204));
+    }
+
+    @Test
+    public void getEmployeeReports() throws Exception {
+        when(employeeService.readEmployeeReports("123", "abc", 10)).thenReturn(new CursorPage<>(Collections.singletonList(testEmployee), "def"));
+        MvcResult result = performAsync(get(employeeBasePath + employeeId + reports)
+                        .param("cursor", "abc")
+                        .param("limit", "10"))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andReturn();
+        JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+        assertEquals("123", page.get("items").get(0).get("employeeId").asText());
+        assertEquals("def", page.get("nextCursor").asText());
+    }
+
+    @Test
+    public void getEmployeeReports400() throws Exception {
+        when(employeeService.readEmployeeReports(Mockito.anyString(), Mockito.any(), Mockito.anyInt())).thenThrow(new IllegalArgumentException("Invalid cursor"));
+        performAsync(get(employeeBasePath + employeeId + reports).param("cursor", "abc"))
+                .andDo(print())
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamEmployeeReports() throws Exception {
+        Employee report = new Employee();
+        report.setEmployeeId("456");
+        when(employeeService.readEmployee("123")).thenReturn(testEmployee);
+        doAnswer(invocation -> {
+            Consumer<List<Employee>> sink = invocation.getArgument(1);
+            sink.accept(Collections.singletonList(report));
+            sink.accept(Collections.singletonList(testEmployee));
+            return null;
+        }).when(employeeService).streamEmployeeReports(Mockito.eq("123"), Mockito.any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get(employeeBasePath + employeeId + reports).accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("456", mapper.readTree(lines[0]).get("employeeId").asText());
+    }
+
+    @Test
+    public void streamEmployeeReports204() throws Exception {
+        when(employeeService.readEmployee(Mockito.anyString())).thenThrow(EmptyObjectException.class);
+        mockMvc.perform(get(employeeBasePath + employeeId + reports).accept("application/x-ndjson"))
+                .andDo(print())
+                .andExpect(status().is(204));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportEmployeesAsCsv() throws Exception {
+        EmployeeExport row = EmployeeExport.of(testEmployee, testCompensation);
+        row.setPosition("Lead, \"Platform\"");
+        doAnswer(invocation -> {
+            Consumer<List<EmployeeExport>> sink = invocation.getArgument(2);
+            sink.accept(Collections.singletonList(row));
+            return 1L;
+        }).when(employeeService).exportEmployees(Mockito.eq("100"), Mockito.eq(LocalDate.of(2020, 6, 30)), Mockito.any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get(employeeBasePath + "/_export")
+                        .param("format", "csv")
+                        .param("after", "100")
+                        .param("compensation", "true")
+                        .param("asOf", "2020-06-30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\r\n");
+        assertEquals(2, lines.length);
+        assertEquals(String.join(",", EmployeeExport.CSV_COLUMNS), lines[0]);
+        assertTrue(lines[1].startsWith("123,"));
+        assertTrue(lines[1].contains(",\"Lead, \"\"Platform\"\"\","));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportEmployeesAsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<List<EmployeeExport>> sink = invocation.getArgument(2);
+            sink.accept(Collections.singletonList(EmployeeExport.of(testEmployee, null)));
+            sink.accept(Collections.singletonList(EmployeeExport.of(testEmployee, null)));
+            return 2L;
+        }).when(employeeService).exportEmployees(Mockito.isNull(), Mockito.isNull(), Mockito.any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get(employeeBasePath + "/_export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().is(200))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("123", mapper.readTree(lines[0]).get("employeeId").asText());
+        assertFalse(mapper.readTree(lines[0]).has("salary"));
+    }
+
+    @Test
+    public void exportEmployees400() throws Exception {
+        mockMvc.perform(get(employeeBasePath + "/_export").param("format", "xml"))
+                .andDo(print())
+                .andExpect(status().is(400));
+    }
+
+    /**
+     * Perform a request answered by an async handler and dispatch its result
+     * @param requestBuilder
+     * @return ResultActions
+     */
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult started = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+}
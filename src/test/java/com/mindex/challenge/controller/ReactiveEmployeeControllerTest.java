@@ -0,0 +1,347 @@
+package com.mindex.challenge.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveEmployeeControllerTest {
+
+    private static final String JOHN = "16a596ae-edd3-4847-99fe-c4518e82c86f";
+
+    private static final String PETE = "62c1084e-6e34-4630-93fd-9153afb65309";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Test
+    public void readEmployee() {
+        webTestClient.get().uri("/employee/{id}", JOHN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.firstName").isEqualTo("John");
+    }
+
+    @Test
+    public void readEmployee204() {
+        webTestClient.get().uri("/employee/{id}", "missing")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void getEmployeeDirectReports() {
+        webTestClient.get().uri("/employee/{id}/direct-reports", JOHN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.numberOfReports").isEqualTo(4);
+        webTestClient.get().uri("/employee/{id}/direct-reports?maxDepth=1", JOHN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.numberOfReports").isEqualTo(2);
+    }
+
+    @Test
+    public void getEmployeeDirectReports400() {
+        webTestClient.get().uri("/employee/{id}/direct-reports?maxDepth=0", JOHN)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getEmployeeManagers() {
+        webTestClient.get().uri("/employee/{id}/managers", PETE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].employeeId").isEqualTo(JOHN);
+    }
+
+    @Test
+    public void streamEmployeeReports() {
+        String body = webTestClient.get().uri("/employee/{id}/reports", JOHN)
+                .accept(MediaType.parseMediaType("application/x-ndjson"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+        assertNotNull(body);
+        assertEquals(4, body.trim().split("\n").length);
+    }
+
+    @Test
+    public void createEmployeeAndCompensation() throws Exception {
+        Employee employee = new Employee();
+        employee.setFirstName("Stuart");
+        employee.setLastName("Sutcliffe");
+        employee.setPosition("Developer");
+        employee.setDepartment("Engineering");
+        Employee created = webTestClient.post().uri("/employee")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Employee.class)
+                .returnResult().getResponseBody();
+        assertNotNull(created.getEmployeeId());
+
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(created);
+        compensation.setSalary(new BigDecimal(12345));
+        compensation.setEffectiveDate(LocalDate.of(2020, 1, 1));
+        webTestClient.post().uri("/employee/{id}/compensation", created.getEmployeeId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(mapper.writeValueAsString(compensation))
+                .exchange()
+                .expectStatus().isCreated();
+
+        JsonNode read = mapper.readTree(webTestClient.get().uri("/employee/{id}/compensation", created.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody());
+        assertEquals("Stuart", read.get("employee").get("firstName").asText());
+        assertEquals(12345, read.get("salary").asInt());
+
+        compensation.setSalary(new BigDecimal(23456));
+        compensation.setEffectiveDate(LocalDate.of(2021, 1, 1));
+        webTestClient.post().uri("/employee/{id}/compensation", created.getEmployeeId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(mapper.writeValueAsString(compensation))
+                .exchange()
+                .expectStatus().isCreated();
+        webTestClient.get().uri("/employee/{id}/compensation?asOf=2020-12-31", created.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.salary").isEqualTo(12345);
+        webTestClient.get().uri("/employee/{id}/compensation/history?from=2020-01-01", created.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].salary").isEqualTo(23456);
+        //a second record on the same day is rejected
+        webTestClient.post().uri("/employee/{id}/compensation", created.getEmployeeId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(mapper.writeValueAsString(compensation))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getCompensationRollup() throws Exception {
+        Employee report = create("George", null);
+        Employee manager = create("Brian", report);
+        compensate(manager, "100000");
+        compensate(report, "50000.50");
+
+        webTestClient.get().uri("/employee/{id}/compensation/rollup?asOf=2020-06-01&percentiles=50", manager.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.employees").isEqualTo(2)
+                .jsonPath("$.compensated").isEqualTo(2)
+                .jsonPath("$.total").isEqualTo(150000.50)
+                .jsonPath("$.min").isEqualTo(50000.50)
+                .jsonPath("$.percentiles.p50").isEqualTo(50000.50);
+        webTestClient.get().uri("/employee/{id}/compensation/rollup?asOf=2019-06-01", manager.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.compensated").isEqualTo(0)
+                .jsonPath("$.total").isEqualTo(0);
+        webTestClient.get().uri("/employee/{id}/compensation/rollup?percentiles=0", manager.getEmployeeId())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void multiGet() throws Exception {
+        Employee employee = create("Mal", null);
+        compensate(employee, "42000");
+
+        webTestClient.post().uri("/employee/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(employee.getEmployeeId(), "missing", JOHN))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(3)
+                .jsonPath("$.items[0].value.firstName").isEqualTo("Mal")
+                .jsonPath("$.items[1].found").isEqualTo(false)
+                .jsonPath("$.items[2].value.firstName").isEqualTo("John");
+        webTestClient.post().uri("/employee/compensation/_mget?asOf=2020-06-01")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(JOHN, employee.getEmployeeId()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(JOHN)
+                .jsonPath("$.items[1].value.salary").isEqualTo(42000)
+                .jsonPath("$.items[1].value.employee.firstName").isEqualTo("Mal");
+        webTestClient.post().uri("/employee/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Collections.emptyList())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void search() throws Exception {
+        webTestClient.get().uri("/employee?department=Engineering&namePrefix=Lenn")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.items[0].employeeId").isEqualTo(JOHN)
+                .jsonPath("$.items[0].directReports").doesNotExist()
+                .jsonPath("$.nextCursor").doesNotExist();
+        webTestClient.get().uri("/employee?cursor=abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private Employee create(String firstName, Employee report) {
+        Employee employee = new Employee();
+        employee.setFirstName(firstName);
+        employee.setLastName("Epstein");
+        employee.setPosition("Manager");
+        employee.setDepartment("Music");
+        if (report != null) {
+            employee.setDirectReports(Collections.singletonList(report));
+        }
+        return webTestClient.post().uri("/employee")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Employee.class)
+                .returnResult().getResponseBody();
+    }
+
+    private void compensate(Employee employee, String salary) throws Exception {
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(employee);
+        compensation.setSalary(new BigDecimal(salary));
+        compensation.setEffectiveDate(LocalDate.of(2020, 1, 1));
+        webTestClient.post().uri("/employee/{id}/compensation", employee.getEmployeeId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(mapper.writeValueAsString(compensation))
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    public void updateEmployeeIfMatch() {
+        Employee employee = new Employee();
+        employee.setFirstName("Pete");
+        employee.setLastName("Best");
+        employee.setPosition("Drummer");
+        employee.setDepartment("Music");
+        Employee created = webTestClient.post().uri("/employee")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Employee.class)
+                .returnResult().getResponseBody();
+
+        employee.setPosition("Session Drummer");
+        webTestClient.put().uri("/employee/{id}", created.getEmployeeId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+        //the same tag is stale once the first update went through
+        webTestClient.put().uri("/employee/{id}", created.getEmployeeId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        employee.setVersion(0L);
+        webTestClient.put().uri("/employee/{id}", created.getEmployeeId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+        //no stored version matches any tag, not even *
+        webTestClient.put().uri("/employee/{id}", "missing")
+                .header(HttpHeaders.IF_MATCH, "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.patch().uri("/employee/{id}", "missing")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"position\":\"Lead\"}")
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.patch().uri("/employee/{id}", "missing")
+                .header(HttpHeaders.IF_MATCH, "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"position\":\"Lead\"}")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        Employee report = webTestClient.post().uri("/employee")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(employee)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Employee.class)
+                .returnResult().getResponseBody();
+        webTestClient.patch().uri("/employee/{id}", created.getEmployeeId())
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"addDirectReports\":[\"" + report.getEmployeeId() + "\"]}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"")
+                .expectBody()
+                .jsonPath("$.position").isEqualTo("Session Drummer")
+                .jsonPath("$.directReports[0].employeeId").isEqualTo(report.getEmployeeId());
+        webTestClient.get().uri("/employee/{id}/managers", report.getEmployeeId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].employeeId").isEqualTo(created.getEmployeeId());
+    }
+
+    @Test
+    public void createEmployeeCompensation400() {
+        webTestClient.post().uri("/employee/{id}/compensation", JOHN)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
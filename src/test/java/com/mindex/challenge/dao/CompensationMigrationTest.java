@@ -0,0 +1,94 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+
+import static com.mindex.challenge.config.CacheConfig.COMPENSATION_CACHE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CompensationMigrationTest {
+
+    private static final String EMPLOYEE_ID = "03aa1462-ffa9-4978-901b-7c001562cf6f";
+
+    private static final String OTHER_EMPLOYEE_ID = "62c1084e-6e34-4630-93fd-9153afb65309";
+
+    @Autowired
+    private CompensationMigration compensationMigration;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private MongoCollection<Document> collection;
+
+    @Before
+    public void setup() {
+        collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Compensation.class));
+        cacheManager.getCache(COMPENSATION_CACHE).clear();
+    }
+
+    @After
+    public void teardown() {
+        collection.deleteMany(Filters.in("employee.$id", EMPLOYEE_ID, OTHER_EMPLOYEE_ID));
+        compensationMigration.ensureIndex();
+    }
+
+    @Test
+    public void historyIsIndexed() {
+        assertTrue(mongoTemplate.indexOps(Compensation.class).getIndexInfo().stream()
+                .anyMatch(index -> index.isIndexForFields(Arrays.asList("employeeId", "effectiveDate")) && index.isUnique()));
+    }
+
+    @Test
+    public void migrateBackfillsEmployeeId() {
+        collection.insertOne(new Document("employee", new DBRef("employee", EMPLOYEE_ID)).append("salary", "1000"));
+
+        assertEquals(1, compensationMigration.migrate());
+        Compensation compensation = mongoTemplate.findOne(query(where("employeeId").is(EMPLOYEE_ID)), Compensation.class);
+        assertNotNull(compensation);
+        assertEquals(EMPLOYEE_ID, compensation.getEmployee().getEmployeeId());
+
+        //already migrated documents are left alone
+        assertEquals(0, compensationMigration.migrate());
+    }
+
+    @Test
+    public void legacyRecordsSharingADateMigrateBeforeTheIndexIsBuilt() {
+        //as on a database from before the history index, which the unique index would reject
+        collection.dropIndex(new Document("employeeId", 1).append("effectiveDate", -1));
+        Date payrollStart = Date.from(LocalDate.of(2020, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        collection.insertMany(Arrays.asList(
+                new Document("employee", new DBRef("employee", EMPLOYEE_ID)).append("salary", "1000").append("effectiveDate", payrollStart),
+                new Document("employee", new DBRef("employee", OTHER_EMPLOYEE_ID)).append("salary", "2000").append("effectiveDate", payrollStart)));
+
+        compensationMigration.init();
+
+        assertEquals(2, collection.countDocuments(Filters.in("employeeId", EMPLOYEE_ID, OTHER_EMPLOYEE_ID)));
+        historyIsIndexed();
+    }
+}
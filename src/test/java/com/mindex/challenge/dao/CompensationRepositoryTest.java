@@ -0,0 +1,116 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CompensationRepositoryTest {
+
+    private static final String EMPLOYEE_ID = "b7839309-3348-463b-a7e3-5de1c168beb3";
+
+    private static final String OTHER_EMPLOYEE_ID = "03aa1462-ffa9-4978-901b-7c001562cf6f";
+
+    @Autowired
+    private CompensationRepository compensationRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Before
+    public void setup() {
+        Employee employee = employeeRepository.findByEmployeeId(EMPLOYEE_ID);
+        compensationRepository.insert(compensation(employee, 1000, LocalDate.of(2019, 1, 1)));
+        compensationRepository.insert(compensation(employee, 2000, LocalDate.of(2020, 1, 1)));
+        compensationRepository.insert(compensation(employee, 3000, LocalDate.of(2021, 1, 1)));
+    }
+
+    @After
+    public void teardown() {
+        compensationRepository.deleteAll();
+    }
+
+    @Test
+    public void asOfFindsLatestEffectiveRecord() {
+        assertNull(asOf(LocalDate.of(2018, 12, 31)));
+        assertEquals(1000, asOf(LocalDate.of(2019, 12, 31)).getSalary().intValue());
+        //a record is in effect from its effective date on
+        assertEquals(2000, asOf(LocalDate.of(2020, 1, 1)).getSalary().intValue());
+        assertEquals(3000, asOf(LocalDate.of(2030, 1, 1)).getSalary().intValue());
+    }
+
+    @Test
+    public void historyIncludesBothEnds() {
+        assertEquals(asList(1000, 2000), salaries(compensationRepository.findHistory(EMPLOYEE_ID,
+                LocalDate.of(2019, 1, 1), LocalDate.of(2020, 1, 1))));
+        assertEquals(asList(2000, 3000), salaries(compensationRepository.findHistory(EMPLOYEE_ID,
+                LocalDate.of(2019, 6, 1), LocalDate.of(9999, 12, 31))));
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void oneRecordPerEffectiveDate() {
+        compensationRepository.insert(compensation(employeeRepository.findByEmployeeId(EMPLOYEE_ID), 4000, LocalDate.of(2020, 1, 1)));
+    }
+
+    @Test
+    public void rollupTakesLatestSalaryPerEmployee() {
+        Employee other = employeeRepository.findByEmployeeId(OTHER_EMPLOYEE_ID);
+        compensationRepository.insert(compensation(other, 500, LocalDate.of(2019, 6, 1)));
+        compensationRepository.insert(compensation(other, 5000, LocalDate.of(2022, 1, 1)));
+
+        List<Compensation> salaries = mongoTemplate.aggregate(CompensationLookups.salariesAsOf(
+                asList(EMPLOYEE_ID, OTHER_EMPLOYEE_ID, "missing"), LocalDate.of(2020, 6, 1)), Compensation.class).getMappedResults();
+        assertEquals(asList(500, 2000), salaries.stream().map(compensation -> compensation.getSalary().intValue()).sorted().collect(Collectors.toList()));
+        assertEquals(1, mongoTemplate.aggregate(CompensationLookups.salariesAsOf(
+                asList(EMPLOYEE_ID, OTHER_EMPLOYEE_ID), LocalDate.of(2019, 3, 1)), Compensation.class).getMappedResults().size());
+    }
+
+    @Test
+    public void lookupReturnsRecordInEffectWithoutEmployee() {
+        List<Compensation> current = mongoTemplate.aggregate(CompensationLookups.compensationAsOf(
+                asList(EMPLOYEE_ID, "missing"), LocalDate.of(2020, 6, 1)), Compensation.class).getMappedResults();
+        assertEquals(1, current.size());
+        assertEquals(EMPLOYEE_ID, current.get(0).getEmployeeId());
+        assertEquals(LocalDate.of(2020, 1, 1), current.get(0).getEffectiveDate());
+        assertEquals(2000, current.get(0).getSalary().intValue());
+        assertNull(current.get(0).getEmployee());
+    }
+
+    private Compensation asOf(LocalDate date) {
+        return compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(EMPLOYEE_ID, date);
+    }
+
+    private static List<Integer> salaries(List<Compensation> history) {
+        return history.stream().map(compensation -> compensation.getSalary().intValue()).collect(Collectors.toList());
+    }
+
+    private static Compensation compensation(Employee employee, int salary, LocalDate effectiveDate) {
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(employee);
+        compensation.setEmployeeId(employee.getEmployeeId());
+        compensation.setSalary(new BigDecimal(salary));
+        compensation.setEffectiveDate(effectiveDate);
+        return compensation;
+    }
+}
@@ -0,0 +1,230 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.CursorPage;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import de.bwaldvogel.mongo.MongoServer;
+import org.bson.BsonDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EmployeeSearchTest {
+
+    private static final String DEPARTMENT = "Search";
+
+    private static final List<String> NAME_ORDER = Arrays.asList("Search.Directory", "Search.Draft", "Search.Draft.2",
+            "Search.Dreyfus", "Search.Drummond", "Search.Dunn");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoServer mongoServer;
+
+    @Before
+    public void setup() {
+        //inserted out of order, with two employees sharing a full name so only the id tells them apart
+        mongoTemplate.insertAll(Arrays.asList(
+                employee("Search.Dunn", "Ann", "Dunn", "Tester"),
+                employee("Search.Draft.2", "Bob", "Draft", "Developer"),
+                employee("Search.Dreyfus", "Ann", "Dreyfus", "Developer"),
+                employee("Search.Directory", "Zed", "Directory", "Tester"),
+                employee("Search.Draft", "Bob", "Draft", "Tester"),
+                employee("Search.Drummond", "Cy", "Drummond", "Developer")));
+    }
+
+    @After
+    public void teardown() {
+        mongoTemplate.remove(query(where("department").is(DEPARTMENT)), Employee.class);
+    }
+
+    @Test
+    public void pagesInNameOrder() {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<Employee> page = search(DEPARTMENT, null, null, cursor, 4);
+            page.getItems().forEach(employee -> ids.add(employee.getEmployeeId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(NAME_ORDER, ids);
+        assertEquals(2, pages);
+    }
+
+    @Test
+    public void pageBreaksBetweenSameNames() {
+        CursorPage<Employee> first = search(DEPARTMENT, null, null, null, 2);
+        assertEquals(Arrays.asList("Search.Directory", "Search.Draft"), ids(first));
+
+        CursorPage<Employee> second = search(DEPARTMENT, null, null, first.getNextCursor(), 2);
+        assertEquals(Arrays.asList("Search.Draft.2", "Search.Dreyfus"), ids(second));
+    }
+
+    @Test
+    public void lastFullPageHasNoCursor() {
+        CursorPage<Employee> page = search(DEPARTMENT, null, null, null, NAME_ORDER.size());
+        assertEquals(NAME_ORDER, ids(page));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void filtersByPositionAndNamePrefix() {
+        assertEquals(Arrays.asList("Search.Draft.2", "Search.Dreyfus", "Search.Drummond"),
+                ids(search(DEPARTMENT, "Developer", null, null, 10)));
+        assertEquals(Arrays.asList("Search.Draft", "Search.Draft.2", "Search.Dreyfus", "Search.Drummond"),
+                ids(search(DEPARTMENT, null, "Dr", null, 10)));
+        assertEquals(Arrays.asList("Search.Draft", "Search.Draft.2"),
+                ids(search(DEPARTMENT, null, "Draft", null, 10)));
+        //the prefix is case sensitive
+        assertTrue(search(DEPARTMENT, null, "dr", null, 10).getItems().isEmpty());
+    }
+
+    @Test
+    public void returnsOnlyDirectoryFields() {
+        Employee employee = search(DEPARTMENT, "Tester", "Dunn", null, 10).getItems().get(0);
+        assertEquals("Search.Dunn", employee.getEmployeeId());
+        assertEquals("Ann", employee.getFirstName());
+        assertEquals("Dunn", employee.getLastName());
+        assertEquals("Tester", employee.getPosition());
+        assertEquals(DEPARTMENT, employee.getDepartment());
+        assertNull(employee.getDirectReports());
+        assertNull(employee.getVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignCursor() {
+        EmployeeSearch.decodeCursor("not-a-cursor");
+    }
+
+    @Test
+    public void everySearchIsCoveredByItsIndex() {
+        assertCoveredBy(Employee.BY_DEPARTMENT_AND_POSITION, DEPARTMENT, "Tester");
+        assertCoveredBy(Employee.BY_DEPARTMENT, DEPARTMENT, null);
+        assertCoveredBy(Employee.BY_POSITION, null, "Tester");
+        assertCoveredBy(Employee.BY_NAME, null, null);
+    }
+
+    /**
+     * The in-memory server cannot explain queries, so check the plan a real server would pick instead: the search is
+     * sent hinted to an index that exists, starts with the equality filters, continues in the order results are paged in
+     * and holds every field the search filters on or returns, which leaves nothing to read but the index
+     * @param indexName
+     * @param department
+     * @param position
+     */
+    private void assertCoveredBy(String indexName, String department, String position) {
+        Employee after = EmployeeSearch.decodeCursor(EmployeeSearch.cursorAfter(employee("Search.Draft", "Bob", "Draft", "Tester")));
+        Query query = EmployeeSearch.query(department, position, "D", after, 10);
+
+        IndexInfo index = mongoTemplate.indexOps(Employee.class).getIndexInfo().stream()
+                .filter(info -> indexName.equals(info.getName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Missing index " + indexName));
+        List<String> keys = index.getIndexFields().stream().map(IndexField::getKey).collect(Collectors.toList());
+        assertEquals(keys, new ArrayList<>(sentHint(query).keySet()));
+
+        List<String> leading = new ArrayList<>();
+        if (department != null) {
+            leading.add("department");
+        }
+        if (position != null) {
+            leading.add("position");
+        }
+        leading.addAll(Arrays.asList("lastName", "firstName", "_id"));
+        assertEquals(leading, keys.subList(0, leading.size()));
+        assertEquals(Arrays.asList("lastName", "firstName", "_id"), new ArrayList<>(query.getSortObject().keySet()));
+        assertTrue(keys.containsAll(query.getFieldsObject().keySet()));
+        //the keyset condition sits under $or and only compares name and id
+        assertTrue(query.getQueryObject().keySet().stream().allMatch(field -> field.equals("$or") || keys.contains(field)));
+    }
+
+    /**
+     * Run the query on a client of its own that records the find commands it sends
+     * @param query
+     * @return BsonDocument the hint as it reached the server
+     */
+    private BsonDocument sentHint(Query query) {
+        FindCommands finds = new FindCommands();
+        try (MongoClient client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString("mongodb:/" + mongoServer.getLocalAddress()))
+                .addCommandListener(finds)
+                .build())) {
+            new MongoTemplate(client, mongoTemplate.getDb().getName()).find(query, Employee.class);
+        }
+        assertEquals(1, finds.commands.size());
+        return finds.commands.get(0).getDocument("hint");
+    }
+
+    private CursorPage<Employee> search(String department, String position, String namePrefix, String cursor, int limit) {
+        Query query = EmployeeSearch.query(department, position, namePrefix, EmployeeSearch.decodeCursor(cursor), limit);
+        return EmployeeSearch.page(mongoTemplate.find(query, Employee.class), limit);
+    }
+
+    private static List<String> ids(CursorPage<Employee> page) {
+        return page.getItems().stream().map(Employee::getEmployeeId).collect(Collectors.toList());
+    }
+
+    private static Employee employee(String id, String firstName, String lastName, String position) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        employee.setFirstName(firstName);
+        employee.setLastName(lastName);
+        employee.setPosition(position);
+        employee.setDepartment(DEPARTMENT);
+        return employee;
+    }
+
+    private static class FindCommands implements CommandListener {
+
+        private final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            if ("find".equals(event.getCommandName())) {
+                //the command is only readable while the event is handled, keep a copy
+                commands.add(event.getCommand().clone());
+            }
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+        }
+    }
+}
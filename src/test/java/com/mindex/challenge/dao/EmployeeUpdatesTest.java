@@ -0,0 +1,170 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.EmployeePatch;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EmployeeUpdatesTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @After
+    public void teardown() {
+        mongoTemplate.remove(query(where("employeeId").regex("^updates-")), Employee.class);
+    }
+
+    @Test
+    public void updateBumpsVersionAndKeepsManager() {
+        Employee employee = employee("updates-1");
+        employee.setManagerId("updates-manager");
+        mongoTemplate.insert(employee);
+        assertEquals(Long.valueOf(0), employee.getVersion());
+
+        employee.setManagerId(null);
+        employee.setPosition("Lead");
+        Employee updated = update(employee, 0L);
+        assertEquals(Long.valueOf(1), updated.getVersion());
+        assertEquals("Lead", updated.getPosition());
+        assertEquals("updates-manager", updated.getManagerId());
+        assertEquals(Long.valueOf(2), update(employee, null).getVersion());
+    }
+
+    @Test
+    public void staleVersionMatchesNothing() {
+        Employee employee = employee("updates-2");
+        mongoTemplate.insert(employee);
+        update(employee, 0L);
+
+        employee.setPosition("Lead");
+        assertNull(update(employee, 0L));
+        assertEquals("Developer", mongoTemplate.findById("updates-2", Employee.class).getPosition());
+    }
+
+    @Test
+    public void unversionedEmployeeIsVersionZero() {
+        mongoTemplate.insert(employee("updates-3"));
+        mongoTemplate.updateFirst(query(where("employeeId").is("updates-3")), new Update().unset(EmployeeUpdates.VERSION), Employee.class);
+
+        Employee updated = update(employee("updates-3"), 0L);
+        assertEquals(Long.valueOf(1), updated.getVersion());
+    }
+
+    @Test
+    public void patchAddsAndRemovesReportsInPlace() {
+        Employee manager = employee("updates-4");
+        manager.setDirectReports(new ArrayList<>(Arrays.asList(reference("updates-5"), reference("updates-6"))));
+        mongoTemplate.insert(manager);
+
+        EmployeePatch patch = new EmployeePatch();
+        patch.setPosition("Lead");
+        patch.setAddDirectReports(Arrays.asList("updates-6", "updates-7"));
+        Employee patched = patch("updates-4", patch);
+        assertEquals(Arrays.asList("updates-5", "updates-6", "updates-7"), reportIds(patched));
+        assertEquals("Lead", patched.getPosition());
+        assertEquals("John", patched.getFirstName());
+        assertEquals(Long.valueOf(1), patched.getVersion());
+
+        patch = new EmployeePatch();
+        patch.setRemoveDirectReports(Arrays.asList("updates-5", "updates-missing"));
+        assertEquals(Arrays.asList("updates-6", "updates-7"), reportIds(patch("updates-4", patch)));
+    }
+
+    @Test
+    public void patchRecognizesReportsStoredWithMoreThanTheirId() {
+        Employee manager = employee("updates-10");
+        Employee report = employee("updates-11");
+        report.setFirstName("Paul");
+        manager.setDirectReports(new ArrayList<>(Collections.singletonList(report)));
+        mongoTemplate.insert(manager);
+
+        EmployeePatch patch = new EmployeePatch();
+        patch.setAddDirectReports(Arrays.asList("updates-11", "updates-12"));
+        Employee patched = patch("updates-10", patch);
+        assertEquals(Arrays.asList("updates-11", "updates-12"), reportIds(patched));
+        assertEquals("Paul", patched.getDirectReports().get(0).getFirstName());
+        assertEquals(Long.valueOf(1), patched.getVersion());
+
+        //adding only listed reports writes nothing
+        patch.setAddDirectReports(Collections.singletonList("updates-11"));
+        patched = patch("updates-10", patch);
+        assertEquals(Arrays.asList("updates-11", "updates-12"), reportIds(patched));
+        assertEquals(Long.valueOf(1), patched.getVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patchCannotAddAndRemove() {
+        EmployeePatch patch = new EmployeePatch();
+        patch.setAddDirectReports(Collections.singletonList("updates-8"));
+        patch.setRemoveDirectReports(Collections.singletonList("updates-9"));
+        EmployeeUpdates.patching(patch);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patchMustChangeSomething() {
+        EmployeeUpdates.patching(new EmployeePatch());
+    }
+
+    /**
+     * Patch as the services do, once more without the listed reports when adding one matched nothing
+     * @param id
+     * @param patch
+     * @return Employee
+     */
+    private Employee patch(String id, EmployeePatch patch) {
+        Employee patched = mongoTemplate.findAndModify(EmployeeUpdates.matching(id, null, patch),
+                EmployeeUpdates.patching(patch), EmployeeUpdates.returnNew(), Employee.class);
+        if (patched != null || patch.getAddDirectReports() == null) {
+            return patched;
+        }
+        Employee current = mongoTemplate.findOne(EmployeeUpdates.matching(id, null), Employee.class);
+        EmployeePatch remaining = EmployeeUpdates.withoutListed(patch, current);
+        return remaining == null ? current : mongoTemplate.findAndModify(EmployeeUpdates.matching(id, null, remaining),
+                EmployeeUpdates.patching(remaining), EmployeeUpdates.returnNew(), Employee.class);
+    }
+
+    private static List<String> reportIds(Employee employee) {
+        return employee.getDirectReports().stream().map(Employee::getEmployeeId).collect(Collectors.toList());
+    }
+
+    private static Employee reference(String id) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        return employee;
+    }
+
+    private Employee update(Employee employee, Long expectedVersion) {
+        return mongoTemplate.findAndModify(EmployeeUpdates.matching(employee.getEmployeeId(), expectedVersion),
+                EmployeeUpdates.replacing(employee), EmployeeUpdates.returnNew(), Employee.class);
+    }
+
+    private static Employee employee(String id) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        employee.setFirstName("John");
+        employee.setLastName("Doe");
+        employee.setPosition("Developer");
+        employee.setDepartment("Engineering");
+        return employee;
+    }
+}
@@ -0,0 +1,129 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ManagerLinksTest {
+
+    private static final String JOHN = "16a596ae-edd3-4847-99fe-c4518e82c86f";
+
+    private static final String RINGO = "03aa1462-ffa9-4978-901b-7c001562cf6f";
+
+    private static final String PETE = "62c1084e-6e34-4630-93fd-9153afb65309";
+
+    @Autowired
+    private ManagerLinks managerLinks;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @After
+    public void teardown() {
+        mongoTemplate.remove(query(where("employeeId").regex("^links-")), Employee.class);
+    }
+
+    @Test
+    public void managerIdIsIndexed() {
+        assertTrue(mongoTemplate.indexOps(Employee.class).getIndexInfo().stream()
+                .anyMatch(index -> index.isIndexForFields(Collections.singletonList("managerId"))));
+    }
+
+    @Test
+    public void bootstrappedEmployeesAreLinked() {
+        assertEquals(RINGO, employeeRepository.findByEmployeeId(PETE).getManagerId());
+        assertEquals(JOHN, employeeRepository.findByEmployeeId(RINGO).getManagerId());
+        assertNull(employeeRepository.findByEmployeeId(JOHN).getManagerId());
+    }
+
+    @Test
+    public void linkReleasesReportsNoLongerListed() {
+        Employee manager = employee("links-1", "links-2", "links-3");
+        employeeRepository.insert(Arrays.asList(manager, employee("links-2"), employee("links-3"), employee("links-4")));
+        managerLinks.linkAll(Collections.singletonList(manager));
+        //read through the cache so the link below has to evict it
+        assertEquals("links-1", employeeRepository.findByEmployeeId("links-2").getManagerId());
+
+        managerLinks.link(employee("links-1", "links-3", "links-4"));
+        assertNull(employeeRepository.findByEmployeeId("links-2").getManagerId());
+        assertEquals("links-1", employeeRepository.findByEmployeeId("links-3").getManagerId());
+        assertEquals("links-1", employeeRepository.findByEmployeeId("links-4").getManagerId());
+    }
+
+    @Test
+    public void claimMovesReportOffOldManager() {
+        Employee oldManager = employee("links-7", "links-9", "links-10");
+        employeeRepository.insert(Arrays.asList(oldManager, employee("links-8"), employee("links-9"), employee("links-10")));
+        managerLinks.linkAll(Collections.singletonList(oldManager));
+        assertEquals(0, (long) employeeRepository.findByEmployeeId("links-7").getVersion());
+
+        List<Employee> previousManagers = managerLinks.claim("links-8", Collections.singletonList("links-9"));
+        assertEquals(1, previousManagers.size());
+        assertEquals(Collections.singletonList("links-10"), reportIds(previousManagers.get(0)));
+        Employee stored = employeeRepository.findByEmployeeId("links-7");
+        assertEquals(Collections.singletonList("links-10"), reportIds(stored));
+        //an update based on the old reporting lines no longer matches
+        assertEquals(1, (long) stored.getVersion());
+
+        //updating the old manager as stored now leaves the moved report with its new manager
+        stored.setPosition("Manager");
+        assertTrue(managerLinks.link(stored).isEmpty());
+        assertEquals("links-8", employeeRepository.findByEmployeeId("links-9").getManagerId());
+        assertEquals("links-7", employeeRepository.findByEmployeeId("links-10").getManagerId());
+    }
+
+    @Test
+    public void backfillOnlySetsMissingManagers() {
+        employeeRepository.insert(Arrays.asList(employee("links-5", "links-6"), employee("links-6")));
+        assertTrue(managerLinks.backfill() >= 1);
+        assertEquals("links-5", employeeRepository.findByEmployeeId("links-6").getManagerId());
+
+        mongoTemplate.updateFirst(query(where("employeeId").is(PETE)), new Update().unset("managerId"), Employee.class);
+        assertEquals(1, managerLinks.backfill());
+        assertEquals(0, managerLinks.backfill());
+        assertEquals(RINGO, employeeRepository.findByEmployeeId(PETE).getManagerId());
+    }
+
+    private static Employee employee(String id, String... reports) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        List<Employee> directReports = new ArrayList<>();
+        for (String report : reports) {
+            Employee directReport = new Employee();
+            directReport.setEmployeeId(report);
+            directReports.add(directReport);
+        }
+        employee.setDirectReports(directReports);
+        return employee;
+    }
+
+    private static List<String> reportIds(Employee manager) {
+        List<String> ids = new ArrayList<>();
+        for (Employee report : manager.getDirectReports()) {
+            ids.add(report.getEmployeeId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,282 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrgGraphIndexTest {
+
+    private OrgGraphIndex orgGraphIndex;
+
+    @Before
+    public void setup() {
+        orgGraphIndex = new OrgGraphIndex();
+        orgGraphIndex.rebuild(Arrays.asList(
+                employee("john", "paul", "ringo"),
+                employee("paul"),
+                employee("ringo", "pete", "george"),
+                employee("pete"),
+                employee("george")).iterator());
+    }
+
+    @Test
+    public void countReports() {
+        assertEquals(4, orgGraphIndex.countReports("john"));
+        assertEquals(2, orgGraphIndex.countReports("ringo"));
+        assertEquals(0, orgGraphIndex.countReports("paul"));
+    }
+
+    @Test
+    public void countReportsUnknownEmployee() {
+        assertEquals(OrgGraphIndex.UNKNOWN, orgGraphIndex.countReports("yoko"));
+    }
+
+    @Test
+    public void update() {
+        orgGraphIndex.update(employee("yoko", "sean"));
+        orgGraphIndex.update(employee("paul", "yoko"));
+        assertEquals(2, orgGraphIndex.countReports("paul"));
+        assertEquals(6, orgGraphIndex.countReports("john"));
+
+        orgGraphIndex.update(employee("ringo"));
+        assertEquals(4, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void updateSurvivesCompaction() {
+        //enough patched rows to force the override table to be folded back into the compressed rows
+        List<String> reports = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            orgGraphIndex.update(employee("temp" + i));
+            reports.add("temp" + i);
+        }
+        orgGraphIndex.update(employee("paul", reports.toArray(new String[0])));
+        assertEquals(2000, orgGraphIndex.countReports("paul"));
+        assertEquals(2004, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void materializedCountsFollowUpdates() {
+        assertTrue(orgGraphIndex.isMaterialized());
+        orgGraphIndex.update(employee("pete", "stuart", "yoko"));
+        orgGraphIndex.update(employee("yoko", "sean"));
+        assertTrue(orgGraphIndex.isMaterialized());
+        assertEquals(3, orgGraphIndex.countReports("pete"));
+        assertEquals(5, orgGraphIndex.countReports("ringo"));
+        assertEquals(7, orgGraphIndex.countReports("john"));
+
+        //moving a whole branch only touches the managers above the old and new positions
+        orgGraphIndex.update(employee("pete", "stuart"));
+        orgGraphIndex.update(employee("paul", "yoko"));
+        assertTrue(orgGraphIndex.isMaterialized());
+        assertEquals(2, orgGraphIndex.countReports("paul"));
+        assertEquals(3, orgGraphIndex.countReports("ringo"));
+        assertEquals(7, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void sharedReportFallsBackToWalk() {
+        //paul briefly reports to both john and ringo, e.g. halfway through moving him
+        orgGraphIndex.update(employee("ringo", "pete", "george", "paul"));
+        assertFalse(orgGraphIndex.isMaterialized());
+        assertEquals(3, orgGraphIndex.countReports("ringo"));
+        assertEquals(4, orgGraphIndex.countReports("john"));
+
+        orgGraphIndex.update(employee("john", "ringo"));
+        assertTrue(orgGraphIndex.isMaterialized());
+        assertEquals(3, orgGraphIndex.countReports("ringo"));
+        assertEquals(4, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void concurrentUpdatesToDifferentBranches() throws InterruptedException {
+        int branches = 8;
+        int updates = 200;
+        List<String> branchIds = new ArrayList<>();
+        for (int branch = 0; branch < branches; branch++) {
+            branchIds.add("branch" + branch);
+        }
+        orgGraphIndex.update(employee("john", branchIds.toArray(new String[0])));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int branch = 0; branch < branches; branch++) {
+            String branchId = branchIds.get(branch);
+            threads.add(new Thread(() -> {
+                for (int update = 1; update <= updates; update++) {
+                    String[] reports = new String[update % 10];
+                    for (int i = 0; i < reports.length; i++) {
+                        reports[i] = branchId + "-" + i;
+                    }
+                    orgGraphIndex.update(employee(branchId, reports));
+                    orgGraphIndex.countReports("john");
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(orgGraphIndex.isMaterialized());
+        for (String branchId : branchIds) {
+            assertEquals(updates % 10, orgGraphIndex.countReports(branchId));
+        }
+        assertEquals(branches + branches * (updates % 10), orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void countReportsSharedSubtrees() {
+        //pete heads a private tree, george is shared between ringo and paul and heads one of his own
+        orgGraphIndex.update(employee("pete", "stuart", "yoko"));
+        orgGraphIndex.update(employee("george", "sean", "julian"));
+        orgGraphIndex.update(employee("paul", "george", "linda"));
+        assertFalse(orgGraphIndex.isMaterialized());
+        assertEquals(4, orgGraphIndex.countReports("paul"));
+        assertEquals(6, orgGraphIndex.countReports("ringo"));
+        assertEquals(9, orgGraphIndex.countReports("john"));
+    }
+
+    @Test(expected = CyclicReportingStructureException.class)
+    public void countReportsCycle() {
+        orgGraphIndex.update(employee("george", "john"));
+        orgGraphIndex.countReports("john");
+    }
+
+    @Test
+    public void countReportsOutsideCycle() {
+        orgGraphIndex.update(employee("george", "ringo"));
+        assertEquals(0, orgGraphIndex.countReports("paul"));
+        assertEquals(0, orgGraphIndex.countReports("pete"));
+        try {
+            orgGraphIndex.countReports("john");
+            fail("Expected a cycle to be reported");
+        } catch (CyclicReportingStructureException e) {
+            //expected
+        }
+
+        //breaking the cycle makes the counts whole again
+        orgGraphIndex.update(employee("george"));
+        assertTrue(orgGraphIndex.isMaterialized());
+        assertEquals(4, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void updateDuringRebuildIsApplied() throws Exception {
+        orgGraphIndex.invalidate();
+        Thread updater = new Thread(() -> orgGraphIndex.update(employee("paul", "yoko")));
+        Iterator<Employee> employees = Arrays.asList(employee("john", "paul", "ringo"), employee("paul"), employee("ringo")).iterator();
+        orgGraphIndex.rebuild(new Iterator<Employee>() {
+            @Override
+            public boolean hasNext() {
+                return employees.hasNext();
+            }
+
+            @Override
+            public Employee next() {
+                Employee employee = employees.next();
+                if (!employees.hasNext()) {
+                    //paul is written after the load has read him, the update has to wait for the load to finish
+                    updater.start();
+                    try {
+                        updater.join(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return employee;
+            }
+        });
+        updater.join();
+
+        assertEquals(1, orgGraphIndex.countReports("paul"));
+        assertEquals(3, orgGraphIndex.countReports("john"));
+    }
+
+    @Test
+    public void countReportsMaxDepth() {
+        assertEquals(2, orgGraphIndex.countReports("john", 1));
+        assertEquals(4, orgGraphIndex.countReports("john", 2));
+        assertEquals(4, orgGraphIndex.countReports("john", 10));
+        assertEquals(OrgGraphIndex.UNKNOWN, orgGraphIndex.countReports("yoko", 1));
+
+        //a limited walk counts everyone on a cycle once instead of failing
+        orgGraphIndex.update(employee("george", "john"));
+        assertEquals(4, orgGraphIndex.countReports("john", 3));
+        assertEquals(4, orgGraphIndex.countReports("ringo", 4));
+    }
+
+    @Test
+    public void footprintAtOneMillionEmployees() {
+        int employees = 1_000_000;
+        orgGraphIndex.rebuild(new SyntheticTree(employees, 10));
+
+        assertEquals(employees - 1, orgGraphIndex.countReports(SyntheticTree.id(0)));
+        //about 197 bytes per employee with uuid length ids, most of it the ids and their map entries
+        long footprint = orgGraphIndex.estimateFootprintBytes();
+        assertTrue("Footprint of " + footprint + " bytes", footprint < 200L * 1024 * 1024);
+    }
+
+    private static Employee employee(String id, String... reports) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        List<Employee> directReports = new ArrayList<>();
+        for (String report : reports) {
+            Employee directReport = new Employee();
+            directReport.setEmployeeId(report);
+            directReports.add(directReport);
+        }
+        employee.setDirectReports(directReports);
+        return employee;
+    }
+
+    /**
+     * Generates a complete tree lazily so a million employees never sit on the heap at once
+     */
+    private static class SyntheticTree implements Iterator<Employee> {
+        private final int size;
+        private final int fanOut;
+        private int next;
+
+        SyntheticTree(int size, int fanOut) {
+            this.size = size;
+            this.fanOut = fanOut;
+        }
+
+        //same length as the UUIDs assigned to real employees so the footprint estimate is realistic
+        static String id(int ordinal) {
+            String digits = Integer.toString(ordinal);
+            return "00000000".substring(digits.length()) + digits + "-0000-0000-0000-000000000000";
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Employee next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<String> reports = new ArrayList<>();
+            for (long child = (long) next * fanOut + 1; child <= (long) next * fanOut + fanOut && child < size; child++) {
+                reports.add(id((int) child));
+            }
+            return employee(id(next++), reports.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.mindex.challenge.dao;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.mindex.challenge.config.CacheConfig.COMPENSATION_CACHE;
+import static com.mindex.challenge.config.CacheConfig.EMPLOYEE_CACHE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RepositoryCacheTest {
+
+    private static final String EMPLOYEE_ID = "b7839309-3348-463b-a7e3-5de1c168beb3";
+
+    private static final String OTHER_EMPLOYEE_ID = "c0c2293d-16bd-4603-8e08-638a9d18b22c";
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private CompensationRepository compensationRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache employeeCache;
+
+    private Cache compensationCache;
+
+    @Before
+    public void setup() {
+        employeeCache = cacheManager.getCache(EMPLOYEE_CACHE);
+        compensationCache = cacheManager.getCache(COMPENSATION_CACHE);
+        employeeCache.clear();
+        compensationCache.clear();
+    }
+
+    @Test
+    public void findByEmployeeIdIsCached() {
+        Employee employee = employeeRepository.findByEmployeeId(EMPLOYEE_ID);
+        assertNotNull(employeeCache.get(EMPLOYEE_ID));
+        assertSame(employee, employeeRepository.findByEmployeeId(EMPLOYEE_ID));
+        assertNotNull(meterRegistry.find("cache.gets").tag("cache", EMPLOYEE_CACHE).tag("result", "hit").functionCounter());
+    }
+
+    @Test
+    public void missingEmployeeIsNotCached() {
+        assertNull(employeeRepository.findByEmployeeId("missing"));
+        assertNull(employeeCache.get("missing"));
+    }
+
+    @Test
+    public void insertEvictsCompensation() {
+        Employee employee = employeeRepository.findByEmployeeId(EMPLOYEE_ID);
+        LocalDate today = LocalDate.now();
+        assertNull(asOf(EMPLOYEE_ID, today));
+
+        compensationRepository.insert(compensation(employee, 12345, today.minusYears(1)));
+        assertNotNull(asOf(EMPLOYEE_ID, today));
+        assertNotNull(compensationCache.get(key(EMPLOYEE_ID, today)));
+
+        //a raise changes the answer for every later date, not just for its own effective date
+        compensationRepository.insert(compensation(employee, 23456, today.minusMonths(1)));
+        assertNull(compensationCache.get(key(EMPLOYEE_ID, today)));
+        assertEquals(0, new BigDecimal(23456).compareTo(asOf(EMPLOYEE_ID, today).getSalary()));
+        compensationRepository.deleteAll();
+    }
+
+    @Test
+    public void insertKeepsOtherEmployeesCompensation() {
+        LocalDate today = LocalDate.now();
+        compensationRepository.insert(compensation(employeeRepository.findByEmployeeId(OTHER_EMPLOYEE_ID), 34567, today.minusYears(1)));
+        assertNotNull(asOf(OTHER_EMPLOYEE_ID, today));
+
+        compensationRepository.insert(compensation(employeeRepository.findByEmployeeId(EMPLOYEE_ID), 12345, today.minusYears(1)));
+        assertNotNull(compensationCache.get(key(OTHER_EMPLOYEE_ID, today)));
+        compensationRepository.deleteAll();
+    }
+
+    @Test
+    public void pastCompensationIsNotCached() {
+        LocalDate lastMonth = LocalDate.now().minusMonths(1);
+        compensationRepository.insert(compensation(employeeRepository.findByEmployeeId(EMPLOYEE_ID), 12345, lastMonth.minusYears(1)));
+        assertNotNull(asOf(EMPLOYEE_ID, lastMonth));
+        assertNull(compensationCache.get(key(EMPLOYEE_ID, lastMonth)));
+        compensationRepository.deleteAll();
+    }
+
+    private Compensation asOf(String employeeId, LocalDate date) {
+        return compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(employeeId, date);
+    }
+
+    private static String key(String employeeId, LocalDate date) {
+        return employeeId + "@" + date;
+    }
+
+    private static Compensation compensation(Employee employee, int salary, LocalDate effectiveDate) {
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(employee);
+        compensation.setEmployeeId(employee.getEmployeeId());
+        compensation.setSalary(new BigDecimal(salary));
+        compensation.setEffectiveDate(effectiveDate);
+        return compensation;
+    }
+}
@@ -0,0 +1,111 @@
+package com.mindex.challenge.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static com.mindex.challenge.metrics.RepositoryCallsInterceptor.REPOSITORY_CALLS_SUMMARY;
+import static com.mindex.challenge.metrics.RepositoryMetricsAspect.REPOSITORY_TIMER;
+import static com.mindex.challenge.service.ApplicationConstants.ENGINE_TIMER;
+import static com.mindex.challenge.service.ApplicationConstants.SERVICE_TIMER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+//metrics are only exported from tests that ask for them
+@AutoConfigureObservability
+public class MetricsTest {
+
+    private static final String EMPLOYEE_ID = "16a596ae-edd3-4847-99fe-c4518e82c86f";
+
+    private static final String DIRECT_REPORTS_URI = "/employee/{id}/direct-reports";
+
+    private static final String SEARCH_URI = "/employee";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void reportingStructureRequestIsMeasuredPerLayer() throws Exception {
+        DistributionSummary before = meterRegistry.find(REPOSITORY_CALLS_SUMMARY).tag("uri", DIRECT_REPORTS_URI).summary();
+        long countBefore = before == null ? 0 : before.count();
+        double callsBefore = before == null ? 0 : before.totalAmount();
+
+        MvcResult started = mockMvc.perform(get("/employee/" + EMPLOYEE_ID + "/direct-reports"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        //one batched lookup per level with reports, counted on the executor threads, the employee may be a cache hit
+        DistributionSummary calls = meterRegistry.get(REPOSITORY_CALLS_SUMMARY).tag("uri", DIRECT_REPORTS_URI).summary();
+        assertEquals(countBefore + 1, calls.count());
+        assertTrue("calls " + (calls.totalAmount() - callsBefore), calls.totalAmount() - callsBefore >= 2);
+
+        assertNotNull(meterRegistry.find(SERVICE_TIMER).tag("method", "readEmployeeReportingStructure").timer());
+        assertNotNull(meterRegistry.find(ENGINE_TIMER).tag("method", "countReports").timer());
+        Timer repository = meterRegistry.find(REPOSITORY_TIMER)
+                .tag("repository", "EmployeeRepository")
+                .tag("method", "findDirectReportsByEmployeeIdIn")
+                .timer();
+        assertNotNull(repository);
+        assertTrue(repository.count() > 0);
+        assertNotNull(meterRegistry.find("mongodb.driver.commands").timer());
+    }
+
+    @Test
+    public void templateQueriesAreCounted() throws Exception {
+        DistributionSummary before = meterRegistry.find(REPOSITORY_CALLS_SUMMARY).tag("uri", SEARCH_URI).summary();
+        double callsBefore = before == null ? 0 : before.totalAmount();
+
+        //the search goes through the mongo template rather than a repository
+        MvcResult started = mockMvc.perform(get("/employee").param("department", "Engineering"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        DistributionSummary calls = meterRegistry.get(REPOSITORY_CALLS_SUMMARY).tag("uri", SEARCH_URI).summary();
+        assertTrue("calls " + (calls.totalAmount() - callsBefore), calls.totalAmount() - callsBefore >= 1);
+    }
+
+    @Test
+    public void repositoryCallsOutsideRequestsAreNotCounted() {
+        RepositoryCallCounter.increment();
+        assertEquals(-1, RepositoryCallCounter.stop());
+    }
+
+    @Test
+    public void healthIsUp() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void prometheusScrape() throws Exception {
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/employee/" + EMPLOYEE_ID)).andReturn())).andExpect(status().isOk());
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(scrape.contains("employee_service_seconds_bucket"));
+        assertTrue(scrape.contains("employee_repository_seconds_bucket"));
+        assertTrue(scrape.contains("http_server_requests_repository_calls_bucket"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.EmployeeService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+public class AsyncEmployeeServiceImplTest {
+
+    @InjectMocks
+    private AsyncEmployeeServiceImpl asyncEmployeeService;
+
+    @Mock
+    private EmployeeService employeeService;
+
+    private ThreadPoolTaskExecutor executor;
+
+    private ThreadPoolTaskExecutor traversalExecutor;
+
+    private Employee testEmployee;
+
+    @Before
+    public void setup() {
+        executor = singleThreadExecutor();
+        traversalExecutor = singleThreadExecutor();
+        ReflectionTestUtils.setField(asyncEmployeeService, "executor", executor);
+        ReflectionTestUtils.setField(asyncEmployeeService, "traversalExecutor", traversalExecutor);
+
+        testEmployee = new Employee();
+        testEmployee.setEmployeeId("123");
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+        traversalExecutor.shutdown();
+    }
+
+    @Test
+    public void readEmployeeRunsOnExecutor() throws Exception {
+        String caller = Thread.currentThread().getName();
+        when(employeeService.readEmployee("123")).thenAnswer(invocation -> {
+            assertNotEquals(caller, Thread.currentThread().getName());
+            return testEmployee;
+        });
+        assertEquals(testEmployee, asyncEmployeeService.readEmployee("123").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void readEmployeeReportingStructure() throws Exception {
+        ReportingStructure reportingStructure = new ReportingStructure(testEmployee, 2);
+        when(employeeService.readEmployeeReportingStructure("123", 3, null)).thenReturn(reportingStructure);
+        assertEquals(reportingStructure, asyncEmployeeService.readEmployeeReportingStructure("123", 3, null).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failuresCompleteTheFuture() throws Exception {
+        when(employeeService.readEmployee("123")).thenThrow(new EmptyObjectException("missing"));
+        try {
+            asyncEmployeeService.readEmployee("123").get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EmptyObjectException);
+            return;
+        }
+        throw new AssertionError("expected the future to fail");
+    }
+
+    @Test(expected = TaskRejectedException.class)
+    public void saturatedExecutorRejects() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(employeeService.readEmployee("123")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return testEmployee;
+        });
+        try {
+            //one running on the only thread and one waiting in the queue leaves no room for a third
+            asyncEmployeeService.readEmployee("123");
+            asyncEmployeeService.readEmployee("123");
+            asyncEmployeeService.readEmployee("123");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void saturatedTraversalsLeavePointReads() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(employeeService.readEmployeeReportingStructure("123", 3, null)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new ReportingStructure(testEmployee, 2);
+        });
+        when(employeeService.readEmployee("123")).thenReturn(testEmployee);
+        try {
+            asyncEmployeeService.readEmployeeReportingStructure("123", 3, null);
+            asyncEmployeeService.readEmployeeReportingStructure("123", 3, null);
+            try {
+                asyncEmployeeService.readEmployeeReportingStructure("123", 3, null);
+                throw new AssertionError("expected the traversal executor to be saturated");
+            } catch (TaskRejectedException e) {
+                //the traversal pool is full
+            }
+            assertEquals(testEmployee, asyncEmployeeService.readEmployee("123").get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * @return ThreadPoolTaskExecutor with one thread and room for one more call in its queue
+     */
+    private static ThreadPoolTaskExecutor singleThreadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,123 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.data.Compensation;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.model.EmployeeExport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EmployeeExportTest {
+
+    private static final String PREFIX = "export-";
+
+    private static final int BATCH_SIZE = 2;
+
+    @Autowired
+    private EmployeeServiceImpl employeeService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private int batchSize;
+
+    @Before
+    public void setup() {
+        batchSize = (int) ReflectionTestUtils.getField(employeeService, "exportBatchSize");
+        ReflectionTestUtils.setField(employeeService, "exportBatchSize", BATCH_SIZE);
+
+        //inserted out of id order
+        List<Employee> employees = Arrays.asList(employee("export-3"), employee("export-1"), employee("export-5"),
+                employee("export-2"), employee("export-4"));
+        mongoTemplate.insertAll(employees);
+        mongoTemplate.insert(compensation(employees.get(1), "1000", LocalDate.of(2019, 1, 1)));
+        mongoTemplate.insert(compensation(employees.get(1), "2000", LocalDate.of(2021, 1, 1)));
+        mongoTemplate.insert(compensation(employees.get(0), "3000", LocalDate.of(2019, 1, 1)));
+    }
+
+    @After
+    public void teardown() {
+        ReflectionTestUtils.setField(employeeService, "exportBatchSize", batchSize);
+        mongoTemplate.remove(query(where("employeeId").regex("^" + PREFIX)), Employee.class);
+        mongoTemplate.remove(query(where("employeeId").regex("^" + PREFIX)), Compensation.class);
+    }
+
+    @Test
+    public void exportsEveryEmployeeInIdOrderInBoundedBatches() {
+        List<List<EmployeeExport>> batches = new ArrayList<>();
+        long exported = employeeService.exportEmployees(null, null, batches::add);
+
+        List<String> ids = batches.stream().flatMap(List::stream).map(EmployeeExport::getEmployeeId).collect(Collectors.toList());
+        assertEquals(mongoTemplate.count(new Query(), Employee.class), exported);
+        assertEquals(exported, ids.size());
+        assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+        assertTrue(ids.containsAll(Arrays.asList("export-1", "export-2", "export-3", "export-4", "export-5")));
+        assertTrue(batches.stream().allMatch(batch -> !batch.isEmpty() && batch.size() <= BATCH_SIZE));
+        assertNull(batches.get(0).get(0).getSalary());
+    }
+
+    @Test
+    public void resumesAfterLastExportedId() {
+        List<EmployeeExport> rows = new ArrayList<>();
+        employeeService.exportEmployees("export-2", null, rows::addAll);
+
+        List<String> ids = rows.stream().map(EmployeeExport::getEmployeeId).filter(id -> id.startsWith(PREFIX)).collect(Collectors.toList());
+        assertEquals(Arrays.asList("export-3", "export-4", "export-5"), ids);
+        assertTrue(rows.stream().allMatch(row -> row.getEmployeeId().compareTo("export-2") > 0));
+    }
+
+    @Test
+    public void joinsCompensationAsOf() {
+        List<EmployeeExport> rows = new ArrayList<>();
+        employeeService.exportEmployees("export-", LocalDate.of(2020, 6, 1), rows::addAll);
+
+        EmployeeExport first = rows.get(0);
+        assertEquals("export-1", first.getEmployeeId());
+        assertEquals("Export", first.getLastName());
+        assertEquals(new BigDecimal("1000"), first.getSalary());
+        assertEquals(LocalDate.of(2019, 1, 1), first.getEffectiveDate());
+        assertNull(rows.get(1).getSalary());
+        assertEquals(new BigDecimal("3000"), rows.get(2).getSalary());
+    }
+
+    private static Employee employee(String id) {
+        Employee employee = new Employee();
+        employee.setEmployeeId(id);
+        employee.setFirstName("Dump");
+        employee.setLastName("Export");
+        employee.setPosition("Analyst");
+        employee.setDepartment("Warehouse");
+        return employee;
+    }
+
+    private static Compensation compensation(Employee employee, String salary, LocalDate effectiveDate) {
+        Compensation compensation = new Compensation();
+        compensation.setEmployee(employee);
+        compensation.setEmployeeId(employee.getEmployeeId());
+        compensation.setSalary(new BigDecimal(salary));
+        compensation.setEffectiveDate(effectiveDate);
+        return compensation;
+    }
+}
@@ -2,23 +2,68 @@ package com.mindex.challenge.service.impl;
 
 import com.mindex.challenge.dao.CompensationRepository;
 import com.mindex.challenge.dao.EmployeeRepository;
+import com.mindex.challenge.dao.ManagerLinks;
+import com.mindex.challenge.dao.OrgGraphIndex;
 import com.mindex.challenge.data.Compensation;
 import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
 import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.CompensationRollup;
+import com.mindex.challenge.model.CursorPage;
+import com.mindex.challenge.model.EmployeePatch;
+import com.mindex.challenge.model.MultiGetResult;
 import com.mindex.challenge.model.ReportingStructure;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import jakarta.validation.Validation;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -33,6 +78,24 @@ public class EmployeeServiceImplTest {
     @Mock
     private CompensationRepository compensationRepository;
 
+    @Mock
+    private OrgGraphIndex orgGraphIndex;
+
+    @Mock
+    private ManagerLinks managerLinks;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
     private Employee testEmployee;
 
     private Employee testEmployee2;
@@ -45,6 +108,11 @@ public class EmployeeServiceImplTest {
 
     @Before
     public void setup() {
+        ReflectionTestUtils.setField(employeeService, "reportingStructureEngine", new BatchedReportingStructureEngine(employeeRepository));
+        ReflectionTestUtils.setField(employeeService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(employeeService, "batchChunkSize", 2);
+        when(cacheManager.getCache(Mockito.anyString())).thenReturn(cache);
+
         testEmployee = new Employee();
         testEmployee.setEmployeeId("123");
         testEmployee.setFirstName("John");
@@ -85,22 +153,137 @@ public class EmployeeServiceImplTest {
       when(employeeRepository.insert(Mockito.any(Employee.class))).thenReturn(testEmployee);
       Employee employeeReturn = employeeService.createEmployee(testEmployee);
       assertEquals(testEmployee, employeeReturn);
+      verify(managerLinks).linkAll(Collections.singletonList(testEmployee));
+    }
+
+    @Test
+    public void createEmployees() {
+        mockBulkInsert();
+        Employee invalid = new Employee();
+        List<Employee> employees = Arrays.asList(testEmployee, testEmployee2, invalid, testEmployee3, testEmployee4);
+
+        BatchResult result = employeeService.createEmployees(employees);
+        assertEquals(4, result.getCreated());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getIndex());
+        assertNotNull(testEmployee4.getEmployeeId());
+        //four valid employees written two per chunk
+        verify(bulkOperations, times(2)).insert(Mockito.anyList());
+        verify(orgGraphIndex).invalidate();
+    }
+
+    @Test
+    public void createEmployeesReportsWriteErrors() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(Mockito.anyList())).thenReturn(bulkOperations);
+        //the second document of the only chunk is rejected by the server
+        BulkWriteResult writeResult = Mockito.mock(BulkWriteResult.class);
+        when(writeResult.getInsertedCount()).thenReturn(1);
+        BulkOperationException exception = Mockito.mock(BulkOperationException.class);
+        when(exception.getResult()).thenReturn(writeResult);
+        when(exception.getErrors()).thenReturn(Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)));
+        when(bulkOperations.execute()).thenThrow(exception);
+
+        BatchResult result = employeeService.createEmployees(Arrays.asList(null, testEmployee, testEmployee2));
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getErrors().size());
+        assertEquals(0, result.getErrors().get(0).getIndex());
+        assertEquals(2, result.getErrors().get(1).getIndex());
+        assertEquals("duplicate key", result.getErrors().get(1).getMessage());
+        //only the employee that was written gets its reports linked
+        verify(managerLinks).linkAll(Collections.singletonList(testEmployee));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createEmployeesEmpty() {
+        employeeService.createEmployees(new ArrayList<>());
     }
 
     @Test
     public void testUpdateEmployee() {
-        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
-        when(employeeRepository.save(Mockito.any(Employee.class))).thenReturn(testEmployee);
+        Employee stored = new Employee();
+        stored.setEmployeeId(testEmployee.getEmployeeId());
+        stored.setVersion(1L);
+        when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Employee.class))).thenReturn(stored);
         Employee employeeReturn = employeeService.updateEmployee(testEmployee);
-        assertEquals(testEmployee, employeeReturn);
+        assertEquals(stored, employeeReturn);
+        verify(cache).evict(testEmployee.getEmployeeId());
+        //a single write, nothing is read up front
+        verify(employeeRepository, never()).findByEmployeeId(Mockito.anyString());
+    }
+
+    @Test
+    public void updateEmployeeKeepsManager() {
+        Employee stored = new Employee();
+        stored.setEmployeeId(testEmployee.getEmployeeId());
+        stored.setManagerId(testEmployee2.getEmployeeId());
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(Mockito.any(Query.class), update.capture(),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Employee.class))).thenReturn(stored);
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee3));
+        employeeService.updateEmployee(testEmployee);
+        //the manager id belongs to whoever lists this employee so the update leaves it alone
+        assertFalse(update.getValue().modifies("managerId"));
+        assertTrue(update.getValue().modifies("version"));
+        verify(managerLinks).link(stored);
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void updateEmployeeMatchesVersion() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Employee.class))).thenReturn(testEmployee);
+
+        testEmployee.setVersion(3L);
+        employeeService.updateEmployee(testEmployee);
+        assertEquals(3L, query.getValue().getQueryObject().get("version"));
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void updateEmployeeStaleVersion() {
+        when(mongoTemplate.exists(Mockito.any(Query.class), Mockito.eq(Employee.class))).thenReturn(true);
+        testEmployee.setVersion(3L);
+        employeeService.updateEmployee(testEmployee);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testUpdateNonExistentEmployee() {
-        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(null);
+        employeeService.updateEmployee(testEmployee);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void updateNonExistentEmployeeWithVersion() {
+        testEmployee.setVersion(3L);
         employeeService.updateEmployee(testEmployee);
     }
 
+    @Test
+    public void patchEmployeeLinksOnlyTouchedReports() {
+        Employee stored = new Employee();
+        stored.setEmployeeId(testEmployee.getEmployeeId());
+        when(mongoTemplate.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+                Mockito.any(FindAndModifyOptions.class), Mockito.eq(Employee.class))).thenReturn(stored);
+
+        EmployeePatch patch = new EmployeePatch();
+        patch.setAddDirectReports(Collections.singletonList(testEmployee2.getEmployeeId()));
+        assertEquals(stored, employeeService.patchEmployee(testEmployee.getEmployeeId(), patch, null));
+        verify(managerLinks).claim(testEmployee.getEmployeeId(), patch.getAddDirectReports());
+        verify(managerLinks, never()).link(Mockito.any(Employee.class));
+        verify(orgGraphIndex).update(stored);
+        verify(cache).evict(testEmployee.getEmployeeId());
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void patchEmployeeStaleVersion() {
+        when(mongoTemplate.exists(Mockito.any(Query.class), Mockito.eq(Employee.class))).thenReturn(true);
+        EmployeePatch patch = new EmployeePatch();
+        patch.setPosition("Lead");
+        employeeService.patchEmployee(testEmployee.getEmployeeId(), patch, 3L);
+    }
+
     @Test
     public void testReadEmployee() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
@@ -114,12 +297,48 @@ public class EmployeeServiceImplTest {
         employeeService.readEmployee(testEmployee.getEmployeeId());
     }
 
+    @Test
+    public void readEmployeeManagers() {
+        testEmployee4.setManagerId(testEmployee3.getEmployeeId());
+        testEmployee3.setManagerId(testEmployee2.getEmployeeId());
+        testEmployee2.setManagerId(testEmployee.getEmployeeId());
+        mockFindByEmployeeId();
+
+        assertEquals(Arrays.asList(testEmployee3, testEmployee2, testEmployee),
+                employeeService.readEmployeeManagers(testEmployee4.getEmployeeId()));
+        assertEquals(Collections.emptyList(), employeeService.readEmployeeManagers(testEmployee.getEmployeeId()));
+    }
+
+    @Test
+    public void readEmployeeManagersMissingManager() {
+        testEmployee4.setManagerId(testEmployee3.getEmployeeId());
+        testEmployee3.setManagerId("missing");
+        mockFindByEmployeeId();
+
+        assertEquals(Collections.singletonList(testEmployee3), employeeService.readEmployeeManagers(testEmployee4.getEmployeeId()));
+    }
+
+    @Test(expected = CyclicReportingStructureException.class)
+    public void readEmployeeManagersCycle() {
+        //the chain starts outside of the cycle and runs into it
+        testEmployee4.setManagerId(testEmployee3.getEmployeeId());
+        testEmployee3.setManagerId(testEmployee2.getEmployeeId());
+        testEmployee2.setManagerId(testEmployee3.getEmployeeId());
+        mockFindByEmployeeId();
+
+        employeeService.readEmployeeManagers(testEmployee4.getEmployeeId());
+    }
+
+    @Test(expected = EmptyObjectException.class)
+    public void readNonExistentEmployeeManagers() {
+        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(null);
+        employeeService.readEmployeeManagers(testEmployee.getEmployeeId());
+    }
+
     @Test
     public void readReportingStructure() {
         when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
-        when(employeeRepository.findByEmployeeId(testEmployee2.getEmployeeId())).thenReturn(testEmployee2);
-        when(employeeRepository.findByEmployeeId(testEmployee3.getEmployeeId())).thenReturn(testEmployee3);
-        when(employeeRepository.findByEmployeeId(testEmployee4.getEmployeeId())).thenReturn(testEmployee4);
+        mockFindByEmployeeIdIn();
         ReportingStructure reportingStructureReturn;
 
         testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
@@ -161,6 +380,270 @@ public class EmployeeServiceImplTest {
         cleanReportingStructure();
     }
 
+    @Test
+    public void readReportingStructureQueriesOncePerLevel() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        ReportingStructure reportingStructureReturn = employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId());
+        assertEquals(3, reportingStructureReturn.getNumberOfReports());
+        //one lookup for the root, then one $in query per level of the tree instead of one query per report
+        verify(employeeRepository, times(1)).findByEmployeeId(Mockito.anyString());
+        verify(employeeRepository, times(2)).findDirectReportsByEmployeeIdIn(Mockito.anyCollection());
+        //counting only needs the reporting lines
+        verify(employeeRepository, never()).findByEmployeeIdIn(Mockito.anyCollection());
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readReportingStructureFansOutWideLevels() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(employeeService, "reportingStructureEngine", new BatchedReportingStructureEngine(employeeRepository, executor, 1));
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        try {
+            assertEquals(3, employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId()).getNumberOfReports());
+        } finally {
+            executor.shutdown();
+        }
+        //the second level holds two siblings so it is loaded as two partitions of one
+        verify(employeeRepository).findDirectReportsByEmployeeIdIn(Collections.singletonList(testEmployee2.getEmployeeId()));
+        verify(employeeRepository).findDirectReportsByEmployeeIdIn(Collections.singletonList(testEmployee3.getEmployeeId()));
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readReportingStructureMaxDepth() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        assertEquals(2, employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(), 1, null).getNumberOfReports());
+        //direct reports are already on the employee
+        verify(employeeRepository, never()).findDirectReportsByEmployeeIdIn(Mockito.anyCollection());
+        assertEquals(3, employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(), 2, null).getNumberOfReports());
+        verify(employeeRepository, times(1)).findDirectReportsByEmployeeIdIn(Mockito.anyCollection());
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readReportingStructureMaxDepthCycle() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        //a limited walk always ends, so the cycle is counted instead of rejected
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee3));
+        testEmployee3.setDirectReports(Arrays.asList(testEmployee2));
+        assertEquals(2, employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(), 5, null).getNumberOfReports());
+        cleanReportingStructure();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readReportingStructureInvalidMaxDepth() {
+        employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(), 0, null);
+    }
+
+    @Test
+    public void readReportingStructureProjected() {
+        Employee projected = new Employee();
+        projected.setEmployeeId(testEmployee.getEmployeeId());
+        projected.setFirstName(testEmployee.getFirstName());
+        projected.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findOne(query.capture(), Mockito.eq(Employee.class))).thenReturn(projected);
+        mockFindByEmployeeIdIn();
+
+        ReportingStructure reportingStructureReturn = employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(),
+                ReportingStructureEngine.UNLIMITED_DEPTH, Collections.singleton("firstName"));
+        assertEquals(2, reportingStructureReturn.getNumberOfReports());
+        assertEquals(testEmployee.getFirstName(), reportingStructureReturn.getEmployee().getFirstName());
+        //the id and reporting lines were only loaded to count from
+        assertNull(reportingStructureReturn.getEmployee().getEmployeeId());
+        assertNull(reportingStructureReturn.getEmployee().getDirectReports());
+        assertEquals(new Document("firstName", 1).append("directReports._id", 1), query.getValue().getFieldsObject());
+        verify(employeeRepository, never()).findByEmployeeId(Mockito.anyString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readReportingStructureUnknownField() {
+        employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId(), ReportingStructureEngine.UNLIMITED_DEPTH,
+                Collections.singleton("salary"));
+    }
+
+    @Test
+    public void readReportingStructureSharedReports() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        //testEmployee4 reports to both testEmployee2 and testEmployee3 and should only be counted once
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        testEmployee3.setDirectReports(Arrays.asList(testEmployee4));
+        ReportingStructure reportingStructureReturn = employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId());
+        assertEquals(3, reportingStructureReturn.getNumberOfReports());
+        cleanReportingStructure();
+    }
+
+    @Test(expected = CyclicReportingStructureException.class)
+    public void readReportingStructureCycle() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee3));
+        testEmployee3.setDirectReports(Arrays.asList(testEmployee2));
+        try {
+            employeeService.readEmployeeReportingStructure(testEmployee.getEmployeeId());
+        } finally {
+            cleanReportingStructure();
+        }
+    }
+
+    @Test
+    public void readEmployeeReports() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        //testEmployee4 is listed by both testEmployee2 and testEmployee3 and is only returned through its own manager
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        testEmployee3.setDirectReports(Arrays.asList(testEmployee4));
+        testEmployee2.setManagerId(testEmployee.getEmployeeId());
+        testEmployee3.setManagerId(testEmployee.getEmployeeId());
+        testEmployee4.setManagerId(testEmployee2.getEmployeeId());
+        CursorPage<Employee> page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 2);
+        assertEquals(Arrays.asList(testEmployee2, testEmployee3), page.getItems());
+        assertNotNull(page.getNextCursor());
+
+        page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), page.getNextCursor(), 2);
+        assertEquals(Arrays.asList(testEmployee4), page.getItems());
+        assertNull(page.getNextCursor());
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readEmployeeReportsPageWithinLevel() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3, testEmployee4));
+        reportTo(testEmployee, testEmployee2, testEmployee3, testEmployee4);
+        List<Employee> reports = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Employee> page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), cursor, 1);
+            assertEquals(1, page.getItems().size());
+            reports.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(Arrays.asList(testEmployee2, testEmployee3, testEmployee4), reports);
+        //only the page itself is loaded in full
+        verify(employeeRepository, times(3)).findByEmployeeIdIn(Mockito.anyCollection());
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readEmployeeReportsAfterReturnedReportLeaves() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3, testEmployee4));
+        reportTo(testEmployee, testEmployee2, testEmployee3, testEmployee4);
+        CursorPage<Employee> page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 1);
+        assertEquals(Collections.singletonList(testEmployee2), page.getItems());
+
+        //the report the page ended on moves under one of its old peers, the peers after it must not be skipped
+        testEmployee.setDirectReports(Arrays.asList(testEmployee3, testEmployee4));
+        testEmployee3.setDirectReports(Collections.singletonList(testEmployee2));
+        testEmployee2.setManagerId(testEmployee3.getEmployeeId());
+        List<Employee> reports = new ArrayList<>();
+        String cursor = page.getNextCursor();
+        do {
+            page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), cursor, 1);
+            reports.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(Arrays.asList(testEmployee3, testEmployee4, testEmployee2), reports);
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readEmployeeReportsAfterReportAddedBefore() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        reportTo(testEmployee, testEmployee2, testEmployee3);
+        CursorPage<Employee> page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 1);
+        assertEquals(Collections.singletonList(testEmployee2), page.getItems());
+
+        //a new report ahead of the position does not push the report already returned onto the next page
+        testEmployee.setDirectReports(Arrays.asList(testEmployee4, testEmployee2, testEmployee3));
+        reportTo(testEmployee, testEmployee4);
+        page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), page.getNextCursor(), 1);
+        assertEquals(Collections.singletonList(testEmployee3), page.getItems());
+        assertNull(page.getNextCursor());
+        cleanReportingStructure();
+    }
+
+    @Test
+    public void readEmployeeReportsResumesBelowPosition() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Collections.singletonList(testEmployee4));
+        reportTo(testEmployee, testEmployee2, testEmployee3);
+        reportTo(testEmployee2, testEmployee4);
+        CursorPage<Employee> page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 2);
+        assertEquals(Arrays.asList(testEmployee2, testEmployee3), page.getItems());
+
+        Mockito.clearInvocations(employeeRepository);
+        page = employeeService.readEmployeeReports(testEmployee.getEmployeeId(), page.getNextCursor(), 2);
+        assertEquals(Collections.singletonList(testEmployee4), page.getItems());
+        assertNull(page.getNextCursor());
+        //the path to the position in one query, then the levels from the root down to the next level and the empty one below it
+        verify(employeeRepository, times(5)).findDirectReportsByEmployeeIdIn(Mockito.anyCollection());
+        cleanReportingStructure();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readEmployeeReportsInvalidCursor() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        employeeService.readEmployeeReports(testEmployee.getEmployeeId(), "not a cursor", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readEmployeeReportsInvalidLimit() {
+        employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 0);
+    }
+
+    @Test(expected = EmptyObjectException.class)
+    public void readNonExistentEmployeeReports() {
+        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(null);
+        employeeService.readEmployeeReports(testEmployee.getEmployeeId(), null, 10);
+    }
+
+    @Test
+    public void streamEmployeeReports() {
+        when(employeeRepository.findByEmployeeId(testEmployee.getEmployeeId())).thenReturn(testEmployee);
+        mockFindByEmployeeIdIn();
+
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Arrays.asList(testEmployee4));
+        List<Employee> reports = new ArrayList<>();
+        employeeService.streamEmployeeReports(testEmployee.getEmployeeId(), reports::addAll);
+        assertEquals(Arrays.asList(testEmployee2, testEmployee3, testEmployee4), reports);
+        cleanReportingStructure();
+    }
+
     @Test(expected = EmptyObjectException.class)
     public void testReadNonExistentEmployeeReportingStructure() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(null);
@@ -170,10 +653,10 @@ public class EmployeeServiceImplTest {
     @Test
     public void createEmployeeCompensation() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
-        when(compensationRepository.findByEmployee(Mockito.any(Employee.class))).thenReturn(null);
         when(compensationRepository.insert(Mockito.any(Compensation.class))).thenReturn(testCompensation);
         Compensation compensationReturn = employeeService.createEmployeeCompensation(testCompensation);
         assertEquals(testCompensation, compensationReturn);
+        assertEquals(testEmployee.getEmployeeId(), compensationReturn.getEmployeeId());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -185,30 +668,153 @@ public class EmployeeServiceImplTest {
     @Test(expected = IllegalArgumentException.class)
     public void createEmployeeCompensationAlreadyExists() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
-        when(compensationRepository.findByEmployee(Mockito.any(Employee.class))).thenReturn(testCompensation);
+        when(compensationRepository.insert(Mockito.any(Compensation.class))).thenThrow(new DuplicateKeyException("duplicate key"));
         employeeService.createEmployeeCompensation(testCompensation);
     }
 
     @Test
     public void readEmployeeCompensation() {
-        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
-        when(compensationRepository.findByEmployee(Mockito.any(Employee.class))).thenReturn(testCompensation);
-        Compensation compensationReturn = employeeService.readEmployeeCompensation(testEmployee.getEmployeeId());
+        testCompensation.setEffectiveDate(LocalDate.of(2020, 1, 1));
+        when(compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 1)))
+                .thenReturn(testCompensation);
+        Compensation compensationReturn = employeeService.readEmployeeCompensation(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 1));
         assertEquals(testCompensation, compensationReturn);
+        //a single query against compensation, the employee is never loaded separately
+        verify(employeeRepository, never()).findByEmployeeId(Mockito.anyString());
+    }
+
+    @Test
+    public void readCurrentEmployeeCompensation() {
+        when(compensationRepository.findFirstByEmployeeIdAndEffectiveDateLessThanEqualOrderByEffectiveDateDesc(testEmployee.getEmployeeId(), LocalDate.now()))
+                .thenReturn(testCompensation);
+        assertEquals(testCompensation, employeeService.readEmployeeCompensation(testEmployee.getEmployeeId()));
     }
 
     @Test(expected = EmptyObjectException.class)
     public void readNonExistentEmployeeCompensationNoEmployee() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(null);
-        when(compensationRepository.findByEmployee(null)).thenReturn(null);
-        employeeService.readEmployeeCompensation(testEmployee.getEmployeeId());
+        employeeService.readEmployeeCompensation(testEmployee.getEmployeeId(), LocalDate.now());
     }
 
     @Test(expected = EmptyObjectException.class)
     public void readNonExistentEmployeeCompensationNoCompensation() {
         when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenReturn(testEmployee);
-        when(compensationRepository.findByEmployee(Mockito.any(Employee.class))).thenReturn(null);
-        employeeService.readEmployeeCompensation(testEmployee.getEmployeeId());
+        employeeService.readEmployeeCompensation(testEmployee.getEmployeeId(), LocalDate.now());
+    }
+
+    @Test
+    public void readEmployeeCompensationHistoryOpenEnded() {
+        when(compensationRepository.findHistory(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 1), EmployeeServiceImpl.LATEST_EFFECTIVE_DATE))
+                .thenReturn(Collections.singletonList(testCompensation));
+        assertEquals(Collections.singletonList(testCompensation),
+                employeeService.readEmployeeCompensationHistory(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 1), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readEmployeeCompensationHistoryBackwards() {
+        employeeService.readEmployeeCompensationHistory(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 2), LocalDate.of(2020, 1, 1));
+    }
+
+    @Test
+    public void readEmployeesInRequestOrder() {
+        when(employeeRepository.findByEmployeeIdIn(Mockito.anyCollection())).thenReturn(Arrays.asList(testEmployee3, testEmployee));
+
+        MultiGetResult<Employee> result = employeeService.readEmployees(Arrays.asList("123", "missing", "789", "123"));
+        assertEquals(Arrays.asList("123", "missing", "789", "123"),
+                result.getItems().stream().map(MultiGetResult.Item::getId).collect(Collectors.toList()));
+        assertEquals(testEmployee, result.getItems().get(0).getValue());
+        assertFalse(result.getItems().get(1).isFound());
+        assertNull(result.getItems().get(1).getValue());
+        assertEquals(testEmployee3, result.getItems().get(2).getValue());
+        //repeated ids are only asked for once
+        verify(employeeRepository).findByEmployeeIdIn(new HashSet<>(Arrays.asList("123", "missing", "789")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readEmployeesWithoutIds() {
+        employeeService.readEmployees(Collections.emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readEmployeesTooMany() {
+        employeeService.readEmployees(Collections.nCopies(EmployeeServiceImpl.MAX_MULTI_GET_IDS + 1, "123"));
+    }
+
+    @Test
+    public void readEmployeeCompensationsAttachesEmployees() {
+        Compensation current = new Compensation();
+        current.setEmployeeId(testEmployee.getEmployeeId());
+        current.setSalary(new BigDecimal(12345));
+        when(mongoTemplate.aggregate(Mockito.any(TypedAggregation.class), Mockito.eq(Compensation.class)))
+                .thenReturn(new AggregationResults<>(Collections.singletonList(current), new Document()));
+        when(employeeRepository.findByEmployeeIdIn(Collections.singleton(testEmployee.getEmployeeId()))).thenReturn(Collections.singletonList(testEmployee));
+
+        MultiGetResult<Compensation> result = employeeService.readEmployeeCompensations(Arrays.asList("missing", "123"), LocalDate.of(2020, 1, 1));
+        assertFalse(result.getItems().get(0).isFound());
+        assertEquals(testEmployee, result.getItems().get(1).getValue().getEmployee());
+        verify(mongoTemplate).aggregate(Mockito.any(TypedAggregation.class), Mockito.eq(Compensation.class));
+    }
+
+    @Test
+    public void readCompensationRollup() {
+        testEmployee.setDirectReports(Arrays.asList(testEmployee2, testEmployee3));
+        testEmployee2.setDirectReports(Collections.singletonList(testEmployee));
+        mockFindByEmployeeId();
+        when(employeeRepository.findDirectReportsByEmployeeIdIn(Mockito.anyCollection())).thenReturn(Arrays.asList(testEmployee2, testEmployee3));
+        Compensation salary = new Compensation();
+        salary.setSalary(new BigDecimal(1000));
+        when(mongoTemplate.aggregate(Mockito.any(TypedAggregation.class), Mockito.eq(Compensation.class)))
+                .thenReturn(new AggregationResults<>(Collections.singletonList(testCompensation), new Document()))
+                .thenReturn(new AggregationResults<>(Arrays.asList(salary, salary), new Document()));
+
+        CompensationRollup rollup = employeeService.readCompensationRollup(testEmployee.getEmployeeId(), LocalDate.of(2020, 1, 1), Arrays.asList(50.0, 100.0));
+        assertEquals(3, rollup.getEmployees());
+        assertEquals(new BigDecimal("14345.00"), rollup.getTotal());
+        assertEquals(new BigDecimal("1000.00"), rollup.getPercentiles().get("p50"));
+        assertEquals(new BigDecimal("12345.00"), rollup.getPercentiles().get("p100"));
+        //the employee and then one chunk of reports, the cycle back to the employee is not followed
+        verify(mongoTemplate, times(2)).aggregate(Mockito.any(TypedAggregation.class), Mockito.eq(Compensation.class));
+    }
+
+    @Test(expected = EmptyObjectException.class)
+    public void readCompensationRollupUnknownEmployee() {
+        employeeService.readCompensationRollup("missing", LocalDate.of(2020, 1, 1), Collections.singletonList(50.0));
+    }
+
+    /**
+     * Resolve single employee lookups against the test employees
+     */
+    private void mockFindByEmployeeId() {
+        when(employeeRepository.findByEmployeeId(Mockito.anyString())).thenAnswer(invocation ->
+                Stream.of(testEmployee, testEmployee2, testEmployee3, testEmployee4)
+                        .filter(employee -> employee.getEmployeeId().equals(invocation.getArgument(0)))
+                        .findFirst()
+                        .orElse(null));
+    }
+
+    /**
+     * Resolve batched employee lookups against the test employees
+     */
+    private void mockFindByEmployeeIdIn() {
+        Answer<List<Employee>> findByEmployeeIdIn = invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return Stream.of(testEmployee, testEmployee2, testEmployee3, testEmployee4)
+                    .filter(employee -> ids.contains(employee.getEmployeeId()))
+                    .collect(Collectors.toList());
+        };
+        when(employeeRepository.findByEmployeeIdIn(Mockito.anyCollection())).thenAnswer(findByEmployeeIdIn);
+        when(employeeRepository.findDirectReportsByEmployeeIdIn(Mockito.anyCollection())).thenAnswer(findByEmployeeIdIn);
+    }
+
+    /**
+     * Make the manager the own manager of every report
+     * @param manager
+     * @param reports
+     */
+    private void reportTo(Employee manager, Employee... reports) {
+        for (Employee report : reports) {
+            report.setManagerId(manager.getEmployeeId());
+        }
     }
 
     /**
@@ -220,4 +826,18 @@ public class EmployeeServiceImplTest {
         testEmployee3.setDirectReports(null);
         testEmployee4.setDirectReports(null);
     }
+
+    /**
+     * Acknowledge every bulk insert with the number of documents in its chunk
+     */
+    private void mockBulkInsert() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class)).thenReturn(bulkOperations);
+        List<Integer> sizes = new ArrayList<>();
+        when(bulkOperations.insert(Mockito.anyList())).thenAnswer(invocation -> {
+            sizes.add(((List<?>) invocation.getArgument(0)).size());
+            return bulkOperations;
+        });
+        when(bulkOperations.execute()).thenAnswer(invocation ->
+                BulkWriteResult.acknowledged(sizes.remove(0), 0, 0, 0, Collections.emptyList(), Collections.emptyList()));
+    }
 }
@@ -0,0 +1,126 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.CyclicReportingStructureException;
+import com.mindex.challenge.service.ReportingStructureEngine;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+public class GraphLookupReportingStructureEngineTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ReportingStructureEngine fallback;
+
+    private GraphLookupReportingStructureEngine engine;
+
+    private Employee testEmployee;
+
+    @Before
+    public void setup() {
+        engine = new GraphLookupReportingStructureEngine(mongoTemplate, fallback);
+        when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employee");
+
+        testEmployee = new Employee();
+        testEmployee.setEmployeeId("123");
+    }
+
+    @Test
+    public void countReports() {
+        when(mongoTemplate.aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class)))
+                .thenReturn(new AggregationResults<>(Collections.singletonList(new Document("numberOfReports", 4)), new Document()));
+        assertEquals(4, engine.countReports(testEmployee));
+        verify(fallback, never()).countReports(Mockito.any(Employee.class), Mockito.anyInt());
+    }
+
+    @Test
+    public void countReportsMaxDepth() {
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        when(mongoTemplate.aggregate(aggregation.capture(), Mockito.anyString(), Mockito.eq(Document.class)))
+                .thenReturn(new AggregationResults<>(Collections.singletonList(new Document("numberOfReports", 2)), new Document()));
+        assertEquals(2, engine.countReports(testEmployee, 2));
+        //direct reports are depth 0 of the lookup
+        Document lookup = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(1).get("$graphLookup", Document.class);
+        assertEquals(1L, ((Number) lookup.get("maxDepth")).longValue());
+        Document counts = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(2).get("$project", Document.class);
+        assertEquals(Arrays.asList("123", "$reports._id"), counts.get("cyclesBack", Document.class).get("$in"));
+    }
+
+    @Test(expected = CyclicReportingStructureException.class)
+    public void countReportsCycle() {
+        //the chain leads back to the employee, so the lookup holds the employee as one of their own reports
+        lookupReturns(new Document("numberOfReports", 3).append("reportingLines", 3).append("cyclesBack", true));
+        engine.countReports(testEmployee);
+    }
+
+    @Test(expected = CyclicReportingStructureException.class)
+    public void countReportsCycleBelowEmployeeIsWalked() {
+        //two reports listing each other, the lookup only sees more reporting lines than reports
+        lookupReturns(new Document("numberOfReports", 2).append("reportingLines", 3).append("cyclesBack", false));
+        when(fallback.countReports(testEmployee, ReportingStructureEngine.UNLIMITED_DEPTH))
+                .thenThrow(new CyclicReportingStructureException("Reporting structure for employee 123 contains a cycle"));
+        engine.countReports(testEmployee);
+    }
+
+    @Test
+    public void countReportsMaxDepthCycle() {
+        //a limited walk counts the cycle instead of rejecting it, without the employee at the top
+        lookupReturns(new Document("numberOfReports", 3).append("reportingLines", 3).append("cyclesBack", true));
+        assertEquals(2, engine.countReports(testEmployee, 5));
+        verify(fallback, never()).countReports(Mockito.any(Employee.class), Mockito.anyInt());
+    }
+
+    @Test
+    public void countReportsUnsupportedFallsBack() {
+        when(mongoTemplate.aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class)))
+                .thenThrow(new UncategorizedMongoDbException("Unrecognized pipeline stage name: '$graphLookup'",
+                        new MongoCommandException(new BsonDocument(), new ServerAddress())));
+        when(fallback.countReports(testEmployee, ReportingStructureEngine.UNLIMITED_DEPTH)).thenReturn(3);
+
+        assertEquals(3, engine.countReports(testEmployee));
+        assertEquals(3, engine.countReports(testEmployee));
+        //the server rejected the pipeline once so it should not be sent again
+        verify(mongoTemplate, times(1)).aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class));
+    }
+
+    @Test
+    public void countReportsTransientFailureFallsBack() {
+        when(mongoTemplate.aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class)))
+                .thenThrow(new UncategorizedMongoDbException("Timed out", null));
+        when(fallback.countReports(testEmployee, ReportingStructureEngine.UNLIMITED_DEPTH)).thenReturn(3);
+
+        assertEquals(3, engine.countReports(testEmployee));
+        assertEquals(3, engine.countReports(testEmployee));
+        verify(mongoTemplate, times(2)).aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class));
+    }
+
+    private void lookupReturns(Document result) {
+        when(mongoTemplate.aggregate(Mockito.any(Aggregation.class), Mockito.anyString(), Mockito.eq(Document.class)))
+                .thenReturn(new AggregationResults<>(Collections.singletonList(result), new Document()));
+    }
+}
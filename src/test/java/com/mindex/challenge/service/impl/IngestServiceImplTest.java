@@ -0,0 +1,144 @@
+package com.mindex.challenge.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mindex.challenge.data.Employee;
+import com.mindex.challenge.exceptions.EmptyObjectException;
+import com.mindex.challenge.model.BatchResult;
+import com.mindex.challenge.model.IngestJob;
+import com.mindex.challenge.service.EmployeeService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+public class IngestServiceImplTest {
+
+    private static final String EMPLOYEE = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"position\":\"Developer\",\"department\":\"Engineering\"}";
+
+    @InjectMocks
+    private IngestServiceImpl ingestService;
+
+    @Mock
+    private EmployeeService employeeService;
+
+    //sizes of the batches handed to the employee service
+    private List<Integer> batchSizes;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(ingestService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(ingestService, "ingestBatchSize", 2);
+
+        batchSizes = new ArrayList<>();
+        when(employeeService.createEmployees(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Employee> employees = invocation.getArgument(0);
+            batchSizes.add(employees.size());
+            BatchResult result = new BatchResult();
+            result.setCreated(employees.size());
+            return result;
+        });
+    }
+
+    @Test
+    public void ingestEmployees() {
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE, EMPLOYEE, EMPLOYEE, EMPLOYEE, EMPLOYEE));
+        assertEquals(IngestJob.Status.COMPLETED, job.getStatus());
+        assertEquals(5, job.getReceived());
+        assertEquals(5, job.getCreated());
+        assertEquals(0, job.getFailed());
+        //records are flushed as they are read instead of all at once
+        assertEquals(3, batchSizes.size());
+        assertEquals(1, (int) batchSizes.get(2));
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    public void ingestEmployeesSkipsBadRecords() {
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE, "{\"directReports\":\"x\"}", "[]", EMPLOYEE));
+        assertEquals(IngestJob.Status.COMPLETED, job.getStatus());
+        assertEquals(4, job.getReceived());
+        assertEquals(2, job.getCreated());
+        assertEquals(2, job.getFailed());
+        assertEquals(1, job.getErrors().get(0).getIndex());
+        assertEquals(2, job.getErrors().get(1).getIndex());
+    }
+
+    @Test
+    public void ingestEmployeesMapsBatchErrorsToRecords() {
+        //the second employee of the batch fails validation, it is the third record of the upload
+        when(employeeService.createEmployees(Mockito.anyList())).thenAnswer(invocation -> {
+            BatchResult result = new BatchResult();
+            result.setCreated(1);
+            result.addError(1, "First name is required!");
+            return result;
+        });
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE, "{\"directReports\":\"x\"}", "{}"));
+        assertEquals(1, job.getCreated());
+        assertEquals(2, job.getFailed());
+        assertEquals(2, job.getErrors().get(1).getIndex());
+    }
+
+    @Test
+    public void ingestEmployeesMalformed() {
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE, EMPLOYEE, EMPLOYEE, "{\"firstName\":"));
+        assertEquals(IngestJob.Status.FAILED, job.getStatus());
+        assertNotNull(job.getFailureMessage());
+        //everything read before the syntax error is still written
+        assertEquals(3, job.getCreated());
+        verify(employeeService, times(2)).createEmployees(Mockito.anyList());
+    }
+
+    @Test
+    public void ingestEmployeesDatabaseFailure() {
+        //the first batch is written, the database goes away on the second
+        when(employeeService.createEmployees(Mockito.anyList())).thenAnswer(invocation -> {
+            BatchResult result = new BatchResult();
+            result.setCreated(2);
+            return result;
+        }).thenThrow(new DataAccessResourceFailureException("Timed out waiting for a server"));
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE, EMPLOYEE, EMPLOYEE, EMPLOYEE, EMPLOYEE));
+        assertEquals(IngestJob.Status.FAILED, job.getStatus());
+        assertEquals("Timed out waiting for a server", job.getFailureMessage());
+        assertEquals(2, job.getCreated());
+        assertNotNull(job.getFinishedAt());
+        //nothing after the failed batch is read or written
+        assertEquals(4, job.getReceived());
+        verify(employeeService, times(2)).createEmployees(Mockito.anyList());
+        assertSame(job, ingestService.readIngestJob(job.getJobId()));
+    }
+
+    @Test
+    public void readIngestJob() {
+        IngestJob job = ingestService.ingestEmployees(ndjson(EMPLOYEE));
+        assertSame(job, ingestService.readIngestJob(job.getJobId()));
+        assertEquals(1, ingestService.readIngestJobs().size());
+    }
+
+    @Test(expected = EmptyObjectException.class)
+    public void readNonExistentIngestJob() {
+        ingestService.readIngestJob("123");
+    }
+
+    private InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
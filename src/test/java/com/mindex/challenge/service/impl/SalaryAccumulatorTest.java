@@ -0,0 +1,109 @@
+package com.mindex.challenge.service.impl;
+
+import com.mindex.challenge.model.CompensationRollup;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SalaryAccumulatorTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2020, 1, 1);
+
+    @Test
+    public void rollsUpSalaries() {
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        //more salaries than the initial capacity, added largest first
+        for (int i = 100; i >= 1; i--) {
+            salaries.add(BigDecimal.valueOf(i * 1000));
+        }
+        salaries.add(null);
+
+        CompensationRollup rollup = salaries.toRollup("123", AS_OF, 120, Arrays.asList(50.0, 70.0, 99.5, 100.0));
+        assertEquals(120, rollup.getEmployees());
+        assertEquals(100, rollup.getCompensated());
+        assertEquals(new BigDecimal("5050000.00"), rollup.getTotal());
+        assertEquals(new BigDecimal("50500.00"), rollup.getMean());
+        assertEquals(new BigDecimal("1000.00"), rollup.getMin());
+        assertEquals(new BigDecimal("100000.00"), rollup.getMax());
+        assertEquals(new BigDecimal("50000.00"), rollup.getPercentiles().get("p50"));
+        assertEquals(new BigDecimal("70000.00"), rollup.getPercentiles().get("p70"));
+        assertEquals(new BigDecimal("100000.00"), rollup.getPercentiles().get("p99.5"));
+        assertEquals(new BigDecimal("100000.00"), rollup.getPercentiles().get("p100"));
+    }
+
+    @Test
+    public void roundsToTheCent() {
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        salaries.add(new BigDecimal("0.125"));
+        salaries.add(new BigDecimal("0.135"));
+        salaries.add(new BigDecimal("10"));
+
+        CompensationRollup rollup = salaries.toRollup("123", AS_OF, 3, Collections.singletonList(1.0));
+        assertEquals(new BigDecimal("10.26"), rollup.getTotal());
+        assertEquals(new BigDecimal("3.42"), rollup.getMean());
+        assertEquals(new BigDecimal("0.12"), rollup.getPercentiles().get("p1"));
+    }
+
+    @Test
+    public void subCentSalary() {
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        salaries.add(new BigDecimal("0.004"));
+        salaries.add(new BigDecimal("0.015"));
+
+        CompensationRollup rollup = salaries.toRollup("123", AS_OF, 2, Collections.singletonList(100.0));
+        assertEquals(new BigDecimal("0.02"), rollup.getTotal());
+        assertEquals(new BigDecimal("0.00"), rollup.getMin());
+        assertEquals(new BigDecimal("0.02"), rollup.getMax());
+    }
+
+    @Test
+    public void salaryBeyondLongCents() {
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        salaries.add(new BigDecimal("1000"));
+        salaries.add(new BigDecimal("1e30"));
+        salaries.add(new BigDecimal("2000.005"));
+
+        CompensationRollup rollup = salaries.toRollup("123", AS_OF, 3, Collections.singletonList(50.0));
+        assertEquals(3, rollup.getCompensated());
+        assertEquals(new BigDecimal("1000000000000000000000000003000.00"), rollup.getTotal());
+        assertEquals(new BigDecimal("1000.00"), rollup.getMin());
+        assertEquals(new BigDecimal("1000000000000000000000000000000.00"), rollup.getMax());
+        assertEquals(new BigDecimal("2000.00"), rollup.getPercentiles().get("p50"));
+    }
+
+    @Test
+    public void totalBeyondLongCents() {
+        //each of them fits a long of cents, their sum does not
+        SalaryAccumulator salaries = new SalaryAccumulator();
+        for (int i = 0; i < 11; i++) {
+            salaries.add(new BigDecimal("9000000000000000"));
+        }
+
+        CompensationRollup rollup = salaries.toRollup("123", AS_OF, 11, Collections.singletonList(100.0));
+        assertEquals(new BigDecimal("99000000000000000.00"), rollup.getTotal());
+        assertEquals(new BigDecimal("9000000000000000.00"), rollup.getMean());
+        assertEquals(new BigDecimal("9000000000000000.00"), rollup.getPercentiles().get("p100"));
+    }
+
+    @Test
+    public void noCompensation() {
+        CompensationRollup rollup = new SalaryAccumulator().toRollup("123", AS_OF, 4, Collections.singletonList(50.0));
+        assertEquals(0, rollup.getCompensated());
+        assertEquals(new BigDecimal("0.00"), rollup.getTotal());
+        assertNull(rollup.getMean());
+        assertNull(rollup.getMin());
+        assertTrue(rollup.getPercentiles().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentilesMustBeInRange() {
+        SalaryAccumulator.checkPercentiles(Arrays.asList(50.0, 0.0));
+    }
+}